@@ -0,0 +1,62 @@
+package com.simpletomcat.todo;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream that fails as soon as more than a fixed number of bytes has been read
+ */
+final class BoundedInputStream extends FilterInputStream {
+    private final long maxBytes;
+    private long bytesRead;
+
+    BoundedInputStream(InputStream in, long maxBytes) {
+        super(in);
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            count(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        // Never read further than one byte past the limit
+        int n = super.read(b, off, (int) Math.min(len, maxBytes - bytesRead + 1));
+        if (n > 0) {
+            count(n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(Math.min(n, maxBytes - bytesRead + 1));
+        count(skipped);
+        return skipped;
+    }
+
+    private void count(long n) throws TooLargeException {
+        bytesRead += n;
+        if (bytesRead > maxBytes) {
+            throw new TooLargeException(maxBytes);
+        }
+    }
+
+    /**
+     * Thrown when the stream holds more bytes than allowed
+     */
+    static final class TooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        TooLargeException(long maxBytes) {
+            super("Request body exceeds " + maxBytes + " bytes");
+        }
+    }
+}
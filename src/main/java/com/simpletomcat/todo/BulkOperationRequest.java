@@ -0,0 +1,68 @@
+package com.simpletomcat.todo;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * One item of a bulk request: the operation name, the id it targets and the task fields.
+ * Fields are left null when the client omits them; which ones are required depends on the operation.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+final class BulkOperationRequest {
+    private String op;
+    private Integer id;
+    private String title;
+    private String description;
+    private Boolean completed;
+    private Long version;
+
+    public String getOp() {
+        return op;
+    }
+
+    public void setOp(String op) {
+        this.op = op;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public Boolean getCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(Boolean completed) {
+        this.completed = completed;
+    }
+
+    /**
+     * @return The version an update or delete expects the task to have, or null to apply to any version
+     */
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+}
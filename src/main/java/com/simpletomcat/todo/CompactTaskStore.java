@@ -0,0 +1,250 @@
+package com.simpletomcat.todo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Id-indexed storage for tasks as primitive arrays on the heap.
+ * Instead of a Task object holding two Strings, each chunk of ids keeps parallel arrays:
+ * the UTF-8 title and description of a task in one byte array, the length of the title,
+ * the version, and the status as one bit of an atomic word. Tasks are decoded into Task objects
+ * only when read, so the store itself holds a single object per task.
+ * A status word covers 64 neighboring ids, which belong to different lock stripes, so its bits
+ * are changed with atomic read-modify-write updates as in IdBitSet rather than under a stripe.
+ * Ids map to a fixed set of StampedLock stripes. Writers take the write lock of their
+ * stripe; readers copy the fields of a slot under an optimistic stamp and only fall back
+ * to the read lock when a write raced with them, so reads do not block in the common case.
+ */
+final class CompactTaskStore implements TaskStore {
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int LOCK_STRIPES = 64;
+
+    private final StampedLock[] locks;
+    private final AtomicInteger size;
+    private final AtomicInteger highestId;
+    private volatile Chunk[] chunks;
+
+    CompactTaskStore() {
+        this.locks = new StampedLock[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new StampedLock();
+        }
+        this.size = new AtomicInteger();
+        this.highestId = new AtomicInteger();
+        this.chunks = new Chunk[1];
+    }
+
+    @Override
+    public void put(Task task) {
+        int id = task.getId();
+        if (id <= 0) {
+            throw new IllegalArgumentException("Task ID must be positive");
+        }
+        Chunk chunk = chunkFor(id);
+        int slot = id & CHUNK_MASK;
+        byte[] title = task.getTitle().getBytes(StandardCharsets.UTF_8);
+        byte[] text = encode(title, task.getDescription());
+        StampedLock lock = lockFor(id);
+        long stamp = lock.writeLock();
+        try {
+            if (chunk.text[slot] != null) {
+                throw new IllegalArgumentException("Task ID already in use: " + id);
+            }
+            chunk.write(slot, task, text, title.length);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        size.incrementAndGet();
+        highestId.accumulateAndGet(id, Math::max);
+    }
+
+    @Override
+    public Task get(int id) {
+        Chunk chunk = existingChunk(chunks, id);
+        if (chunk == null) {
+            return null;
+        }
+        int slot = id & CHUNK_MASK;
+        StampedLock lock = lockFor(id);
+        long stamp = lock.tryOptimisticRead();
+        byte[] text = chunk.text[slot];
+        int titleLength = chunk.titleLengths[slot];
+        long version = chunk.versions[slot];
+        boolean completed = chunk.isCompleted(slot);
+        if (!lock.validate(stamp)) {
+            // A write raced with the copy; read again while writes are held off
+            stamp = lock.readLock();
+            try {
+                text = chunk.text[slot];
+                titleLength = chunk.titleLengths[slot];
+                version = chunk.versions[slot];
+                completed = chunk.isCompleted(slot);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return text == null ? null : decode(id, text, titleLength, completed, version);
+    }
+
+    @Override
+    public Task replace(Task task) {
+        int id = task.getId();
+        Chunk chunk = existingChunk(chunks, id);
+        if (chunk == null) {
+            return null;
+        }
+        int slot = id & CHUNK_MASK;
+        StampedLock lock = lockFor(id);
+        long stamp = lock.writeLock();
+        try {
+            Task previous = chunk.read(id, slot);
+            if (previous != null) {
+                // Status changes keep the encoded text
+                boolean sameText = previous.getTitle().equals(task.getTitle())
+                        && previous.getDescription().equals(task.getDescription());
+                if (sameText) {
+                    chunk.write(slot, task, chunk.text[slot], chunk.titleLengths[slot]);
+                } else {
+                    byte[] title = task.getTitle().getBytes(StandardCharsets.UTF_8);
+                    chunk.write(slot, task, encode(title, task.getDescription()), title.length);
+                }
+            }
+            return previous;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Task remove(int id) {
+        Chunk chunk = existingChunk(chunks, id);
+        if (chunk == null) {
+            return null;
+        }
+        int slot = id & CHUNK_MASK;
+        StampedLock lock = lockFor(id);
+        long stamp = lock.writeLock();
+        try {
+            Task previous = chunk.read(id, slot);
+            if (previous != null) {
+                chunk.text[slot] = null;
+                chunk.setCompleted(slot, false);
+                size.decrementAndGet();
+            }
+            return previous;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public List<Task> toList() {
+        int last = highestId.get();
+        List<Task> result = new ArrayList<>(size.get());
+        for (int id = 1; id <= last; id++) {
+            Task task = get(id);
+            if (task != null) {
+                result.add(task);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public int getHighestId() {
+        return highestId.get();
+    }
+
+    /**
+     * Join an encoded title and a description into one UTF-8 array
+     */
+    private static byte[] encode(byte[] title, String description) {
+        byte[] encoded = description.getBytes(StandardCharsets.UTF_8);
+        byte[] text = Arrays.copyOf(title, title.length + encoded.length);
+        System.arraycopy(encoded, 0, text, title.length, encoded.length);
+        return text;
+    }
+
+    private static Task decode(int id, byte[] text, int titleLength, boolean completed, long version) {
+        return new Task(id,
+                new String(text, 0, titleLength, StandardCharsets.UTF_8),
+                new String(text, titleLength, text.length - titleLength, StandardCharsets.UTF_8),
+                completed, version);
+    }
+
+    private StampedLock lockFor(int id) {
+        return locks[id & (LOCK_STRIPES - 1)];
+    }
+
+    private static Chunk existingChunk(Chunk[] directory, int id) {
+        int index = id >>> CHUNK_BITS;
+        return id <= 0 || index >= directory.length ? null : directory[index];
+    }
+
+    private Chunk chunkFor(int id) {
+        Chunk chunk = existingChunk(chunks, id);
+        if (chunk != null) {
+            return chunk;
+        }
+        synchronized (this) {
+            int index = id >>> CHUNK_BITS;
+            Chunk[] directory = chunks;
+            if (index < directory.length && directory[index] != null) {
+                return directory[index];
+            }
+            directory = Arrays.copyOf(directory, Math.max(index + 1, directory.length));
+            directory[index] = new Chunk();
+            chunks = directory;
+            return directory[index];
+        }
+    }
+
+    /**
+     * Parallel arrays for one range of ids. A null text marks an empty slot.
+     * Callers hold the stripe lock of the id, or validate an optimistic stamp, around every access.
+     * The status words are shared across stripes and are only changed atomically.
+     */
+    private static final class Chunk {
+        private final byte[][] text = new byte[CHUNK_SIZE][];
+        private final int[] titleLengths = new int[CHUNK_SIZE];
+        private final long[] versions = new long[CHUNK_SIZE];
+        private final AtomicLongArray completed = new AtomicLongArray(CHUNK_SIZE >>> 6);
+
+        private Task read(int id, int slot) {
+            byte[] bytes = text[slot];
+            return bytes == null ? null : decode(id, bytes, titleLengths[slot], isCompleted(slot), versions[slot]);
+        }
+
+        private void write(int slot, Task task, byte[] bytes, int titleLength) {
+            titleLengths[slot] = titleLength;
+            versions[slot] = task.getVersion();
+            setCompleted(slot, task.isCompleted());
+            text[slot] = bytes;
+        }
+
+        private boolean isCompleted(int slot) {
+            return (completed.get(slot >>> 6) & (1L << slot)) != 0;
+        }
+
+        private void setCompleted(int slot, boolean value) {
+            long bit = 1L << slot;
+            if (value) {
+                completed.getAndAccumulate(slot >>> 6, bit, (word, mask) -> word | mask);
+            } else {
+                completed.getAndAccumulate(slot >>> 6, bit, (word, mask) -> word & ~mask);
+            }
+        }
+    }
+}
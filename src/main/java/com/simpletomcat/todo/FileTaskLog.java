@@ -0,0 +1,610 @@
+package com.simpletomcat.todo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only write-ahead log of task changes, written through a FileChannel.
+ * The log is a directory of numbered segment files plus snapshots. A checkpoint starts a new
+ * segment, writes a TaskSnapshotFile covering every older segment and then deletes those
+ * segments, so replay loads the latest snapshot and only the segments after it.
+ * Every record is framed by its payload length and a CRC32C of the payload, so a record torn
+ * by a crash is detected on replay and cut off before new records are appended.
+ * How hard an append works to reach the disk depends on the durability mode:
+ * SYNC writes and fsyncs each record before returning; GROUP queues records from concurrent
+ * writers for a flusher thread that writes and fsyncs them as one batch, returning to every
+ * writer once its batch is on disk; ASYNC returns as soon as the record is queued and fsyncs
+ * in the background, so a crash can lose the last ASYNC_FORCE_INTERVAL_MILLIS of changes.
+ * The records of an appendAll batch are queued together and made durable as one, whatever the mode.
+ * After a write error the log refuses further appends rather than risk a gap.
+ */
+public final class FileTaskLog implements TaskLog {
+
+    /**
+     * When an append is considered complete
+     */
+    public enum Durability {
+        /** Every append is written and fsynced on its own */
+        SYNC,
+        /** Concurrent appends share one write and fsync */
+        GROUP,
+        /** Appends return once queued; fsyncs happen in the background */
+        ASYNC
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(FileTaskLog.class);
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    // Each record starts with its payload length and the checksum of the payload
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+    private static final int BUFFER_BYTES = 64 * 1024;
+    // ASYNC writers block while this much is queued, so a slow disk cannot exhaust the heap
+    private static final int MAX_QUEUED_BYTES = 4 * 1024 * 1024;
+    static final long ASYNC_FORCE_INTERVAL_MILLIS = 100;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+
+    private final Path directory;
+    private final Durability durability;
+    private final ReentrantLock lock;
+    private final Condition queued;
+    private final Condition flushed;
+    private final CRC32C checksum;
+    private final Thread flusher;
+    private ByteBuffer queue;
+    private ByteBuffer spare;
+    private long queuedSequence;
+    private long flushedSequence;
+    private IOException failure;
+    private boolean replayed;
+    private boolean closed;
+    // The segment being appended to; opened by replay and switched by startCheckpoint
+    private FileChannel channel;
+    private long segment;
+    // Set while the flusher writes or forces outside the lock
+    private boolean flushing;
+
+    /**
+     * Open a log directory, creating it if needed
+     * @param directory Directory holding the segments and snapshots of the log
+     * @param durability When appends are considered complete
+     * @throws IOException if the directory cannot be created
+     */
+    public FileTaskLog(Path directory, Durability durability) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.durability = durability;
+        this.lock = new ReentrantLock();
+        this.queued = lock.newCondition();
+        this.flushed = lock.newCondition();
+        this.checksum = new CRC32C();
+        this.queue = ByteBuffer.allocate(BUFFER_BYTES);
+        this.spare = ByteBuffer.allocate(BUFFER_BYTES);
+        this.flusher = durability == Durability.SYNC ? null : new Thread(this::flushLoop, "task-log-flusher");
+        if (flusher != null) {
+            flusher.setDaemon(true);
+        }
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    @Override
+    public long replay(Replayer replayer) throws IOException {
+        lock.lock();
+        try {
+            if (replayed) {
+                throw new IllegalStateException("Task log has already been replayed");
+            }
+            deleteFiles("*" + SNAPSHOT_SUFFIX + ".tmp", Long.MAX_VALUE);
+            NavigableMap<Long, Path> snapshots = list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+            NavigableMap<Long, Path> segments = list(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+
+            // Load the latest snapshot, then replay the segments it does not cover
+            long count = 0;
+            long covered = 0;
+            if (!snapshots.isEmpty()) {
+                covered = snapshots.lastKey();
+                count += TaskSnapshotFile.load(snapshots.lastEntry().getValue(), replayer);
+            }
+            NavigableMap<Long, Path> tail = segments.tailMap(covered, false);
+            for (Map.Entry<Long, Path> entry : tail.headMap(tail.isEmpty() ? 0 : tail.lastKey(), false).entrySet()) {
+                try (FileChannel closedSegment = FileChannel.open(entry.getValue(), StandardOpenOption.READ)) {
+                    count += replaySegment(closedSegment, entry.getValue(), replayer, false);
+                }
+            }
+
+            // Keep appending to the last segment, or start the one after the snapshot
+            segment = tail.isEmpty() ? covered + 1 : tail.lastKey();
+            channel = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            count += replaySegment(channel, segmentPath(segment), replayer, true);
+
+            // A crash between writing a snapshot and deleting what it covers leaves files behind
+            deleteCovered(covered);
+            replayed = true;
+            if (flusher != null) {
+                flusher.start();
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void appendPut(Task task) throws IOException {
+        lock.lock();
+        try {
+            queuePut(task);
+            complete();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void appendDelete(int id) throws IOException {
+        lock.lock();
+        try {
+            queueDelete(id);
+            complete();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queue every change of the batch under one lock and make them durable together:
+     * one write and fsync in SYNC mode, one flusher batch to wait for in GROUP mode
+     */
+    @Override
+    public void appendAll(List<Change> changes) throws IOException {
+        if (changes.isEmpty()) {
+            return;
+        }
+        lock.lock();
+        try {
+            for (Change change : changes) {
+                if (change.isDelete()) {
+                    queueDelete(change.getId());
+                } else {
+                    queuePut(change.getTask());
+                }
+            }
+            complete();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long startCheckpoint() throws IOException {
+        lock.lock();
+        try {
+            checkWritable();
+            // Let the flusher finish with the current segment so nothing queued before the switch lands after it
+            while ((queue.position() > 0 || flushing) && failure == null) {
+                flushed.awaitUninterruptibly();
+            }
+            checkWritable();
+            FileChannel next = FileChannel.open(segmentPath(segment + 1), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel.force(false);
+            channel.close();
+            channel = next;
+            return segment++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int completeCheckpoint(long checkpoint, int nextId, Iterable<Task> tasks) throws IOException {
+        int count = TaskSnapshotFile.write(snapshotPath(checkpoint), checkpoint, nextId, tasks);
+        forceDirectory();
+        deleteCovered(checkpoint);
+        return count;
+    }
+
+    /**
+     * Flush every queued change to disk and close the current segment
+     * @throws IOException if queued changes could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queued.signalAll();
+            flushed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            if (flusher != null && flusher.isAlive()) {
+                joinFlusher();
+            }
+            if (failure == null && channel != null) {
+                channel.force(false);
+            }
+        } finally {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+        if (failure != null) {
+            throw new IOException("Task log failed to write queued changes", failure);
+        }
+    }
+
+    /**
+     * Make room for a record in the queue. Caller holds the lock.
+     */
+    private ByteBuffer reserve(int length) throws IOException {
+        while (durability == Durability.ASYNC && queue.position() >= MAX_QUEUED_BYTES && failure == null && !closed) {
+            flushed.awaitUninterruptibly();
+        }
+        checkWritable();
+        int needed = HEADER_BYTES + length;
+        if (queue.remaining() < needed) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(queue.capacity() * 2, queue.position() + needed));
+            queue.flip();
+            queue = larger.put(queue);
+        }
+        return queue;
+    }
+
+    /**
+     * Fail unless appends are allowed. Caller holds the lock.
+     */
+    private void checkWritable() throws IOException {
+        if (!replayed) {
+            throw new IllegalStateException("Task log must be replayed before appending");
+        }
+        if (closed) {
+            throw new IOException("Task log is closed");
+        }
+        if (failure != null) {
+            throw new IOException("Task log failed to write an earlier change", failure);
+        }
+    }
+
+    /**
+     * Encode a put record into the queue. Caller holds the lock.
+     */
+    private void queuePut(Task task) throws IOException {
+        byte[] title = task.getTitle().getBytes(StandardCharsets.UTF_8);
+        byte[] description = task.getDescription().getBytes(StandardCharsets.UTF_8);
+        int length = 1 + 4 + 8 + 1 + 4 + title.length + 4 + description.length;
+        ByteBuffer buffer = reserve(length);
+        int start = buffer.position();
+        buffer.putInt(length).putInt(0).put(PUT)
+                .putInt(task.getId())
+                .putLong(task.getVersion())
+                .put((byte) (task.isCompleted() ? 1 : 0))
+                .putInt(title.length).put(title)
+                .putInt(description.length).put(description);
+        seal(start, length);
+    }
+
+    /**
+     * Encode a delete record into the queue. Caller holds the lock.
+     */
+    private void queueDelete(int id) throws IOException {
+        int length = 1 + 4;
+        ByteBuffer buffer = reserve(length);
+        int start = buffer.position();
+        buffer.putInt(length).putInt(0).put(DELETE).putInt(id);
+        seal(start, length);
+    }
+
+    /**
+     * Checksum a record encoded at start. Caller holds the lock.
+     */
+    private void seal(int start, int length) {
+        checksum.reset();
+        checksum.update(queue.array(), start + HEADER_BYTES, length);
+        queue.putInt(start + 4, (int) checksum.getValue());
+    }
+
+    /**
+     * Make the records queued so far durable per the mode. Caller holds the lock.
+     */
+    private void complete() throws IOException {
+        switch (durability) {
+            case SYNC -> {
+                try {
+                    queue.flip();
+                    while (queue.hasRemaining()) {
+                        channel.write(queue);
+                    }
+                    channel.force(false);
+                } catch (IOException e) {
+                    failure = e;
+                    throw e;
+                } finally {
+                    queue.clear();
+                }
+            }
+            case GROUP -> {
+                long sequence = ++queuedSequence;
+                queued.signal();
+                while (flushedSequence < sequence && failure == null) {
+                    flushed.awaitUninterruptibly();
+                }
+                if (flushedSequence < sequence) {
+                    throw new IOException("Task log write failed", failure);
+                }
+            }
+            case ASYNC -> {
+                queuedSequence++;
+                queued.signal();
+            }
+        }
+    }
+
+    /**
+     * Body of the flusher thread: swap out the queued records, write them as one batch
+     * and fsync, then release the writers waiting on that batch
+     */
+    private void flushLoop() {
+        long forceInterval = TimeUnit.MILLISECONDS.toNanos(ASYNC_FORCE_INTERVAL_MILLIS);
+        long lastForce = System.nanoTime();
+        boolean unforced = false;
+        while (true) {
+            ByteBuffer batch;
+            long sequence;
+            FileChannel target;
+            lock.lock();
+            try {
+                while (queue.position() == 0 && !closed && !(unforced && System.nanoTime() - lastForce >= forceInterval)) {
+                    if (unforced) {
+                        awaitQuietly(lastForce + forceInterval - System.nanoTime());
+                    } else {
+                        queued.awaitUninterruptibly();
+                    }
+                }
+                if (queue.position() == 0 && closed) {
+                    // close() fsyncs whatever ASYNC left unforced
+                    return;
+                }
+                batch = queue;
+                sequence = queuedSequence;
+                target = channel;
+                queue = spare;
+                spare = null;
+                flushing = true;
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            try {
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    target.write(batch);
+                }
+                long now = System.nanoTime();
+                if (durability == Durability.GROUP || now - lastForce >= forceInterval) {
+                    target.force(false);
+                    lastForce = now;
+                    unforced = false;
+                } else {
+                    unforced = true;
+                }
+            } catch (IOException e) {
+                error = e;
+            }
+
+            lock.lock();
+            try {
+                batch.clear();
+                spare = batch;
+                flushing = false;
+                if (error != null) {
+                    logger.error("Failed to write task log segment {}", segment, error);
+                    failure = error;
+                } else {
+                    flushedSequence = sequence;
+                }
+                flushed.signalAll();
+                if (error != null) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Replay the records of one segment. A torn or corrupt tail is cut off in the last
+     * segment, where a crash can leave one; anywhere else it means lost changes.
+     * @return The number of records replayed
+     */
+    private long replaySegment(FileChannel segmentChannel, Path file, Replayer replayer, boolean last) throws IOException {
+        long validEnd = 0;
+        long count = 0;
+        long readPosition = 0;
+        boolean corrupt = false;
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+        while (!corrupt) {
+            int read = segmentChannel.read(buffer, readPosition);
+            if (read > 0) {
+                readPosition += read;
+            }
+            buffer.flip();
+            while (buffer.remaining() >= HEADER_BYTES) {
+                int start = buffer.position();
+                int length = buffer.getInt(start);
+                if (length <= 0 || length > MAX_RECORD_BYTES) {
+                    corrupt = true;
+                    break;
+                }
+                if (buffer.remaining() < HEADER_BYTES + length) {
+                    break;
+                }
+                checksum.reset();
+                checksum.update(buffer.array(), start + HEADER_BYTES, length);
+                if ((int) checksum.getValue() != buffer.getInt(start + 4)) {
+                    corrupt = true;
+                    break;
+                }
+                decode(buffer.slice(start + HEADER_BYTES, length), validEnd, replayer);
+                buffer.position(start + HEADER_BYTES + length);
+                validEnd += HEADER_BYTES + length;
+                count++;
+            }
+            if (read < 0) {
+                break;
+            }
+            buffer.compact();
+            if (!buffer.hasRemaining()) {
+                // A record larger than the buffer; grow until it fits
+                ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                buffer.flip();
+                buffer = larger.put(buffer);
+            }
+        }
+
+        long size = segmentChannel.size();
+        if (validEnd < size) {
+            if (!last) {
+                throw new IOException("Corrupt record at offset " + validEnd + " of " + file);
+            }
+            // Cut off the torn tail so new records follow the last good one
+            logger.warn("Discarding {} bytes of incomplete or corrupt records at the end of {}", size - validEnd, file);
+            segmentChannel.truncate(validEnd);
+            segmentChannel.force(true);
+        }
+        if (last) {
+            segmentChannel.position(validEnd);
+        }
+        return count;
+    }
+
+    /**
+     * List the numbered files of one kind, ordered by number
+     */
+    private NavigableMap<Long, Path> list(String prefix, String suffix) throws IOException {
+        NavigableMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                try {
+                    files.put(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())), path);
+                } catch (NumberFormatException e) {
+                    logger.warn("Ignoring unexpected file {}", path);
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Delete the segments a snapshot covers and the snapshots it supersedes
+     */
+    private void deleteCovered(long checkpoint) throws IOException {
+        deleteFiles(SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX, checkpoint + 1);
+        deleteFiles(SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX, checkpoint);
+    }
+
+    /**
+     * Delete files matching a glob whose number is below a bound
+     */
+    private void deleteFiles(String glob, long below) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, glob)) {
+            for (Path path : stream) {
+                String digits = path.getFileName().toString().replaceAll("[^0-9]", "");
+                if (digits.isEmpty() || Long.parseLong(digits) < below) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    /**
+     * Make the rename of a new snapshot durable
+     */
+    private void forceDirectory() {
+        try (FileChannel directoryChannel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            directoryChannel.force(true);
+        } catch (IOException e) {
+            // Not every platform can open a directory; the rename is still atomic there
+            logger.debug("Could not fsync {}", directory, e);
+        }
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(String.format("%s%019d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    private Path snapshotPath(long number) {
+        return directory.resolve(String.format("%s%019d%s", SNAPSHOT_PREFIX, number, SNAPSHOT_SUFFIX));
+    }
+
+    private void awaitQuietly(long nanos) {
+        try {
+            queued.awaitNanos(nanos);
+        } catch (InterruptedException e) {
+            // Only close() stops the flusher, so keep going
+        }
+    }
+
+    private void joinFlusher() throws IOException {
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while flushing the task log", e);
+        }
+    }
+
+    private static void decode(ByteBuffer record, long offset, Replayer replayer) throws IOException {
+        try {
+            byte type = record.get();
+            if (type == PUT) {
+                int id = record.getInt();
+                long version = record.getLong();
+                boolean completed = record.get() != 0;
+                String title = readString(record);
+                String description = readString(record);
+                replayer.put(new Task(id, title, description, completed, version));
+            } else if (type == DELETE) {
+                replayer.delete(record.getInt());
+            } else {
+                throw new IOException("Unknown task log record type " + type + " at offset " + offset);
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+            throw new IOException("Malformed task log record at offset " + offset, e);
+        }
+    }
+
+    private static String readString(ByteBuffer record) {
+        byte[] bytes = new byte[record.getInt()];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
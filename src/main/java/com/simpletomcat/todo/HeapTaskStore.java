@@ -0,0 +1,127 @@
+package com.simpletomcat.todo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Id-indexed storage for tasks on the Java heap.
+ * Task ids are handed out sequentially, so a task lives in the slot matching its id
+ * and lookups, replacements and removals are O(1). Iterating the slots in index
+ * order yields the tasks in insertion order.
+ * Slots are grouped into fixed-size chunks of atomic references. Reads never lock;
+ * growing the chunk directory is the only synchronized step and it copies chunk
+ * references, so writes to existing chunks are never lost. Callers must serialize
+ * writes to the same id.
+ */
+final class HeapTaskStore implements TaskStore {
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private volatile AtomicReferenceArray<Task>[] chunks;
+    private final AtomicInteger size;
+    private final AtomicInteger highestId;
+
+    HeapTaskStore() {
+        this.chunks = newDirectory(1);
+        this.size = new AtomicInteger();
+        this.highestId = new AtomicInteger();
+    }
+
+    @Override
+    public void put(Task task) {
+        int id = task.getId();
+        if (id <= 0) {
+            throw new IllegalArgumentException("Task ID must be positive");
+        }
+        if (!chunkFor(id).compareAndSet(id & CHUNK_MASK, null, task)) {
+            throw new IllegalArgumentException("Task ID already in use: " + id);
+        }
+        size.incrementAndGet();
+        highestId.accumulateAndGet(id, Math::max);
+    }
+
+    @Override
+    public Task get(int id) {
+        AtomicReferenceArray<Task> chunk = existingChunk(chunks, id);
+        return chunk == null ? null : chunk.get(id & CHUNK_MASK);
+    }
+
+    @Override
+    public Task replace(Task task) {
+        int id = task.getId();
+        Task previous = get(id);
+        if (previous != null) {
+            existingChunk(chunks, id).set(id & CHUNK_MASK, task);
+        }
+        return previous;
+    }
+
+    @Override
+    public Task remove(int id) {
+        AtomicReferenceArray<Task> chunk = existingChunk(chunks, id);
+        Task task = chunk == null ? null : chunk.getAndSet(id & CHUNK_MASK, null);
+        if (task != null) {
+            size.decrementAndGet();
+        }
+        return task;
+    }
+
+    @Override
+    public List<Task> toList() {
+        // Read the highest id before the directory so every chunk up to it is visible
+        int last = highestId.get();
+        AtomicReferenceArray<Task>[] directory = chunks;
+        List<Task> result = new ArrayList<>(size.get());
+        for (int id = 1; id <= last; id++) {
+            AtomicReferenceArray<Task> chunk = existingChunk(directory, id);
+            Task task = chunk == null ? null : chunk.get(id & CHUNK_MASK);
+            if (task != null) {
+                result.add(task);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public int getHighestId() {
+        return highestId.get();
+    }
+
+    private static AtomicReferenceArray<Task> existingChunk(AtomicReferenceArray<Task>[] directory, int id) {
+        int index = id >>> CHUNK_BITS;
+        return id <= 0 || index >= directory.length ? null : directory[index];
+    }
+
+    private AtomicReferenceArray<Task> chunkFor(int id) {
+        AtomicReferenceArray<Task> chunk = existingChunk(chunks, id);
+        if (chunk != null) {
+            return chunk;
+        }
+        synchronized (this) {
+            int index = id >>> CHUNK_BITS;
+            AtomicReferenceArray<Task>[] directory = chunks;
+            if (index < directory.length && directory[index] != null) {
+                return directory[index];
+            }
+            // Publish a new directory rather than filling a slot of the one readers hold
+            directory = Arrays.copyOf(directory, Math.max(index + 1, directory.length));
+            directory[index] = new AtomicReferenceArray<>(CHUNK_SIZE);
+            chunks = directory;
+            return directory[index];
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static AtomicReferenceArray<Task>[] newDirectory(int length) {
+        return (AtomicReferenceArray<Task>[]) new AtomicReferenceArray<?>[length];
+    }
+}
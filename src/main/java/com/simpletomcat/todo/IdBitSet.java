@@ -0,0 +1,99 @@
+package com.simpletomcat.todo;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent growable set of task ids backed by one bit per id.
+ * Bits live in fixed-size chunks of atomic words, grown the same way as HeapTaskStore slots,
+ * so reads never lock and setting or clearing a bit is a single atomic word update.
+ * Scanning for the next member skips 64 ids per word and whole missing chunks at once.
+ */
+final class IdBitSet {
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+    private static final int WORDS_PER_CHUNK = (1 << CHUNK_BITS) >>> 6;
+
+    private volatile AtomicLongArray[] chunks;
+
+    IdBitSet() {
+        this.chunks = new AtomicLongArray[1];
+    }
+
+    void set(int id) {
+        long bit = 1L << id;
+        chunkFor(id).getAndAccumulate(wordIndex(id), bit, (word, mask) -> word | mask);
+    }
+
+    void clear(int id) {
+        AtomicLongArray chunk = existingChunk(chunks, id);
+        if (chunk != null) {
+            long bit = 1L << id;
+            chunk.getAndAccumulate(wordIndex(id), bit, (word, mask) -> word & ~mask);
+        }
+    }
+
+    boolean get(int id) {
+        AtomicLongArray chunk = existingChunk(chunks, id);
+        return chunk != null && (chunk.get(wordIndex(id)) & (1L << id)) != 0;
+    }
+
+    /**
+     * Find the smallest member at or above an id
+     * @param fromId Id to start from
+     * @return The next member id, or -1 if there is none
+     */
+    int nextSetBit(int fromId) {
+        if (fromId < 0) {
+            fromId = 0;
+        }
+        AtomicLongArray[] directory = chunks;
+        int chunkIndex = fromId >>> CHUNK_BITS;
+        int wordIndex = wordIndex(fromId);
+        // Mask off the bits below fromId in the first word
+        long mask = -1L << fromId;
+        for (; chunkIndex < directory.length; chunkIndex++, wordIndex = 0, mask = -1L) {
+            AtomicLongArray chunk = directory[chunkIndex];
+            if (chunk == null) {
+                continue;
+            }
+            for (; wordIndex < WORDS_PER_CHUNK; wordIndex++, mask = -1L) {
+                long word = chunk.get(wordIndex) & mask;
+                if (word != 0) {
+                    return (chunkIndex << CHUNK_BITS) + (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static int wordIndex(int id) {
+        return (id & CHUNK_MASK) >>> 6;
+    }
+
+    private static AtomicLongArray existingChunk(AtomicLongArray[] directory, int id) {
+        int index = id >>> CHUNK_BITS;
+        return id < 0 || index >= directory.length ? null : directory[index];
+    }
+
+    private AtomicLongArray chunkFor(int id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Task ID must not be negative");
+        }
+        AtomicLongArray chunk = existingChunk(chunks, id);
+        if (chunk != null) {
+            return chunk;
+        }
+        synchronized (this) {
+            int index = id >>> CHUNK_BITS;
+            AtomicLongArray[] directory = chunks;
+            if (index < directory.length && directory[index] != null) {
+                return directory[index];
+            }
+            directory = Arrays.copyOf(directory, Math.max(index + 1, directory.length));
+            directory[index] = new AtomicLongArray(WORDS_PER_CHUNK);
+            chunks = directory;
+            return directory[index];
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.simpletomcat.todo;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of UTF-8 JSON responses for the task listing and for single tasks.
+ * The listing is keyed by the TaskManager version of its snapshot and each task by its
+ * own version, so an entry is served only while the data it was built from is current.
+ * Stale entries are rebuilt on the next read; TODOService also evicts tasks it mutates.
+ * Once the task entries reach their limit, new tasks replace old ones chosen by the clock
+ * (second chance) algorithm: a hit only sets a flag on the entry, so reads stay lock-free,
+ * and an insertion sweeps a ring of cached ids under a lock, sparing entries read since the
+ * last sweep. Hits, misses, evictions and the number of entries are counted for the metrics.
+ */
+final class JsonResponseCache {
+    static final int DEFAULT_MAX_TASK_ENTRIES = 10_000;
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final int maxTaskEntries;
+    private final Map<Integer, Entry> taskEntries;
+    // Ids in slots swept by the clock hand, guarded by the array itself. An id removed by invalidate
+    // leaves its slot behind, reused when the hand comes round, or evicting the id early if it was cached again
+    private final int[] clockIds;
+    private int clockSize;
+    private int clockHand;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+    private volatile Entry listEntry;
+
+    JsonResponseCache(ObjectMapper objectMapper) {
+        this(objectMapper, true, DEFAULT_MAX_TASK_ENTRIES);
+    }
+
+    JsonResponseCache(ObjectMapper objectMapper, boolean enabled, int maxTaskEntries) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.maxTaskEntries = maxTaskEntries;
+        this.taskEntries = new ConcurrentHashMap<>();
+        this.clockIds = new int[enabled ? maxTaskEntries : 0];
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+    }
+
+    /**
+     * Get the JSON for a snapshot of all tasks
+     * @param snapshot Snapshot to serialize
+     * @return UTF-8 JSON array of the snapshot tasks
+     * @throws JsonProcessingException if serialization fails
+     */
+    byte[] listJson(TaskSnapshot snapshot) throws JsonProcessingException {
+        Entry entry = listEntry;
+        if (entry != null && entry.version == snapshot.getVersion()) {
+            hits.increment();
+            return entry.json;
+        }
+        misses.increment();
+        byte[] json = objectMapper.writeValueAsBytes(snapshot.getTasks());
+        if (enabled && (entry == null || entry.version < snapshot.getVersion())) {
+            listEntry = new Entry(snapshot.getVersion(), json);
+        }
+        return json;
+    }
+
+    /**
+     * Get the JSON for a single task
+     * @param task Task to serialize
+     * @return UTF-8 JSON object of the task
+     * @throws JsonProcessingException if serialization fails
+     */
+    byte[] taskJson(Task task) throws JsonProcessingException {
+        Entry entry = taskEntries.get(task.getId());
+        if (entry != null && entry.version == task.getVersion()) {
+            if (!entry.referenced) {
+                entry.referenced = true;
+            }
+            hits.increment();
+            return entry.json;
+        }
+        misses.increment();
+        byte[] json = objectMapper.writeValueAsBytes(task);
+        if (enabled && maxTaskEntries > 0) {
+            Entry fresh = new Entry(task.getVersion(), json);
+            // An id already cached keeps its clock slot; if it was evicted meanwhile, the entry is dropped
+            if (entry == null || taskEntries.computeIfPresent(task.getId(), (id, current) -> newer(current, fresh)) == null) {
+                insert(task.getId(), fresh);
+            }
+        }
+        return json;
+    }
+
+    /**
+     * Drop the cached JSON of a task and of the listing after a mutation
+     * @param taskId ID of the mutated task
+     */
+    void invalidate(int taskId) {
+        taskEntries.remove(taskId);
+        listEntry = null;
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return The number of task entries dropped to make room for others
+     */
+    long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return The number of cached responses, task entries and the listing together
+     */
+    int size() {
+        return taskEntries.size() + (listEntry == null ? 0 : 1);
+    }
+
+    private static Entry newer(Entry current, Entry fresh) {
+        return current.version > fresh.version ? current : fresh;
+    }
+
+    /**
+     * Cache the entry of an id that has none, evicting the first unreferenced entry the clock
+     * hand finds once every slot is taken. Every cached id has a slot, so the number of task
+     * entries never exceeds the limit.
+     */
+    private void insert(int id, Entry fresh) {
+        synchronized (clockIds) {
+            if (taskEntries.containsKey(id)) {
+                taskEntries.computeIfPresent(id, (key, current) -> newer(current, fresh));
+                return;
+            }
+            if (clockSize < clockIds.length) {
+                clockIds[clockSize++] = id;
+                taskEntries.put(id, fresh);
+                return;
+            }
+            // Each pass clears the flags it skips, so a second pass always finds a victim
+            while (true) {
+                int candidate = clockIds[clockHand];
+                Entry current = taskEntries.get(candidate);
+                if (current != null && current.referenced) {
+                    current.referenced = false;
+                    clockHand = (clockHand + 1) % clockIds.length;
+                    continue;
+                }
+                if (current != null) {
+                    taskEntries.remove(candidate);
+                    evictions.increment();
+                }
+                clockIds[clockHand] = id;
+                clockHand = (clockHand + 1) % clockIds.length;
+                taskEntries.put(id, fresh);
+                return;
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final long version;
+        private final byte[] json;
+        // Set by reads and cleared by the clock hand
+        private volatile boolean referenced;
+
+        private Entry(long version, byte[] json) {
+            this.version = version;
+            this.json = json;
+        }
+    }
+}
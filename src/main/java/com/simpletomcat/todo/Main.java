@@ -1,326 +1,349 @@
 package com.simpletomcat.todo;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.catalina.Context;
+import org.apache.catalina.Executor;
+import org.apache.catalina.Lifecycle;
 import org.apache.catalina.LifecycleException;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.core.StandardThreadExecutor;
+import org.apache.catalina.core.StandardVirtualThreadExecutor;
 import org.apache.catalina.startup.Tomcat;
+import org.apache.coyote.http11.Http11Nio2Protocol;
+import org.apache.coyote.http2.Http2Protocol;
+import org.apache.tomcat.util.modeler.Registry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Main class to launch embedded Tomcat server
  */
 public final class Main {
-    private static final int PORT = 8080;
     private static final String CONTEXT_PATH = "";
     private static final Logger logger = LoggerFactory.getLogger(Main.class);
-    private static final String WEBAPP_DIR = "src/main/resources";
-    private static final String STATIC_DIR = "src/main/resources/static";
-    private static final String HTML_CONTENT = """
-            <!DOCTYPE html>
-            <html lang="en">
-            <head>
-                <meta charset="UTF-8">
-                <meta name="viewport" content="width=device-width, initial-scale=1.0">
-                <title>Todo List</title>
-                <style>
-                    body {
-                        font-family: Arial, sans-serif;
-                        max-width: 800px;
-                        margin: 0 auto;
-                        padding: 20px;
-                    }
-                    h1 {
-                        color: #333;
-                        text-align: center;
-                    }
-                    .task {
-                        border: 1px solid #ddd;
-                        padding: 15px;
-                        margin-bottom: 10px;
-                        border-radius: 5px;
-                    }
-                    .task h3 {
-                        margin-top: 0;
-                    }
-                    .task.completed {
-                        background-color: #f8fff8;
-                        border-left: 5px solid #4CAF50;
-                    }
-                    .task-actions {
-                        margin-top: 10px;
-                    }
-                    button {
-                        padding: 5px 10px;
-                        margin-right: 5px;
-                        cursor: pointer;
-                    }
-                    .add-task {
-                        margin-bottom: 20px;
-                        padding: 15px;
-                        border: 1px solid #ddd;
-                        border-radius: 5px;
-                    }
-                    .form-group {
-                        margin-bottom: 10px;
-                    }
-                    input, textarea {
-                        width: 100%;
-                        padding: 8px;
-                        box-sizing: border-box;
-                    }
-                    .submit-btn {
-                        background-color: #4CAF50;
-                        color: white;
-                        border: none;
-                        padding: 10px 15px;
-                        text-align: center;
-                        cursor: pointer;
-                    }
-                </style>
-            </head>
-            <body>
-                <h1>Todo List</h1>
-                
-                <div class="add-task">
-                    <h2>Add New Task</h2>
-                    <div class="form-group">
-                        <label for="taskTitle">Title:</label>
-                        <input type="text" id="taskTitle" name="title" required>
-                    </div>
-                    <div class="form-group">
-                        <label for="taskDescription">Description:</label>
-                        <textarea id="taskDescription" name="description" rows="3" required></textarea>
-                    </div>
-                    <button type="button" class="submit-btn" onclick="addTask()">Add Task</button>
-                </div>
-                
-                <div id="taskList">
-                    <!-- Tasks will be loaded here -->
-                </div>
-                
-                <script>
-                    // Load tasks when page loads
-                    document.addEventListener('DOMContentLoaded', loadTasks);
-                    
-                    // Function to load all tasks
-                    function loadTasks() {
-                        fetch('/api/tasks')
-                            .then(response => response.json())
-                            .then(tasks => {
-                                const taskList = document.getElementById('taskList');
-                                taskList.innerHTML = '';
-                                
-                                tasks.forEach(task => {
-                                    const taskElement = createTaskElement(task);
-                                    taskList.appendChild(taskElement);
-                                });
-                            })
-                            .catch(error => console.error('Error loading tasks:', error));
-                    }
-                    
-                    // Function to create a task element
-                    function createTaskElement(task) {
-                        const div = document.createElement('div');
-                        div.className = 'task' + (task.completed ? ' completed' : '');
-                        div.id = 'task-' + task.id;
-                        
-                        const title = document.createElement('h3');
-                        title.textContent = task.title;
-                        
-                        const description = document.createElement('p');
-                        description.textContent = task.description;
-                        
-                        const status = document.createElement('p');
-                        status.innerHTML = `<strong>Status:</strong> ${task.completed ? 'Completed' : 'Pending'}`;
-                        
-                        const actions = document.createElement('div');
-                        actions.className = 'task-actions';
-                        
-                        const toggleBtn = document.createElement('button');
-                        toggleBtn.textContent = task.completed ? 'Mark as Pending' : 'Mark as Completed';
-                        toggleBtn.onclick = () => toggleTaskStatus(task.id, !task.completed);
-                        
-                        const deleteBtn = document.createElement('button');
-                        deleteBtn.textContent = 'Delete';
-                        deleteBtn.onclick = () => deleteTask(task.id);
-                        
-                        actions.appendChild(toggleBtn);
-                        actions.appendChild(deleteBtn);
-                        
-                        div.appendChild(title);
-                        div.appendChild(description);
-                        div.appendChild(status);
-                        div.appendChild(actions);
-                        
-                        return div;
-                    }
-                    
-                    // Function to add a new task
-                    function addTask() {
-                        const title = document.getElementById('taskTitle').value.trim();
-                        const description = document.getElementById('taskDescription').value.trim();
-                        
-                        if (!title || !description) {
-                            alert('Please fill in all fields');
-                            return;
-                        }
-                        
-                        const newTask = {
-                            title: title,
-                            description: description
-                        };
-                        
-                        fetch('/api/tasks', {
-                            method: 'POST',
-                            headers: {
-                                'Content-Type': 'application/json'
-                            },
-                            body: JSON.stringify(newTask)
-                        })
-                        .then(response => response.json())
-                        .then(task => {
-                            // Clear form
-                            document.getElementById('taskTitle').value = '';
-                            document.getElementById('taskDescription').value = '';
-                            
-                            // Add the new task to the list
-                            const taskList = document.getElementById('taskList');
-                            const taskElement = createTaskElement(task);
-                            taskList.insertBefore(taskElement, taskList.firstChild);
-                        })
-                        .catch(error => console.error('Error adding task:', error));
-                    }
-                    
-                    // Function to toggle task status
-                    function toggleTaskStatus(id, completed) {
-                        const updateTask = { completed: completed };
-                        
-                        fetch(`/api/tasks/${id}`, {
-                            method: 'PUT',
-                            headers: {
-                                'Content-Type': 'application/json'
-                            },
-                            body: JSON.stringify(updateTask)
-                        })
-                        .then(response => response.json())
-                        .then(updatedTask => {
-                            // Update the task in the UI
-                            const taskElement = document.getElementById('task-' + id);
-                            if (updatedTask.completed) {
-                                taskElement.classList.add('completed');
-                            } else {
-                                taskElement.classList.remove('completed');
-                            }
-                            
-                            // Update status text
-                            const status = taskElement.querySelector('p:nth-child(3)');
-                            status.innerHTML = `<strong>Status:</strong> ${updatedTask.completed ? 'Completed' : 'Pending'}`;
-                            
-                            // Update toggle button
-                            const toggleBtn = taskElement.querySelector('button:first-child');
-                            toggleBtn.textContent = updatedTask.completed ? 'Mark as Pending' : 'Mark as Completed';
-                            toggleBtn.onclick = () => toggleTaskStatus(id, !updatedTask.completed);
-                        })
-                        .catch(error => console.error('Error updating task:', error));
-                    }
-                    
-                    // Function to delete a task
-                    function deleteTask(id) {
-                        if (confirm('Are you sure you want to delete this task?')) {
-                            fetch(`/api/tasks/${id}`, {
-                                method: 'DELETE'
-                            })
-                            .then(response => {
-                                if (response.ok) {
-                                    // Remove the task from the UI
-                                    const taskElement = document.getElementById('task-' + id);
-                                    taskElement.remove();
-                                } else {
-                                    console.error('Failed to delete task');
-                                }
-                            })
-                            .catch(error => console.error('Error deleting task:', error));
-                        }
-                    }
-                </script>
-            </body>
-            </html>
-            """;
-
+    // The UI is served from memory out of this classpath directory, cached by browsers for todo.staticMaxAgeSeconds
+    private static final String STATIC_DIR = "static";
+    static final String STATIC_MAX_AGE = "todo.staticMaxAgeSeconds";
+    private static final int DEFAULT_STATIC_MAX_AGE_SECONDS = 3600;
+    // Settings are read through ServerConfig from the command line, system properties, environment or todo.properties
+    static final String PORT = "todo.port";
+    private static final int DEFAULT_PORT = 8080;
+    // Tasks are logged under todo.dataDir with the durability named by todo.durability
+    static final String DATA_DIR = "todo.dataDir";
+    private static final String DEFAULT_DATA_DIR = "data";
+    static final String DURABILITY = "todo.durability";
+    // "compact" keeps tasks as primitive arrays and "mapped" in memory-mapped files under todo.dataDir
+    static final String STORAGE = "todo.storage";
+    private static final String MAPPED_STORE_DIR = "store";
+    private static final String TOMCAT_BASE_DIR = "tomcat";
+    static final String SNAPSHOT_INTERVAL = "todo.snapshotIntervalSeconds";
+    private static final int DEFAULT_SNAPSHOT_INTERVAL_SECONDS = 300;
+    // "virtual" handles each request on its own virtual thread, "platform" on a pool of todo.maxThreads threads
+    static final String THREADS = "todo.threads";
+    static final String MAX_THREADS = "todo.maxThreads";
+    private static final int DEFAULT_MAX_THREADS = 200;
+    static final String MAX_CONNECTIONS = "todo.maxConnections";
+    private static final int DEFAULT_MAX_CONNECTIONS = 8192;
+    // Connections waiting in the OS queue once maxConnections is reached
+    static final String ACCEPT_COUNT = "todo.acceptCount";
+    private static final int DEFAULT_ACCEPT_COUNT = 100;
+    // Requests served on one keep-alive connection before it is closed; -1 for no limit
+    static final String MAX_KEEP_ALIVE_REQUESTS = "todo.maxKeepAliveRequests";
+    private static final int DEFAULT_MAX_KEEP_ALIVE_REQUESTS = 100;
+    // "nio" or "nio2" selects the connector implementation
+    static final String PROTOCOL = "todo.protocol";
+    private static final String NIO_PROTOCOL = "org.apache.coyote.http11.Http11NioProtocol";
+    private static final String NIO2_PROTOCOL = "org.apache.coyote.http11.Http11Nio2Protocol";
+    // Responses of at least todo.compressionMinSize bytes are gzipped for clients that accept it
+    static final String COMPRESSION = "todo.compression";
+    static final String COMPRESSION_MIN_SIZE = "todo.compressionMinSize";
+    private static final int DEFAULT_COMPRESSION_MIN_SIZE = 2048;
+    static final String COMPRESSIBLE_MIME_TYPES = "todo.compressibleMimeTypes";
+    private static final String DEFAULT_COMPRESSIBLE_MIME_TYPES = "application/json,text/html,text/css,application/javascript";
+    // Accept HTTP/2 over cleartext via the h2c upgrade from HTTP/1.1
+    static final String HTTP2 = "todo.http2";
+    // Register Tomcat's MBeans; creating the platform MBean server adds noticeably to startup
+    static final String JMX = "todo.jmx";
+    // Serve a few requests to itself and exit, so -XX:ArchiveClassesAtExit records the classes a real run loads
+    static final String TRAINING_RUN = "todo.trainingRun";
     private Main() {
         // Utility class should not be instantiated
     }
     
     public static void main(String[] args) {
         try {
-            startServer();
+            ServerConfig config = ServerConfig.load(args);
+            boolean trainingRun = config.getBoolean(TRAINING_RUN, false);
+            Tomcat tomcat = startServer(config);
+            if (trainingRun) {
+                exerciseServer(tomcat.getConnector().getLocalPort());
+                tomcat.stop();
+                tomcat.destroy();
+                return;
+            }
+            
+            // Stop accepting requests and flush the task log when the JVM exits
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    tomcat.stop();
+                    tomcat.destroy();
+                } catch (LifecycleException e) {
+                    logger.error("Failed to stop server", e);
+                }
+            }));
+            
+            // Keep server running
+            tomcat.getServer().await();
         } catch (Exception e) {
             logger.error("Failed to start server", e);
             System.exit(1);
         }
     }
 
-    private static void startServer() throws LifecycleException, IOException {
+    /**
+     * Start the server with its task log recovered. Stopping the returned Tomcat also
+     * stops checkpointing and closes the task log and the task store.
+     * @param config Server settings
+     * @return The started Tomcat
+     * @throws LifecycleException if Tomcat fails to start
+     * @throws IOException if the task log cannot be opened
+     */
+    static Tomcat startServer(ServerConfig config) throws LifecycleException, IOException {
         // Create Tomcat instance
+        if (!config.getBoolean(JMX, false)) {
+            Registry.disableRegistry();
+        }
         Tomcat tomcat = new Tomcat();
+        // The bare context needs no work files, so a fixed base under the data directory is reused across
+        // starts. It must be set before anything asks for the server, which fixes the base on first use
+        tomcat.setBaseDir(Paths.get(config.getString(DATA_DIR, DEFAULT_DATA_DIR), TOMCAT_BASE_DIR).toString());
         
         // Configure the HTTP connector
-        tomcat.getConnector();
-        tomcat.setPort(PORT);
-        
-        // Create temp directory for work directory
-        Path tempPath = createTempDirectory();
-        tomcat.setBaseDir(tempPath.toString());
+        Connector connector = createConnector(config);
+        tomcat.setConnector(connector);
+        configureExecutor(connector, config);
         
-        // Create context
-        Context context = tomcat.addWebapp(CONTEXT_PATH, new File(WEBAPP_DIR).getAbsolutePath());
+        tomcat.getHost().setAutoDeploy(false);
         
-        // Setup static resources
-        setupStaticResources();
+        // A bare context: no web.xml, JSP support or annotation and TLD scanning
+        Context context = tomcat.addContext(CONTEXT_PATH, null);
+        Tomcat.addServlet(context, "static",
+                new StaticContentServlet(STATIC_DIR, config.getInt(STATIC_MAX_AGE, DEFAULT_STATIC_MAX_AGE_SECONDS), "index.html"));
+        context.addServletMappingDecoded("/", "static");
         
-        // Add static file serving support
-        String staticPath = new File(STATIC_DIR).getAbsolutePath();
-        context.setDocBase(staticPath);
-        context.addWelcomeFile("index.html");
+        // Recover tasks from the log before serving requests
+        FileTaskLog taskLog = openTaskLog(config);
+        long recoveryStart = System.nanoTime();
+        TaskStore store = null;
+        TaskManager taskManager;
+        try {
+            store = createTaskStore(config);
+            taskManager = new TaskManager(taskLog, store);
+        } catch (RuntimeException e) {
+            if (store != null) {
+                store.close();
+            }
+            taskLog.close();
+            throw e;
+        }
+        logger.info("Recovered {} tasks in {} ms", taskManager.getTaskCount(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - recoveryStart));
+        scheduleCheckpoints(tomcat, taskManager, taskLog, store, config);
         
         // Register task management service
-        Tomcat.addServlet(context, "todoService", new TODOService());
+        TODOService service = new TODOService(taskManager);
+        Tomcat.addServlet(context, "todoService", service);
         context.addServletMappingDecoded("/api/tasks/*", "todoService");
+        TaskStreamServlet streamServlet = new TaskStreamServlet(taskManager.getEvents());
+        Wrapper stream = Tomcat.addServlet(context, "taskStream", streamServlet);
+        stream.setAsyncSupported(true);
+        context.addServletMappingDecoded("/api/tasks/stream", "taskStream");
+        Tomcat.addServlet(context, "metrics", new MetricsServlet(taskManager, service, streamServlet));
+        context.addServletMappingDecoded("/metrics", "metrics");
         
         // Start server
+        config.logEffectiveSettings(logger);
         tomcat.start();
-        logger.info("Server started on port {}", PORT);
-        logger.info("Access the application at http://localhost:{}/", PORT);
-        
-        // Keep server running
-        tomcat.getServer().await();
+        logger.info("Server started on port {}", connector.getLocalPort());
+        logger.info("Access the application at http://localhost:{}/", connector.getLocalPort());
+        return tomcat;
     }
 
-    private static Path createTempDirectory() throws IOException {
-        return Files.createTempDirectory("tomcat-temp");
+    /**
+     * Send the requests the UI makes, including a short-lived task, to a running server
+     * @param port Port the server listens on
+     * @throws IOException if a request fails
+     */
+    private static void exerciseServer(int port) throws IOException {
+        String base = "http://localhost:" + port;
+        request("GET", base + "/", null);
+        request("GET", base + "/api/tasks", null);
+        request("GET", base + "/api/tasks/stats", null);
+        String created = request("POST", base + "/api/tasks", "{\"title\":\"Training\",\"description\":\"Class data sharing run\"}");
+        int id = new ObjectMapper().readTree(created).get("id").asInt();
+        request("PUT", base + "/api/tasks/" + id, "{\"completed\":true}");
+        request("GET", base + "/api/tasks/" + id, null);
+        request("DELETE", base + "/api/tasks/" + id, null);
+        logger.info("Training run finished");
     }
-    
-    private static void setupStaticResources() throws IOException {
-        // Create static directory if it doesn't exist
-        Path staticDir = Paths.get(STATIC_DIR);
-        if (!Files.exists(staticDir)) {
-            Files.createDirectories(staticDir);
+
+    private static String request(String method, String url, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) URI.create(url).toURL().openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        if (connection.getResponseCode() >= 400) {
+            throw new IOException(method + " " + url + " failed with " + connection.getResponseCode());
+        }
+        try (InputStream in = connection.getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static Connector createConnector(ServerConfig config) {
+        String protocol = config.getString(PROTOCOL, "nio");
+        Connector connector;
+        if (protocol.equalsIgnoreCase("nio")) {
+            connector = new Connector(NIO_PROTOCOL);
+        } else if (protocol.equalsIgnoreCase("nio2")) {
+            connector = new Connector(NIO2_PROTOCOL);
+        } else {
+            throw new IllegalArgumentException("Unknown " + PROTOCOL + ": " + protocol);
         }
+        connector.setPort(config.getInt(PORT, DEFAULT_PORT));
+        connector.setProperty("maxConnections", Integer.toString(config.getInt(MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS)));
+        connector.setProperty("acceptCount", Integer.toString(config.getInt(ACCEPT_COUNT, DEFAULT_ACCEPT_COUNT)));
+        connector.setProperty("maxKeepAliveRequests",
+                Integer.toString(config.getInt(MAX_KEEP_ALIVE_REQUESTS, DEFAULT_MAX_KEEP_ALIVE_REQUESTS)));
         
-        // Create HTML file if it doesn't exist
-        Path htmlFile = staticDir.resolve("index.html");
-        if (!Files.exists(htmlFile)) {
-            createHtmlFile(htmlFile);
+        // Tomcat compresses in the connector, so cached and streamed responses are both covered
+        if (config.getBoolean(COMPRESSION, false)) {
+            connector.setProperty("compression", "on");
+            connector.setProperty("compressionMinSize",
+                    Integer.toString(config.getInt(COMPRESSION_MIN_SIZE, DEFAULT_COMPRESSION_MIN_SIZE)));
+            connector.setProperty("compressibleMimeType", config.getString(COMPRESSIBLE_MIME_TYPES, DEFAULT_COMPRESSIBLE_MIME_TYPES));
         }
+        if (config.getBoolean(HTTP2, false)) {
+            connector.addUpgradeProtocol(new Http2Protocol());
+        }
+        return connector;
     }
-    
-    private static void createHtmlFile(Path htmlFilePath) throws IOException {
-        Files.write(htmlFilePath, HTML_CONTENT.getBytes(StandardCharsets.UTF_8));
+
+    private static void configureExecutor(Connector connector, ServerConfig config) {
+        String threads = config.getString(THREADS, "platform");
+        if (connector.getProtocolHandler() instanceof Http11Nio2Protocol) {
+            // NIO2 hands its executor to an AsynchronousChannelGroup that shuts it down with the
+            // connector, so the connector creates an executor of its own rather than sharing one
+            if (threads.equalsIgnoreCase("virtual")) {
+                connector.setProperty("useVirtualThreads", "true");
+            } else if (threads.equalsIgnoreCase("platform")) {
+                connector.setProperty("maxThreads", Integer.toString(config.getInt(MAX_THREADS, DEFAULT_MAX_THREADS)));
+            } else {
+                throw new IllegalArgumentException("Unknown " + THREADS + ": " + threads);
+            }
+            return;
+        }
+        Executor executor;
+        if (threads.equalsIgnoreCase("virtual")) {
+            StandardVirtualThreadExecutor virtualThreads = new StandardVirtualThreadExecutor();
+            virtualThreads.setName("httpExecutor");
+            virtualThreads.setNamePrefix("http-virtual-");
+            executor = virtualThreads;
+        } else if (threads.equalsIgnoreCase("platform")) {
+            StandardThreadExecutor pool = new StandardThreadExecutor();
+            pool.setName("httpExecutor");
+            pool.setNamePrefix("http-exec-");
+            pool.setMaxThreads(config.getInt(MAX_THREADS, DEFAULT_MAX_THREADS));
+            pool.setMinSpareThreads(Math.min(pool.getMinSpareThreads(), pool.getMaxThreads()));
+            executor = pool;
+        } else {
+            throw new IllegalArgumentException("Unknown " + THREADS + ": " + threads);
+        }
+        
+        // The service starts and stops the executor together with the connector
+        connector.getService().addExecutor(executor);
+        connector.getProtocolHandler().setExecutor(executor);
+    }
+
+    private static FileTaskLog openTaskLog(ServerConfig config) throws IOException {
+        Path dataDir = Paths.get(config.getString(DATA_DIR, DEFAULT_DATA_DIR));
+        FileTaskLog.Durability durability = FileTaskLog.Durability.valueOf(
+                config.getString(DURABILITY, FileTaskLog.Durability.GROUP.name()).toUpperCase(Locale.ROOT));
+        return new FileTaskLog(dataDir, durability);
+    }
+
+    private static TaskStore createTaskStore(ServerConfig config) {
+        String storage = config.getString(STORAGE, "heap");
+        if (storage.equalsIgnoreCase("mapped")) {
+            return new MappedTaskStore(Paths.get(config.getString(DATA_DIR, DEFAULT_DATA_DIR), MAPPED_STORE_DIR));
+        }
+        if (storage.equalsIgnoreCase("compact")) {
+            return new CompactTaskStore();
+        }
+        if (!storage.equalsIgnoreCase("heap")) {
+            throw new IllegalArgumentException("Unknown " + STORAGE + ": " + storage);
+        }
+        return new HeapTaskStore();
+    }
+
+    private static void scheduleCheckpoints(Tomcat tomcat, TaskManager taskManager, FileTaskLog taskLog, TaskStore store,
+                                            ServerConfig config) {
+        int interval = config.getNonNegativeInt(SNAPSHOT_INTERVAL, DEFAULT_SNAPSHOT_INTERVAL_SECONDS);
+        ScheduledExecutorService checkpoints = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "task-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (interval == 0) {
+            logger.info("Periodic snapshots are disabled");
+        } else {
+            checkpoints.scheduleWithFixedDelay(() -> {
+                try {
+                    long start = System.nanoTime();
+                    int written = taskManager.checkpoint();
+                    if (written >= 0) {
+                        logger.info("Snapshot of {} tasks written in {} ms", written,
+                                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    }
+                } catch (RuntimeException e) {
+                    logger.error("Checkpoint failed", e);
+                }
+            }, interval, interval, TimeUnit.SECONDS);
+        }
+        
+        // Stop checkpointing, flush queued changes and release the store once the server has stopped
+        tomcat.getServer().addLifecycleListener(event -> {
+            if (!Lifecycle.AFTER_STOP_EVENT.equals(event.getType())) {
+                return;
+            }
+            checkpoints.shutdown();
+            try {
+                checkpoints.awaitTermination(30, TimeUnit.SECONDS);
+                taskLog.close();
+            } catch (IOException e) {
+                logger.error("Failed to close task log", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            store.close();
+        });
     }
-} 
\ No newline at end of file
+}
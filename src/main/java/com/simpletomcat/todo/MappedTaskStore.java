@@ -0,0 +1,514 @@
+package com.simpletomcat.todo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Id-indexed storage for tasks in memory-mapped files outside the Java heap.
+ * Every task is a fixed-size header (id, status, version, and the offset, lengths and capacity
+ * of its title and description) pointing into an arena of UTF-8 text. A slot table maps each id
+ * to its header. Task objects are only decoded when a task is read, so the heap holds no
+ * per-task objects no matter how many tasks are stored.
+ * Updates are written in place: a status change rewrites the header, and new text that fits
+ * the capacity of the old text overwrites it. Larger text moves to new space, and the space of
+ * moved text and of deleted tasks is reused by later records of the same size, so update churn
+ * does not grow the mapped files.
+ * Each header carries a sequence number in the manner of a seqlock: writers make it odd while
+ * they change the header or its text and even again when done, and lock-free readers copy the
+ * record, then retry if the sequence changed or the slot no longer points at the header.
+ * Callers must serialize writes to the same id.
+ * The backing files are deleted once mapped: durability is the job of the TaskLog.
+ */
+final class MappedTaskStore implements TaskStore {
+    private static final VarHandle SLOT = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final MethodHandle INVOKE_CLEANER = findCleaner();
+    private static final int SLOT_CHUNK_BITS = 16;
+    private static final int SLOT_CHUNK_MASK = (1 << SLOT_CHUNK_BITS) - 1;
+    static final int HEADER_BYTES = 48;
+    private static final int SEQUENCE = 40;
+    private static final int TEXT_ALIGNMENT = 16;
+    private static final int HEADER_SEGMENT_BITS = 24;
+    private static final int TEXT_SEGMENT_BITS = 26;
+    private static final int COMPLETED = 1;
+
+    private final Path directory;
+    private final AtomicInteger fileCounter;
+    private final Arena headers;
+    private final Arena text;
+    private final AtomicInteger size;
+    private final AtomicInteger highestId;
+    private volatile MappedByteBuffer[] slotChunks;
+    private volatile boolean closed;
+
+    /**
+     * Create an empty store whose segments are mapped from files in a directory
+     * @param directory Directory for the temporary segment files
+     * @throws UncheckedIOException if the directory cannot be created
+     */
+    MappedTaskStore(Path directory) {
+        try {
+            this.directory = Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create " + directory, e);
+        }
+        this.fileCounter = new AtomicInteger();
+        this.headers = new Arena("headers", HEADER_SEGMENT_BITS);
+        this.text = new Arena("text", TEXT_SEGMENT_BITS);
+        this.size = new AtomicInteger();
+        this.highestId = new AtomicInteger();
+        this.slotChunks = new MappedByteBuffer[1];
+    }
+
+    @Override
+    public void put(Task task) {
+        int id = task.getId();
+        if (id <= 0) {
+            throw new IllegalArgumentException("Task ID must be positive");
+        }
+        if (closed) {
+            throw new IllegalStateException("Mapped task store is closed");
+        }
+        MappedByteBuffer chunk = slotChunkFor(id);
+        int slot = slotOffset(id);
+        if ((long) SLOT.getVolatile(chunk, slot) != 0) {
+            throw new IllegalArgumentException("Task ID already in use: " + id);
+        }
+        byte[] title = task.getTitle().getBytes(StandardCharsets.UTF_8);
+        byte[] description = task.getDescription().getBytes(StandardCharsets.UTF_8);
+        int capacity = capacityFor(title.length + description.length);
+        long textPosition = text.allocate(capacity);
+        writeText(textPosition, title, description);
+        long header = headers.allocate(HEADER_BYTES);
+        writeHeader(header, task, textPosition, title.length, description.length, capacity);
+        if (!SLOT.compareAndSet(chunk, slot, 0L, header + 1)) {
+            headers.free(header, HEADER_BYTES);
+            text.free(textPosition, capacity);
+            throw new IllegalArgumentException("Task ID already in use: " + id);
+        }
+        size.incrementAndGet();
+        highestId.accumulateAndGet(id, Math::max);
+    }
+
+    @Override
+    public Task get(int id) {
+        MappedByteBuffer chunk = existingSlotChunk(slotChunks, id);
+        if (chunk == null) {
+            return null;
+        }
+        int slot = slotOffset(id);
+        while (true) {
+            long pointer = (long) SLOT.getVolatile(chunk, slot);
+            if (pointer == 0) {
+                return null;
+            }
+            Task task = readTask(pointer - 1);
+            // A header that was freed and reused by another id can pass its own sequence check
+            if (task != null && (long) SLOT.getVolatile(chunk, slot) == pointer) {
+                return task;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    @Override
+    public Task replace(Task task) {
+        int id = task.getId();
+        MappedByteBuffer chunk = existingSlotChunk(slotChunks, id);
+        long pointer = chunk == null ? 0 : (long) SLOT.getVolatile(chunk, slotOffset(id));
+        if (pointer == 0) {
+            return null;
+        }
+        long header = pointer - 1;
+        // Writes to this id are serialized by the caller, so the record is stable here
+        Task previous = readTask(header);
+        ByteBuffer buffer = headers.buffer(header);
+        int offset = headers.offset(header);
+        long textPosition = buffer.getLong(offset + 16);
+        int capacity = buffer.getInt(offset + 32);
+        if (previous.getTitle().equals(task.getTitle()) && previous.getDescription().equals(task.getDescription())) {
+            // Status changes keep the text, so only the header is rewritten
+            writeHeader(header, task, textPosition, buffer.getInt(offset + 24), buffer.getInt(offset + 28), capacity);
+            return previous;
+        }
+        byte[] title = task.getTitle().getBytes(StandardCharsets.UTF_8);
+        byte[] description = task.getDescription().getBytes(StandardCharsets.UTF_8);
+        int length = title.length + description.length;
+        if (length <= capacity) {
+            // The new text fits the old space, so it is overwritten while readers are held off
+            long sequence = beginWrite(buffer, offset);
+            writeText(textPosition, title, description);
+            writeFields(buffer, offset, task, textPosition, title.length, description.length, capacity);
+            endWrite(buffer, offset, sequence);
+        } else {
+            int newCapacity = capacityFor(length);
+            long newPosition = text.allocate(newCapacity);
+            writeText(newPosition, title, description);
+            writeHeader(header, task, newPosition, title.length, description.length, newCapacity);
+            // Readers of the old text now fail their sequence check, so its space can be handed out again
+            text.free(textPosition, capacity);
+        }
+        return previous;
+    }
+
+    @Override
+    public Task remove(int id) {
+        MappedByteBuffer chunk = existingSlotChunk(slotChunks, id);
+        if (chunk == null) {
+            return null;
+        }
+        long pointer = (long) SLOT.getAndSet(chunk, slotOffset(id), 0L);
+        if (pointer == 0) {
+            return null;
+        }
+        size.decrementAndGet();
+        // The header is unlinked but not yet reused, so it still holds the removed task
+        long header = pointer - 1;
+        Task previous = readTask(header);
+        ByteBuffer buffer = headers.buffer(header);
+        int offset = headers.offset(header);
+        text.free(buffer.getLong(offset + 16), buffer.getInt(offset + 32));
+        headers.free(header, HEADER_BYTES);
+        return previous;
+    }
+
+    @Override
+    public List<Task> toList() {
+        int last = highestId.get();
+        List<Task> result = new ArrayList<>(size.get());
+        for (int id = 1; id <= last; id++) {
+            Task task = get(id);
+            if (task != null) {
+                result.add(task);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public int getHighestId() {
+        return highestId.get();
+    }
+
+    /**
+     * Unmap every segment. Requests must have stopped: a read after closing finds no tasks,
+     * and a read racing with it could touch unmapped memory.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        MappedByteBuffer[] chunks = slotChunks;
+        slotChunks = new MappedByteBuffer[0];
+        headers.close();
+        text.close();
+        for (MappedByteBuffer chunk : chunks) {
+            unmap(chunk);
+        }
+    }
+
+    /**
+     * Get the bytes handed out by both arenas, including freed space waiting to be reused
+     * @return Allocated bytes of headers and text
+     */
+    long getAllocatedBytes() {
+        return headers.next.get() + text.next.get();
+    }
+
+    private static int capacityFor(int length) {
+        return Math.max(TEXT_ALIGNMENT, (length + TEXT_ALIGNMENT - 1) & -TEXT_ALIGNMENT);
+    }
+
+    private void writeText(long position, byte[] title, byte[] description) {
+        ByteBuffer buffer = text.buffer(position);
+        int offset = text.offset(position);
+        buffer.put(offset, title);
+        buffer.put(offset + title.length, description);
+    }
+
+    /**
+     * Rewrite a header while readers are held off by its sequence
+     */
+    private void writeHeader(long position, Task task, long textPosition, int titleLength, int descriptionLength, int capacity) {
+        ByteBuffer buffer = headers.buffer(position);
+        int offset = headers.offset(position);
+        long sequence = beginWrite(buffer, offset);
+        writeFields(buffer, offset, task, textPosition, titleLength, descriptionLength, capacity);
+        endWrite(buffer, offset, sequence);
+    }
+
+    private static void writeFields(ByteBuffer buffer, int offset, Task task, long textPosition,
+                                    int titleLength, int descriptionLength, int capacity) {
+        buffer.putInt(offset, task.getId());
+        buffer.putInt(offset + 4, task.isCompleted() ? COMPLETED : 0);
+        buffer.putLong(offset + 8, task.getVersion());
+        buffer.putLong(offset + 16, textPosition);
+        buffer.putInt(offset + 24, titleLength);
+        buffer.putInt(offset + 28, descriptionLength);
+        buffer.putInt(offset + 32, capacity);
+    }
+
+    /**
+     * Make the sequence of a header odd before its record changes
+     * @return The even sequence the header had
+     */
+    private static long beginWrite(ByteBuffer buffer, int offset) {
+        long sequence = (long) SLOT.get(buffer, offset + SEQUENCE);
+        SLOT.setOpaque(buffer, offset + SEQUENCE, sequence + 1);
+        VarHandle.storeStoreFence();
+        return sequence;
+    }
+
+    private static void endWrite(ByteBuffer buffer, int offset, long sequence) {
+        SLOT.setRelease(buffer, offset + SEQUENCE, sequence + 2);
+    }
+
+    /**
+     * Copy and decode the record of a header
+     * @return The task, or null if a writer changed the record during the copy
+     */
+    private Task readTask(long headerPosition) {
+        ByteBuffer header = headers.buffer(headerPosition);
+        int offset = headers.offset(headerPosition);
+        long sequence = (long) SLOT.getAcquire(header, offset + SEQUENCE);
+        if ((sequence & 1) != 0) {
+            return null;
+        }
+        int id = header.getInt(offset);
+        int flags = header.getInt(offset + 4);
+        long version = header.getLong(offset + 8);
+        long textPosition = header.getLong(offset + 16);
+        int titleLength = header.getInt(offset + 24);
+        int descriptionLength = header.getInt(offset + 28);
+        // Fields copied during a write may be torn, so they are checked before use
+        byte[] bytes = text.read(textPosition, titleLength, descriptionLength);
+        VarHandle.loadLoadFence();
+        if (bytes == null || (long) SLOT.getVolatile(header, offset + SEQUENCE) != sequence) {
+            return null;
+        }
+        return new Task(id,
+                new String(bytes, 0, titleLength, StandardCharsets.UTF_8),
+                new String(bytes, titleLength, descriptionLength, StandardCharsets.UTF_8),
+                (flags & COMPLETED) != 0,
+                version);
+    }
+
+    private static int slotOffset(int id) {
+        return (id & SLOT_CHUNK_MASK) << 3;
+    }
+
+    private static MappedByteBuffer existingSlotChunk(MappedByteBuffer[] directory, int id) {
+        int index = id >>> SLOT_CHUNK_BITS;
+        return id <= 0 || index >= directory.length ? null : directory[index];
+    }
+
+    private MappedByteBuffer slotChunkFor(int id) {
+        MappedByteBuffer chunk = existingSlotChunk(slotChunks, id);
+        if (chunk != null) {
+            return chunk;
+        }
+        synchronized (this) {
+            int index = id >>> SLOT_CHUNK_BITS;
+            MappedByteBuffer[] directory = slotChunks;
+            if (index < directory.length && directory[index] != null) {
+                return directory[index];
+            }
+            directory = Arrays.copyOf(directory, Math.max(index + 1, directory.length));
+            directory[index] = map("slots", (long) Long.BYTES << SLOT_CHUNK_BITS);
+            slotChunks = directory;
+            return directory[index];
+        }
+    }
+
+    /**
+     * Map a new zero-filled file. The file is deleted when its channel closes;
+     * the mapping stays valid until the buffer is unmapped or garbage collected.
+     */
+    private MappedByteBuffer map(String kind, long bytes) {
+        Path file = directory.resolve(kind + "-" + ProcessHandle.current().pid() + "-" + fileCounter.incrementAndGet() + ".bin");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to map " + file, e);
+        }
+    }
+
+    /**
+     * Release a mapping right away. Without access to the cleaner the mapping is left to the garbage collector.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        if (buffer == null || INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invokeExact((ByteBuffer) buffer);
+        } catch (Throwable e) {
+            // The mapping is released once the buffer is collected
+        }
+    }
+
+    private static MethodHandle findCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Space made of equally sized mapped segments.
+     * A record never straddles two segments, so it is always read from one buffer.
+     * Freed records are kept in lists by size and handed out again before the space grows.
+     */
+    private final class Arena {
+        private final String kind;
+        private final int segmentBits;
+        private final long segmentMask;
+        private final AtomicLong next;
+        private final Map<Integer, FreeList> freeLists;
+        private volatile MappedByteBuffer[] segments;
+
+        private Arena(String kind, int segmentBits) {
+            this.kind = kind;
+            this.segmentBits = segmentBits;
+            this.segmentMask = (1L << segmentBits) - 1;
+            this.next = new AtomicLong();
+            this.freeLists = new HashMap<>();
+            this.segments = new MappedByteBuffer[0];
+        }
+
+        /**
+         * Reserve space for a record, reusing a freed record of the same size if there is one,
+         * otherwise starting a new segment if it does not fit in the current one
+         * @return Position of the reserved space
+         */
+        private long allocate(int bytes) {
+            if (bytes > segmentMask + 1) {
+                throw new IllegalArgumentException("Task text is too large for the mapped store: " + bytes + " bytes");
+            }
+            synchronized (freeLists) {
+                FreeList free = freeLists.get(bytes);
+                if (free != null && free.count > 0) {
+                    return free.positions[--free.count];
+                }
+            }
+            while (true) {
+                long current = next.get();
+                long start = (current & segmentMask) + bytes > segmentMask + 1
+                        ? ((current >>> segmentBits) + 1) << segmentBits
+                        : current;
+                if (next.compareAndSet(current, start + bytes)) {
+                    segmentFor(start);
+                    return start;
+                }
+            }
+        }
+
+        /**
+         * Hand a record back for reuse. Readers may still copy it, so they must validate what they read.
+         */
+        private void free(long position, int bytes) {
+            synchronized (freeLists) {
+                freeLists.computeIfAbsent(bytes, key -> new FreeList()).push(position);
+            }
+        }
+
+        private ByteBuffer buffer(long position) {
+            return segments[(int) (position >>> segmentBits)];
+        }
+
+        private int offset(long position) {
+            return (int) (position & segmentMask);
+        }
+
+        /**
+         * Copy the text of a record whose position and lengths may have been torn by a writer
+         * @return The bytes, or null if they do not lie within one mapped segment
+         */
+        private byte[] read(long position, int titleLength, int descriptionLength) {
+            int index = (int) (position >>> segmentBits);
+            MappedByteBuffer[] directory = segments;
+            long length = (long) titleLength + descriptionLength;
+            if (position < 0 || index >= directory.length || directory[index] == null
+                    || titleLength < 0 || descriptionLength < 0 || offset(position) + length > segmentMask + 1) {
+                return null;
+            }
+            byte[] bytes = new byte[(int) length];
+            directory[index].get(offset(position), bytes);
+            return bytes;
+        }
+
+        private MappedByteBuffer segmentFor(long position) {
+            int index = (int) (position >>> segmentBits);
+            MappedByteBuffer[] directory = segments;
+            if (index < directory.length && directory[index] != null) {
+                return directory[index];
+            }
+            synchronized (this) {
+                directory = segments;
+                if (index < directory.length && directory[index] != null) {
+                    return directory[index];
+                }
+                directory = Arrays.copyOf(directory, Math.max(index + 1, directory.length));
+                directory[index] = map(kind, segmentMask + 1);
+                segments = directory;
+                return directory[index];
+            }
+        }
+
+        private synchronized void close() {
+            MappedByteBuffer[] directory = segments;
+            segments = new MappedByteBuffer[0];
+            for (MappedByteBuffer segment : directory) {
+                unmap(segment);
+            }
+        }
+    }
+
+    /**
+     * Growable stack of freed record positions of one size
+     */
+    private static final class FreeList {
+        private long[] positions = new long[16];
+        private int count;
+
+        private void push(long position) {
+            if (count == positions.length) {
+                positions = Arrays.copyOf(positions, count * 2);
+            }
+            positions[count++] = position;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.simpletomcat.todo;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Servlet exposing request, lock and store metrics in the Prometheus text exposition format.
+ * Everything is read from counters and histograms the other components update as they work,
+ * so a scrape costs a pass over fixed arrays and never blocks or slows down requests.
+ * Histogram buckets only count durations whose whole LatencyHistogram bucket lies at or below
+ * the bound, so a bucket may be understated by the 3% width of those buckets but never overstated.
+ */
+public class MetricsServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    // Bounds in seconds of the request latency buckets
+    private static final double[] REQUEST_BUCKETS = {
+            0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+    // Lock waits and holds are mostly far below a millisecond
+    private static final double[] LOCK_BUCKETS = {
+            0.000001, 0.0000025, 0.000005, 0.00001, 0.000025, 0.00005, 0.0001, 0.00025, 0.0005, 0.001, 0.01, 0.1, 1};
+
+    private final transient TaskManager taskManager;
+    private final transient RequestMetrics requestMetrics;
+    private final transient JsonResponseCache responseCache;
+    private final transient TaskStreamServlet stream;
+
+    /**
+     * @param taskManager Task manager whose locks and store are reported
+     * @param service Service whose requests are reported
+     * @param stream Event stream whose subscribers are counted, or null if there is none
+     */
+    public MetricsServlet(TaskManager taskManager, TODOService service, TaskStreamServlet stream) {
+        this.taskManager = taskManager;
+        this.requestMetrics = service.getRequestMetrics();
+        this.responseCache = service.getResponseCache();
+        this.stream = stream;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        StringBuilder out = new StringBuilder(64 * 1024);
+        RequestMetrics.Series[][] series = requestMetrics.getSeries();
+
+        header(out, "todo_http_requests_total", "counter", "Finished requests by endpoint, method and status class");
+        for (RequestMetrics.Series[] byEndpoint : series) {
+            for (RequestMetrics.Series s : byEndpoint) {
+                for (int statusClass = 0; statusClass < RequestMetrics.STATUS_CLASSES.length; statusClass++) {
+                    long count = s.getResponses(statusClass);
+                    if (count > 0) {
+                        out.append("todo_http_requests_total{").append(labels(s))
+                                .append(",status=\"").append(RequestMetrics.STATUS_CLASSES[statusClass]).append("\"} ")
+                                .append(count).append('\n');
+                    }
+                }
+            }
+        }
+
+        header(out, "todo_http_requests_in_flight", "gauge", "Requests being served by endpoint and method");
+        for (RequestMetrics.Series[] byEndpoint : series) {
+            for (RequestMetrics.Series s : byEndpoint) {
+                if (s.getLatency().getCount() > 0 || s.getInFlight() > 0) {
+                    out.append("todo_http_requests_in_flight{").append(labels(s)).append("} ")
+                            .append(s.getInFlight()).append('\n');
+                }
+            }
+        }
+
+        header(out, "todo_http_request_duration_seconds", "histogram", "Time to serve a request by endpoint and method");
+        for (RequestMetrics.Series[] byEndpoint : series) {
+            for (RequestMetrics.Series s : byEndpoint) {
+                if (s.getLatency().getCount() > 0) {
+                    histogram(out, "todo_http_request_duration_seconds", labels(s), s.getLatency(), REQUEST_BUCKETS);
+                }
+            }
+        }
+
+        header(out, "todo_lock_wait_seconds", "histogram", "Time writers waited for task manager stripe locks");
+        histogram(out, "todo_lock_wait_seconds", null, taskManager.getLockWait(), LOCK_BUCKETS);
+        header(out, "todo_lock_hold_seconds", "histogram", "Time writers held task manager stripe locks");
+        histogram(out, "todo_lock_hold_seconds", null, taskManager.getLockHold(), LOCK_BUCKETS);
+
+        TaskStats stats = taskManager.getStats();
+        header(out, "todo_tasks", "gauge", "Tasks by completion status");
+        out.append("todo_tasks{status=\"pending\"} ").append(stats.getPending()).append('\n');
+        out.append("todo_tasks{status=\"completed\"} ").append(stats.getCompleted()).append('\n');
+        header(out, "todo_task_store_size", "gauge", "Tasks held by the task store");
+        out.append("todo_task_store_size ").append(taskManager.getTaskCount()).append('\n');
+        header(out, "todo_task_changes_total", "counter", "Changes applied to tasks since startup");
+        out.append("todo_task_changes_total ").append(taskManager.getEvents().getLastSequence()).append('\n');
+        header(out, "todo_response_cache_hits_total", "counter", "Responses served from the JSON response cache");
+        out.append("todo_response_cache_hits_total ").append(responseCache.getHits()).append('\n');
+        header(out, "todo_response_cache_misses_total", "counter", "Responses serialized because the cache held no current entry");
+        out.append("todo_response_cache_misses_total ").append(responseCache.getMisses()).append('\n');
+        header(out, "todo_response_cache_evictions_total", "counter", "Cached task responses evicted to make room for others");
+        out.append("todo_response_cache_evictions_total ").append(responseCache.getEvictions()).append('\n');
+        header(out, "todo_response_cache_entries", "gauge", "Responses held by the JSON response cache");
+        out.append("todo_response_cache_entries ").append(responseCache.size()).append('\n');
+        if (stream != null) {
+            header(out, "todo_event_stream_subscribers", "gauge", "Clients connected to the task event stream");
+            out.append("todo_event_stream_subscribers ").append(stream.getSubscriberCount()).append('\n');
+        }
+
+        byte[] body = out.toString().getBytes(StandardCharsets.UTF_8);
+        resp.setStatus(HttpServletResponse.SC_OK);
+        resp.setContentType(CONTENT_TYPE);
+        resp.setHeader("Cache-Control", "no-store");
+        resp.setContentLength(body.length);
+        resp.getOutputStream().write(body);
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String labels(RequestMetrics.Series s) {
+        return "endpoint=\"" + s.getEndpoint().getLabel() + "\",method=\"" + s.getMethod() + "\"";
+    }
+
+    /**
+     * Write the cumulative buckets, sum and count of one histogram
+     * @param labels Labels shared by every line, or null for none
+     */
+    private static void histogram(StringBuilder out, String name, String labels, LatencyHistogram histogram, double[] bounds) {
+        String prefix = labels == null ? "" : labels + ",";
+        for (double bound : bounds) {
+            out.append(name).append("_bucket{").append(prefix).append("le=\"").append(bound).append("\"} ")
+                    .append(histogram.countAtOrBelow((long) (bound * 1e9))).append('\n');
+        }
+        // Read +Inf from the buckets rather than the separate counter so the series stays monotonic
+        long count = histogram.countAtOrBelow(Long.MAX_VALUE);
+        String suffix = labels == null ? "" : "{" + labels + "}";
+        out.append(name).append("_bucket{").append(prefix).append("le=\"+Inf\"} ").append(count).append('\n');
+        out.append(name).append("_sum").append(suffix).append(' ').append(histogram.getSum() / 1e9).append('\n');
+        out.append(name).append("_count").append(suffix).append(' ').append(count).append('\n');
+    }
+}
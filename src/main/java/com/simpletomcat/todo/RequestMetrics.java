@@ -0,0 +1,149 @@
+package com.simpletomcat.todo;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request counters, in-flight gauges and latency histograms of TODOService, per endpoint and method.
+ * Every combination is allocated up front, so recording a request only indexes arrays and
+ * updates adders and a LatencyHistogram: no map lookup, lock or allocation on the request path.
+ */
+final class RequestMetrics {
+
+    /**
+     * Endpoints of the task API as they are labelled in metrics
+     */
+    enum Endpoint {
+        TASKS("/api/tasks"),
+        TASK("/api/tasks/{id}"),
+        STATS("/api/tasks/stats"),
+        BULK("/api/tasks/_bulk");
+
+        private final String label;
+
+        Endpoint(String label) {
+            this.label = label;
+        }
+
+        String getLabel() {
+            return label;
+        }
+
+        /**
+         * @param pathInfo Path below /api/tasks, or null
+         * @return The endpoint serving the path
+         */
+        static Endpoint of(String pathInfo) {
+            if (pathInfo == null || pathInfo.equals("/")) {
+                return TASKS;
+            }
+            return switch (pathInfo) {
+                case "/stats" -> STATS;
+                case "/_bulk" -> BULK;
+                default -> TASK;
+            };
+        }
+    }
+
+    static final String[] METHODS = {"GET", "POST", "PUT", "PATCH", "DELETE", "OTHER"};
+    static final String[] STATUS_CLASSES = {"1xx", "2xx", "3xx", "4xx", "5xx"};
+
+    private final Series[][] series;
+
+    RequestMetrics() {
+        Endpoint[] endpoints = Endpoint.values();
+        this.series = new Series[endpoints.length][METHODS.length];
+        for (Endpoint endpoint : endpoints) {
+            for (int method = 0; method < METHODS.length; method++) {
+                series[endpoint.ordinal()][method] = new Series(endpoint, METHODS[method]);
+            }
+        }
+    }
+
+    /**
+     * Count a request as started
+     * @param pathInfo Path below /api/tasks, or null
+     * @param method HTTP method
+     * @return The series to pass to Series.finish with the start time
+     */
+    Series start(String pathInfo, String method) {
+        Series target = series[Endpoint.of(pathInfo).ordinal()][methodIndex(method)];
+        target.inFlight.increment();
+        return target;
+    }
+
+    /**
+     * @return Every endpoint and method combination, including ones never requested
+     */
+    Series[][] getSeries() {
+        return series;
+    }
+
+    private static int methodIndex(String method) {
+        return switch (method) {
+            case "GET", "HEAD" -> 0;
+            case "POST" -> 1;
+            case "PUT" -> 2;
+            case "PATCH" -> 3;
+            case "DELETE" -> 4;
+            default -> 5;
+        };
+    }
+
+    /**
+     * Metrics of one endpoint and method
+     */
+    static final class Series {
+        private final Endpoint endpoint;
+        private final String method;
+        private final LongAdder inFlight;
+        private final LongAdder[] responses;
+        private final LatencyHistogram latency;
+
+        private Series(Endpoint endpoint, String method) {
+            this.endpoint = endpoint;
+            this.method = method;
+            this.inFlight = new LongAdder();
+            this.responses = new LongAdder[STATUS_CLASSES.length];
+            for (int i = 0; i < responses.length; i++) {
+                responses[i] = new LongAdder();
+            }
+            this.latency = new LatencyHistogram();
+        }
+
+        /**
+         * Count a request as finished
+         * @param startNanos System.nanoTime() when the request started
+         * @param status HTTP status of the response
+         */
+        void finish(long startNanos, int status) {
+            latency.record(System.nanoTime() - startNanos);
+            inFlight.decrement();
+            int statusClass = status / 100 - 1;
+            responses[statusClass >= 0 && statusClass < responses.length ? statusClass : responses.length - 1].increment();
+        }
+
+        Endpoint getEndpoint() {
+            return endpoint;
+        }
+
+        String getMethod() {
+            return method;
+        }
+
+        long getInFlight() {
+            return inFlight.sum();
+        }
+
+        /**
+         * @param statusClass Index into STATUS_CLASSES
+         * @return The number of finished requests answered with a status of that class
+         */
+        long getResponses(int statusClass) {
+            return responses[statusClass].sum();
+        }
+
+        LatencyHistogram getLatency() {
+            return latency;
+        }
+    }
+}
@@ -0,0 +1,451 @@
+package com.simpletomcat.todo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory inverted index over task titles and descriptions.
+ * Text is split into lower-case letter and digit runs. Each term keeps sorted primitive
+ * id postings for the title and the description, so queries merge int arrays instead of
+ * scanning tasks. Every query term must match, either exactly or as a prefix of an indexed
+ * term; results are ranked by inverse document frequency with title and exact matches
+ * weighted above description and prefix matches.
+ * There is no index-wide lock: terms live in a concurrent hash map for the exact lookups of
+ * writers and a concurrent sorted map for prefix expansion, and each term is guarded by its
+ * own monitor, so writers only contend when they touch the same term, one term at a time.
+ * Removed ids are marked as tombstones and compacted away once they make up half of a
+ * posting list, so removal is a binary search rather than a shift of the array. Queries copy
+ * the live ids of each matching term under its monitor and merge the copies without holding
+ * any lock, so a broad query never stalls writers for longer than one array copy per term.
+ */
+final class SearchIndex {
+    // Prefix terms expand to at most this many indexed terms, most frequent first
+    static final int MAX_PREFIX_EXPANSION = 64;
+    private static final float TITLE_WEIGHT = 2.0f;
+    private static final float DESCRIPTION_WEIGHT = 1.0f;
+    private static final float PREFIX_WEIGHT = 0.5f;
+
+    private final ConcurrentMap<String, Term> terms;
+    private final ConcurrentNavigableMap<String, Term> sortedTerms;
+    private final AtomicInteger documentCount;
+
+    SearchIndex() {
+        this.terms = new ConcurrentHashMap<>();
+        this.sortedTerms = new ConcurrentSkipListMap<>();
+        this.documentCount = new AtomicInteger();
+    }
+
+    /**
+     * Index the text of a task
+     * @param task Task to add
+     */
+    void add(Task task) {
+        for (String token : tokenize(task.getTitle())) {
+            addPosting(token, task.getId(), true);
+        }
+        for (String token : tokenize(task.getDescription())) {
+            addPosting(token, task.getId(), false);
+        }
+        documentCount.incrementAndGet();
+    }
+
+    /**
+     * Remove the text of a task, as it was when indexed
+     * @param task Task to remove
+     */
+    void remove(Task task) {
+        for (String token : tokenize(task.getTitle())) {
+            removePosting(token, task.getId(), true);
+        }
+        for (String token : tokenize(task.getDescription())) {
+            removePosting(token, task.getId(), false);
+        }
+        documentCount.decrementAndGet();
+    }
+
+    /**
+     * Re-index a task whose text changed, touching only the terms that differ.
+     * Changes to the same task must not run concurrently; TaskManager holds its stripe lock.
+     * @param previous Task as it was when indexed
+     * @param task Task with its new text and the same id
+     */
+    void replace(Task previous, Task task) {
+        Set<String> oldTitle = tokenize(previous.getTitle());
+        Set<String> oldDescription = tokenize(previous.getDescription());
+        Set<String> newTitle = tokenize(task.getTitle());
+        Set<String> newDescription = tokenize(task.getDescription());
+        int id = task.getId();
+        for (String token : oldTitle) {
+            if (!newTitle.contains(token)) {
+                removePosting(token, id, true);
+            }
+        }
+        for (String token : oldDescription) {
+            if (!newDescription.contains(token)) {
+                removePosting(token, id, false);
+            }
+        }
+        for (String token : newTitle) {
+            if (!oldTitle.contains(token)) {
+                addPosting(token, id, true);
+            }
+        }
+        for (String token : newDescription) {
+            if (!oldDescription.contains(token)) {
+                addPosting(token, id, false);
+            }
+        }
+    }
+
+    /**
+     * Find the ids of tasks matching every term of a query, best match first.
+     * A task changed while the query runs may or may not be matched by its new text.
+     * @param query Free text query; the final characters of each term may be omitted
+     * @param limit Maximum number of ids to return
+     * @return Matching task ids ordered by descending score, then ascending id
+     */
+    int[] search(String query, int limit) {
+        Set<String> queryTerms = tokenize(query);
+        if (queryTerms.isEmpty() || limit <= 0) {
+            return new int[0];
+        }
+        Matches result = null;
+        for (String queryTerm : queryTerms) {
+            Matches matches = match(queryTerm);
+            result = result == null ? matches : result.intersect(matches);
+            if (result.size == 0) {
+                return new int[0];
+            }
+        }
+        return result.top(limit);
+    }
+
+    /**
+     * Split text into distinct lower-case terms of letters and digits
+     */
+    static Set<String> tokenize(String text) {
+        Set<String> tokens = new HashSet<>();
+        if (text == null) {
+            return tokens;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private void addPosting(String token, int id, boolean title) {
+        while (true) {
+            Term term = terms.computeIfAbsent(token, t -> {
+                Term created = new Term();
+                sortedTerms.put(t, created);
+                return created;
+            });
+            synchronized (term) {
+                // A term emptied and dropped by a concurrent remove must not be revived
+                if (!term.retired) {
+                    term.add(id, title);
+                    return;
+                }
+            }
+            drop(token, term);
+        }
+    }
+
+    private void removePosting(String token, int id, boolean title) {
+        Term term = terms.get(token);
+        if (term != null) {
+            synchronized (term) {
+                term.remove(id, title);
+                if (term.frequency == 0 && !term.retired) {
+                    term.retired = true;
+                    drop(token, term);
+                }
+            }
+        }
+    }
+
+    /**
+     * Unlink a retired term; a replacement created meanwhile is left in place
+     */
+    private void drop(String token, Term term) {
+        terms.remove(token, term);
+        sortedTerms.remove(token, term);
+    }
+
+    /**
+     * Collect every task matching one query term, exactly or by prefix, with its best weight
+     */
+    private Matches match(String queryTerm) {
+        List<Map.Entry<String, Term>> expansion = new ArrayList<>();
+        for (Map.Entry<String, Term> entry : sortedTerms.subMap(queryTerm, true, queryTerm + Character.MAX_VALUE, false).entrySet()) {
+            expansion.add(entry);
+        }
+        if (expansion.size() > MAX_PREFIX_EXPANSION) {
+            // Keep the exact term and the most frequent completions, ranked by frequencies read once
+            // so that concurrent writers cannot make the comparison inconsistent
+            int[] frequencies = new int[expansion.size()];
+            Integer[] order = new Integer[expansion.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+                frequencies[i] = expansion.get(i).getKey().equals(queryTerm) ? Integer.MAX_VALUE : expansion.get(i).getValue().frequency;
+            }
+            Arrays.sort(order, (a, b) -> Integer.compare(frequencies[b], frequencies[a]));
+            List<Map.Entry<String, Term>> kept = new ArrayList<>(MAX_PREFIX_EXPANSION);
+            for (int i = 0; i < MAX_PREFIX_EXPANSION; i++) {
+                kept.add(expansion.get(order[i]));
+            }
+            expansion = kept;
+        }
+        float documents = Math.max(documentCount.get(), 1);
+        Matches matches = Matches.EMPTY;
+        for (Map.Entry<String, Term> entry : expansion) {
+            int[] titleIds;
+            int[] descriptionIds;
+            Term term = entry.getValue();
+            synchronized (term) {
+                titleIds = term.title.copy();
+                descriptionIds = term.description.copy();
+            }
+            float idf = (float) Math.log(1.0 + documents / Math.max(titleIds.length + descriptionIds.length, 1));
+            float weight = idf * (entry.getKey().equals(queryTerm) ? 1.0f : PREFIX_WEIGHT);
+            matches = matches.union(titleIds, weight * TITLE_WEIGHT);
+            matches = matches.union(descriptionIds, weight * DESCRIPTION_WEIGHT);
+        }
+        return matches;
+    }
+
+    /**
+     * Postings of one term in the title and in the description; guarded by its own monitor
+     */
+    private static final class Term {
+        private final Postings title = new Postings();
+        private final Postings description = new Postings();
+        // Live ids in both postings, readable without the monitor to rank prefix completions
+        private volatile int frequency;
+        // Set once the term is empty and dropped from the map
+        private boolean retired;
+
+        private void add(int id, boolean inTitle) {
+            if ((inTitle ? title : description).add(id)) {
+                frequency++;
+            }
+        }
+
+        private void remove(int id, boolean inTitle) {
+            if ((inTitle ? title : description).remove(id)) {
+                frequency--;
+            }
+        }
+    }
+
+    /**
+     * Sorted, growable array of task ids. Removed ids stay in place as tombstones, stored
+     * negated so the array remains sorted by absolute value, until they make up half of it.
+     */
+    private static final class Postings {
+        // Only compact once at least this many tombstones have built up
+        private static final int MIN_COMPACTION = 16;
+
+        private int[] ids = new int[4];
+        private int size;
+        private int removed;
+
+        /**
+         * @return Whether the id was not already live
+         */
+        private boolean add(int id) {
+            // Ids are assigned in increasing order, so this is almost always an append
+            int index = size == 0 || Math.abs(ids[size - 1]) < id ? -size - 1 : find(id);
+            if (index >= 0) {
+                if (ids[index] > 0) {
+                    return false;
+                }
+                ids[index] = id;
+                removed--;
+                return true;
+            }
+            index = -index - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            ids[index] = id;
+            size++;
+            return true;
+        }
+
+        /**
+         * @return Whether the id was live
+         */
+        private boolean remove(int id) {
+            int index = find(id);
+            if (index < 0 || ids[index] < 0) {
+                return false;
+            }
+            ids[index] = -id;
+            removed++;
+            if (removed >= MIN_COMPACTION && removed * 2 >= size) {
+                compact();
+            }
+            return true;
+        }
+
+        /**
+         * @return The live ids in ascending order
+         */
+        private int[] copy() {
+            if (removed == 0) {
+                return Arrays.copyOf(ids, size);
+            }
+            int[] live = new int[size - removed];
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (ids[i] > 0) {
+                    live[n++] = ids[i];
+                }
+            }
+            return live;
+        }
+
+        /**
+         * Drop the tombstones, shrinking the array if it is mostly empty afterwards
+         */
+        private void compact() {
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (ids[i] > 0) {
+                    ids[n++] = ids[i];
+                }
+            }
+            size = n;
+            removed = 0;
+            if (ids.length > 4 && size < ids.length / 4) {
+                ids = Arrays.copyOf(ids, Math.max(4, size * 2));
+            }
+        }
+
+        /**
+         * Binary search by absolute value, so tombstones are found like live ids
+         * @return The index of the id, or -(insertion point) - 1
+         */
+        private int find(int id) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int value = Math.abs(ids[mid]);
+                if (value < id) {
+                    low = mid + 1;
+                } else if (value > id) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -low - 1;
+        }
+    }
+
+    /**
+     * Sorted task ids with a score each, built by merging postings
+     */
+    private static final class Matches {
+        private static final Matches EMPTY = new Matches(new int[0], new float[0], 0);
+
+        private final int[] ids;
+        private final float[] scores;
+        private final int size;
+
+        private Matches(int[] ids, float[] scores, int size) {
+            this.ids = ids;
+            this.scores = scores;
+            this.size = size;
+        }
+
+        /**
+         * Merge postings in, keeping the best weight of every id
+         */
+        private Matches union(int[] postings, float weight) {
+            if (postings.length == 0) {
+                return this;
+            }
+            int[] mergedIds = new int[size + postings.length];
+            float[] mergedScores = new float[mergedIds.length];
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while (i < size || j < postings.length) {
+                if (j == postings.length || (i < size && ids[i] < postings[j])) {
+                    mergedIds[n] = ids[i];
+                    mergedScores[n++] = scores[i++];
+                } else if (i == size || postings[j] < ids[i]) {
+                    mergedIds[n] = postings[j++];
+                    mergedScores[n++] = weight;
+                } else {
+                    mergedIds[n] = ids[i];
+                    mergedScores[n++] = Math.max(scores[i++], weight);
+                    j++;
+                }
+            }
+            return new Matches(mergedIds, mergedScores, n);
+        }
+
+        /**
+         * Keep ids present in both, adding their scores
+         */
+        private Matches intersect(Matches other) {
+            int[] commonIds = new int[Math.min(size, other.size)];
+            float[] commonScores = new float[commonIds.length];
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while (i < size && j < other.size) {
+                if (ids[i] < other.ids[j]) {
+                    i++;
+                } else if (other.ids[j] < ids[i]) {
+                    j++;
+                } else {
+                    commonIds[n] = ids[i];
+                    commonScores[n++] = scores[i++] + other.scores[j++];
+                }
+            }
+            return new Matches(commonIds, commonScores, n);
+        }
+
+        /**
+         * Select the best scoring ids; ties go to the older task
+         */
+        private int[] top(int limit) {
+            // Pack score and id into one long whose natural order is score descending, id ascending
+            long[] keys = new long[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = ((long) (Integer.MAX_VALUE - Float.floatToIntBits(scores[i])) << 32) | ids[i];
+            }
+            Arrays.sort(keys);
+            int[] result = new int[Math.min(limit, size)];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = (int) keys[i];
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.simpletomcat.todo;
+
+import org.slf4j.Logger;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Server settings resolved from, in order of precedence: command-line arguments
+ * (--todo.maxThreads=400, the "todo." prefix may be left out), system properties
+ * (-Dtodo.maxThreads=400), environment variables (TODO_MAXTHREADS=400, the name upper-cased
+ * with dots turned into underscores), a properties file and finally the built-in default.
+ * The properties file is named by the todo.config setting from any of the sources before it,
+ * and todo.properties in the working directory is read when it exists.
+ * Every setting read is remembered with its source so the effective values can be logged.
+ */
+final class ServerConfig {
+    static final String CONFIG_FILE = "todo.config";
+    static final String DEFAULT_CONFIG_FILE = "todo.properties";
+    private static final String PREFIX = "todo.";
+
+    private final Map<String, String> arguments;
+    private final Properties systemProperties;
+    private final Map<String, String> environment;
+    private final Properties file;
+    private final Map<String, String> effective;
+
+    /**
+     * Resolve settings from the command line, the system properties and the environment of this JVM
+     * @param args Command-line arguments
+     * @return The configuration
+     * @throws IllegalArgumentException if an argument is not of the form --name=value
+     * @throws UncheckedIOException if the properties file cannot be read
+     */
+    static ServerConfig load(String[] args) {
+        return new ServerConfig(parseArguments(args), System.getProperties(), System.getenv());
+    }
+
+    /**
+     * Create a configuration from explicit sources
+     * @param arguments Settings given on the command line, by full name
+     * @param systemProperties System properties
+     * @param environment Environment variables
+     * @throws UncheckedIOException if the properties file cannot be read
+     */
+    ServerConfig(Map<String, String> arguments, Properties systemProperties, Map<String, String> environment) {
+        this.arguments = arguments;
+        this.systemProperties = systemProperties;
+        this.environment = environment;
+        this.file = new Properties();
+        this.effective = new LinkedHashMap<>();
+
+        String configFile = lookup(CONFIG_FILE);
+        Path path = Paths.get(configFile == null ? DEFAULT_CONFIG_FILE : configFile);
+        if (configFile != null || Files.exists(path)) {
+            try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                file.load(reader);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read " + path, e);
+            }
+        }
+    }
+
+    /**
+     * Parse arguments of the form --name=value
+     * @param args Command-line arguments
+     * @return Values by full setting name
+     * @throws IllegalArgumentException if an argument has another form
+     */
+    static Map<String, String> parseArguments(String[] args) {
+        Map<String, String> parsed = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            String name = arg.substring(2, equals);
+            parsed.put(name.startsWith(PREFIX) ? name : PREFIX + name, arg.substring(equals + 1));
+        }
+        return parsed;
+    }
+
+    /**
+     * Get a setting as a string
+     * @param name Full setting name
+     * @param defaultValue Value when no source sets it
+     * @return The trimmed value
+     */
+    String getString(String name, String defaultValue) {
+        String value = lookup(name);
+        if (value == null && file.getProperty(name) != null) {
+            value = file.getProperty(name);
+            effective.put(name, value.trim() + " (file)");
+        } else if (value == null) {
+            value = defaultValue;
+            effective.put(name, value + " (default)");
+        }
+        return value == null ? null : value.trim();
+    }
+
+    /**
+     * Get a setting as an int
+     * @param name Full setting name
+     * @param defaultValue Value when no source sets it
+     * @return The value
+     * @throws IllegalArgumentException if the value is not a number
+     */
+    int getInt(String name, int defaultValue) {
+        String value = getString(name, Integer.toString(defaultValue));
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number for " + name + ": " + value, e);
+        }
+    }
+
+    /**
+     * Get a setting as an int that must not be negative
+     * @param name Full setting name
+     * @param defaultValue Value when no source sets it
+     * @return The value
+     * @throws IllegalArgumentException if the value is not a number or is negative
+     */
+    int getNonNegativeInt(String name, int defaultValue) {
+        int value = getInt(name, defaultValue);
+        if (value < 0) {
+            throw new IllegalArgumentException("Expected zero or more for " + name + ": " + value);
+        }
+        return value;
+    }
+
+    /**
+     * Get a setting as a boolean
+     * @param name Full setting name
+     * @param defaultValue Value when no source sets it
+     * @return The value
+     * @throws IllegalArgumentException if the value is neither true nor false
+     */
+    boolean getBoolean(String name, boolean defaultValue) {
+        String value = getString(name, Boolean.toString(defaultValue));
+        if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false")) {
+            return Boolean.parseBoolean(value);
+        }
+        throw new IllegalArgumentException("Expected true or false for " + name + ": " + value);
+    }
+
+    /**
+     * Log every setting read so far with its value and source
+     * @param logger Logger to write to
+     */
+    void logEffectiveSettings(Logger logger) {
+        effective.forEach((name, value) -> logger.info("Setting {} = {}", name, value));
+    }
+
+    /**
+     * Look a setting up in the sources that take precedence over the file, recording where it was found
+     */
+    private String lookup(String name) {
+        String value = arguments.get(name);
+        String source = "command line";
+        if (value == null) {
+            value = systemProperties.getProperty(name);
+            source = "system property";
+        }
+        if (value == null) {
+            value = environment.get(name.replace('.', '_').toUpperCase(Locale.ROOT));
+            source = "environment";
+        }
+        if (value != null) {
+            effective.put(name, value.trim() + " (" + source + ")");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,228 @@
+package com.simpletomcat.todo;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Servlet serving the static files of the UI from memory.
+ * Each file is read from the classpath once when the servlet is created and compressed there
+ * and then into gzip and deflate variants, so serving a request only picks a byte array: it
+ * touches neither the file system nor a compressor. The variant follows the Accept-Encoding
+ * header of the request, and every variant has its own strong ETag made from a hash of the
+ * file, so browsers revalidate with If-None-Match once their cached copy is older than the
+ * configured max age.
+ */
+public class StaticContentServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+    private static final String WELCOME_FILE = "index.html";
+    private static final Map<String, String> CONTENT_TYPES = Map.of(
+            "html", "text/html;charset=UTF-8",
+            "css", "text/css;charset=UTF-8",
+            "js", "text/javascript;charset=UTF-8",
+            "json", "application/json",
+            "svg", "image/svg+xml",
+            "ico", "image/x-icon");
+    static final String GZIP = "gzip";
+    static final String DEFLATE = "deflate";
+    static final String IDENTITY = "identity";
+
+    private final Map<String, Resource> resources;
+    private final String cacheControl;
+
+    /**
+     * Load static files from a classpath directory
+     * @param directory Classpath directory holding the files, such as "static"
+     * @param maxAgeSeconds How long browsers may use a file before revalidating it
+     * @param names File names to serve from the directory; "/" serves index.html
+     * @throws UncheckedIOException if a file is missing or cannot be read
+     */
+    public StaticContentServlet(String directory, int maxAgeSeconds, String... names) {
+        this.resources = new HashMap<>();
+        this.cacheControl = "public, max-age=" + maxAgeSeconds;
+        ClassLoader loader = StaticContentServlet.class.getClassLoader();
+        for (String name : names) {
+            String path = directory + "/" + name;
+            try (InputStream in = loader.getResourceAsStream(path)) {
+                if (in == null) {
+                    throw new IOException("Not on the classpath");
+                }
+                resources.put("/" + name, new Resource(in.readAllBytes(), contentType(name)));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read static resource " + path, e);
+            }
+        }
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        String path = req.getServletPath() + (req.getPathInfo() == null ? "" : req.getPathInfo());
+        Resource resource = resources.get(path.isEmpty() || path.equals("/") ? "/" + WELCOME_FILE : path);
+        if (resource == null) {
+            resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        Variant variant = resource.select(req.getHeader("Accept-Encoding"));
+        resp.setHeader("Vary", "Accept-Encoding");
+        resp.setHeader("ETag", variant.etag);
+        resp.setHeader("Cache-Control", cacheControl);
+        if (matches(req.getHeader("If-None-Match"), variant.etag)) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        resp.setContentType(resource.contentType);
+        if (variant.encoding != null) {
+            resp.setHeader("Content-Encoding", variant.encoding);
+        }
+        resp.setContentLength(variant.content.length);
+        resp.getOutputStream().write(variant.content);
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find the quality a client gives an encoding in its Accept-Encoding header
+     * @param acceptEncoding Header value, or null if the request has none
+     * @param encoding Encoding to look up
+     * @return The quality between 0 and 1; identity is acceptable unless excluded, other encodings only when listed
+     */
+    static double quality(String acceptEncoding, String encoding) {
+        double wildcard = -1;
+        if (acceptEncoding != null) {
+            for (String entry : acceptEncoding.split(",")) {
+                String[] parts = entry.split(";");
+                String name = parts[0].trim();
+                double q = 1;
+                for (int i = 1; i < parts.length; i++) {
+                    String parameter = parts[i].trim();
+                    if (parameter.startsWith("q=")) {
+                        try {
+                            q = Double.parseDouble(parameter.substring(2));
+                        } catch (NumberFormatException e) {
+                            q = 0;
+                        }
+                    }
+                }
+                if (name.equalsIgnoreCase(encoding)) {
+                    return q;
+                }
+                if (name.equals("*")) {
+                    wildcard = q;
+                }
+            }
+        }
+        if (wildcard >= 0) {
+            return wildcard;
+        }
+        return encoding.equals(IDENTITY) ? 1 : 0;
+    }
+
+    private static String contentType(String name) {
+        String extension = name.substring(name.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        return CONTENT_TYPES.getOrDefault(extension, "application/octet-stream");
+    }
+
+    /**
+     * One file with its precomputed encodings; a compressed variant is null when it would not be smaller
+     */
+    private static final class Resource {
+        private final String contentType;
+        private final Variant identity;
+        private final Variant gzip;
+        private final Variant deflate;
+
+        private Resource(byte[] content, String contentType) throws IOException {
+            this.contentType = contentType;
+            String hash = hash(content);
+            this.identity = new Variant(content, null, "\"" + hash + "\"");
+            ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+            try (OutputStream out = new GZIPOutputStream(gzipped)) {
+                out.write(content);
+            }
+            this.gzip = compressed(content, gzipped.toByteArray(), GZIP, hash);
+            ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+            try (OutputStream out = new DeflaterOutputStream(deflated)) {
+                out.write(content);
+            }
+            this.deflate = compressed(content, deflated.toByteArray(), DEFLATE, hash);
+        }
+
+        /**
+         * Pick the variant the client prefers. On a tie compressed beats identity and gzip beats
+         * deflate, which some old clients decode wrongly.
+         */
+        private Variant select(String acceptEncoding) {
+            Variant best = identity;
+            double bestQuality = quality(acceptEncoding, IDENTITY);
+            for (Variant variant : new Variant[] {gzip, deflate}) {
+                if (variant == null) {
+                    continue;
+                }
+                double q = quality(acceptEncoding, variant.encoding);
+                if (q > bestQuality || (q > 0 && q == bestQuality && best == identity)) {
+                    best = variant;
+                    bestQuality = q;
+                }
+            }
+            // A client refusing every encoding still gets the file rather than a 406
+            return best;
+        }
+
+        private static Variant compressed(byte[] content, byte[] compressed, String encoding, String hash) {
+            return compressed.length < content.length
+                    ? new Variant(compressed, encoding, "\"" + hash + "-" + encoding + "\"")
+                    : null;
+        }
+
+        private static String hash(byte[] content) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+                return Base64.getUrlEncoder().withoutPadding().encodeToString(digest).substring(0, 22);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+        }
+    }
+
+    /**
+     * The bytes of one encoding of a file with its ETag
+     */
+    private static final class Variant {
+        private final byte[] content;
+        private final String encoding;
+        private final String etag;
+
+        private Variant(byte[] content, String encoding, String etag) {
+            this.content = content;
+            this.encoding = encoding;
+            this.etag = etag;
+        }
+    }
+}
@@ -1,17 +1,26 @@
 package com.simpletomcat.todo;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Servlet to handle HTTP requests for the Simple Tomcat application
@@ -20,16 +29,104 @@ public class TODOService extends HttpServlet {
     private static final long serialVersionUID = 1L;
     private static final Logger logger = LoggerFactory.getLogger(TODOService.class);
     private static final String APPLICATION_JSON = "application/json";
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+    private static final String APPLICATION_MERGE_PATCH_JSON = "application/merge-patch+json";
     private static final String TASK_NOT_FOUND = "Task not found";
     private static final String INVALID_TASK_ID = "Invalid task ID";
     private static final String TASK_ID_REQUIRED = "Task ID is required";
+    private static final String INVALID_REQUEST_BODY = "Invalid request body";
+    private static final String MAX_BODY_BYTES_PARAM = "maxBodyBytes";
+    static final long DEFAULT_MAX_BODY_BYTES = 64 * 1024;
+    private static final String MAX_BULK_BYTES_PARAM = "maxBulkBytes";
+    static final long DEFAULT_MAX_BULK_BYTES = 16 * 1024 * 1024;
+    private static final String BULK_PATH = "/_bulk";
+    private static final String ETAG = "ETag";
+    private static final String IF_NONE_MATCH = "If-None-Match";
+    private static final String IF_MATCH = "If-Match";
+    private static final String TASK_MODIFIED = "Task has been modified";
+    // Expected version of an If-Match header naming no version the task could have
+    private static final long NO_VERSION = -1;
+    // Listings above this size are streamed task by task instead of being cached whole
+    static final int STREAMING_THRESHOLD = 5_000;
+    private static final String STATS_PATH = "/stats";
+    static final int DEFAULT_PAGE_SIZE = 100;
+    static final int MAX_PAGE_SIZE = 1_000;
     
     private final TaskManager taskManager;
     private final ObjectMapper objectMapper;
+    private final ObjectWriter taskWriter;
+    private final ObjectReader taskRequestReader;
+    private final ObjectReader bulkRequestReader;
+    private final JsonResponseCache responseCache;
+    private final RequestMetrics requestMetrics;
+    // Versions restart with the process, so ETags carry an epoch to stay unique across restarts
+    private final String etagEpoch;
+    private long maxBodyBytes;
+    private long maxBulkBytes;
     
     public TODOService() {
-        this.taskManager = new TaskManager();
+        this(new TaskManager(), true);
+    }
+    
+    /**
+     * Create a service backed by an existing task manager, such as one recovered from a log
+     * @param taskManager Task manager to serve
+     */
+    public TODOService(TaskManager taskManager) {
+        this(taskManager, true);
+    }
+    
+    TODOService(TaskManager taskManager, boolean cacheResponses) {
+        this.taskManager = taskManager;
         this.objectMapper = new ObjectMapper();
+        this.taskWriter = objectMapper.writerFor(Task.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.taskRequestReader = objectMapper.readerFor(TaskRequest.class);
+        this.bulkRequestReader = objectMapper.readerFor(BulkOperationRequest.class);
+        this.responseCache = new JsonResponseCache(objectMapper, cacheResponses, JsonResponseCache.DEFAULT_MAX_TASK_ENTRIES);
+        this.etagEpoch = Long.toString(System.currentTimeMillis(), 36);
+        this.requestMetrics = new RequestMetrics();
+        this.maxBodyBytes = DEFAULT_MAX_BODY_BYTES;
+        this.maxBulkBytes = DEFAULT_MAX_BULK_BYTES;
+    }
+    
+    @Override
+    public void init() throws ServletException {
+        String maxBody = getInitParameter(MAX_BODY_BYTES_PARAM);
+        if (maxBody != null) {
+            maxBodyBytes = Long.parseLong(maxBody.trim());
+        }
+        String maxBulk = getInitParameter(MAX_BULK_BYTES_PARAM);
+        if (maxBulk != null) {
+            maxBulkBytes = Long.parseLong(maxBulk.trim());
+        }
+    }
+    
+    /**
+     * Count and time every request by endpoint, method and status class before dispatching it.
+     * HttpServlet has no handler for PATCH, so it is dispatched here.
+     */
+    @Override
+    protected void service(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        long start = System.nanoTime();
+        RequestMetrics.Series series = requestMetrics.start(req.getPathInfo(), req.getMethod());
+        int status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+        try {
+            if ("PATCH".equals(req.getMethod())) {
+                doPatch(req, resp);
+            } else {
+                super.service(req, resp);
+            }
+            status = resp.getStatus();
+        } finally {
+            series.finish(start, status);
+        }
+    }
+    
+    /**
+     * @return Request counters and latency histograms of this service
+     */
+    RequestMetrics getRequestMetrics() {
+        return requestMetrics;
     }
     
     @Override
@@ -38,16 +135,21 @@ public class TODOService extends HttpServlet {
         
         try {
             if (pathInfo == null || pathInfo.equals("/")) {
-                // List all tasks
-                listAllTasks(resp);
+                // List all tasks, or one page of them when paging or filtering is requested
+                listTasks(req, resp);
+            } else if (pathInfo.equals(STATS_PATH)) {
+                sendStats(req, resp);
             } else {
                 // Parse task ID from path
                 int taskId = parseTaskId(pathInfo);
-                getTaskById(taskId, resp);
+                getTaskById(taskId, req, resp);
             }
         } catch (NumberFormatException e) {
             logger.error("Invalid task ID format in request: {}", pathInfo, e);
             sendErrorResponse(resp, HttpServletResponse.SC_BAD_REQUEST, INVALID_TASK_ID);
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid GET request: {}", e.getMessage());
+            sendErrorResponse(resp, HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
         } catch (Exception e) {
             logger.error("Error processing GET request", e);
             sendErrorResponse(resp, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Internal server error");
@@ -57,14 +159,23 @@ public class TODOService extends HttpServlet {
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         try {
-            String requestBody = readRequestBody(req);
-            Task taskRequest = objectMapper.readValue(requestBody, Task.class);
+            if (BULK_PATH.equals(req.getPathInfo())) {
+                applyBulk(req, resp);
+                return;
+            }
+            TaskRequest taskRequest = readTaskRequest(req);
             
             // Create a new task
             Task newTask = taskManager.addTask(taskRequest.getTitle(), taskRequest.getDescription());
             
             // Return the created task
-            sendJsonResponse(resp, HttpServletResponse.SC_CREATED, newTask);
+            resp.setHeader(ETAG, taskETag(newTask));
+            sendJsonResponse(resp, HttpServletResponse.SC_CREATED, responseCache.taskJson(newTask));
+        } catch (BoundedInputStream.TooLargeException e) {
+            sendErrorResponse(resp, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, e.getMessage());
+        } catch (JsonProcessingException e) {
+            logger.error("Malformed task data in request", e);
+            sendErrorResponse(resp, HttpServletResponse.SC_BAD_REQUEST, INVALID_REQUEST_BODY);
         } catch (IllegalArgumentException e) {
             logger.error("Invalid task data in request", e);
             sendErrorResponse(resp, HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
@@ -86,6 +197,7 @@ public class TODOService extends HttpServlet {
         try {
             int taskId = parseTaskId(pathInfo);
             boolean deleted = taskManager.deleteTask(taskId);
+            responseCache.invalidate(taskId);
             
             if (deleted) {
                 sendSuccessResponse(resp, "Task deleted successfully");
@@ -112,61 +224,587 @@ public class TODOService extends HttpServlet {
         
         try {
             int taskId = parseTaskId(pathInfo);
-            String requestBody = readRequestBody(req);
-            Task taskRequest = objectMapper.readValue(requestBody, Task.class);
-            
-            Task existingTask = taskManager.getTask(taskId);
-            
-            if (existingTask != null) {
-                taskManager.updateTaskStatus(taskId, taskRequest.isCompleted());
-                existingTask = taskManager.getTask(taskId);
-                sendJsonResponse(resp, HttpServletResponse.SC_OK, existingTask);
-            } else {
-                sendErrorResponse(resp, HttpServletResponse.SC_NOT_FOUND, TASK_NOT_FOUND);
+            TaskRequest taskRequest = readTaskRequest(req);
+            String ifMatch = req.getHeader(IF_MATCH);
+            long expectedVersion = expectedVersion(ifMatch, taskId);
+            if (expectedVersion == NO_VERSION) {
+                sendErrorResponse(resp, HttpServletResponse.SC_PRECONDITION_FAILED, TASK_MODIFIED);
+                return;
             }
+            
+            // Checking the version, updating and reading back the task take one lock acquisition
+            sendUpdateResult(resp, taskManager.apply(
+                    TaskOperation.update(taskId, Boolean.TRUE.equals(taskRequest.getCompleted())).ifVersion(expectedVersion)), ifMatch);
         } catch (NumberFormatException e) {
             logger.error("Invalid task ID format in update request: {}", pathInfo, e);
             sendErrorResponse(resp, HttpServletResponse.SC_BAD_REQUEST, INVALID_TASK_ID);
+        } catch (BoundedInputStream.TooLargeException e) {
+            sendErrorResponse(resp, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, e.getMessage());
+        } catch (JsonProcessingException e) {
+            logger.error("Malformed task data in update request", e);
+            sendErrorResponse(resp, HttpServletResponse.SC_BAD_REQUEST, INVALID_REQUEST_BODY);
         } catch (Exception e) {
             logger.error("Error processing PUT request", e);
             sendErrorResponse(resp, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Failed to update task: " + e.getMessage());
         }
     }
     
-    private void listAllTasks(HttpServletResponse resp) throws IOException {
-        List<Task> tasks = taskManager.getAllTasks();
-        sendJsonResponse(resp, HttpServletResponse.SC_OK, tasks);
+    /**
+     * Apply a JSON merge patch (RFC 7396) to the title, description and completion status of a task.
+     * Members left out keep their value; none of them may be removed, since every task needs them.
+     * Honors If-Match like PUT.
+     */
+    protected void doPatch(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        String pathInfo = req.getPathInfo();
+        
+        if (pathInfo == null || pathInfo.equals("/") || pathInfo.equals(STATS_PATH) || pathInfo.equals(BULK_PATH)) {
+            sendMethodNotAllowed(resp, pathInfo, "PATCH needs a task ID");
+            return;
+        }
+        String mediaType = mediaType(req.getContentType());
+        if (mediaType != null && !mediaType.equalsIgnoreCase(APPLICATION_MERGE_PATCH_JSON) && !mediaType.equalsIgnoreCase(APPLICATION_JSON)) {
+            sendErrorResponse(resp, HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE, "Expected " + APPLICATION_MERGE_PATCH_JSON);
+            return;
+        }
+        
+        try {
+            int taskId = parseTaskId(pathInfo);
+            String ifMatch = req.getHeader(IF_MATCH);
+            long expectedVersion = expectedVersion(ifMatch, taskId);
+            TaskOperation patch = readMergePatch(req, taskId);
+            if (expectedVersion == NO_VERSION) {
+                sendErrorResponse(resp, HttpServletResponse.SC_PRECONDITION_FAILED, TASK_MODIFIED);
+                return;
+            }
+            sendUpdateResult(resp, taskManager.apply(patch.ifVersion(expectedVersion)), ifMatch);
+        } catch (NumberFormatException e) {
+            logger.error("Invalid task ID format in patch request: {}", pathInfo, e);
+            sendErrorResponse(resp, HttpServletResponse.SC_BAD_REQUEST, INVALID_TASK_ID);
+        } catch (BoundedInputStream.TooLargeException e) {
+            sendErrorResponse(resp, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            sendErrorResponse(resp, HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+        } catch (JsonProcessingException e) {
+            logger.error("Malformed merge patch", e);
+            sendErrorResponse(resp, HttpServletResponse.SC_BAD_REQUEST, INVALID_REQUEST_BODY);
+        } catch (Exception e) {
+            logger.error("Error processing PATCH request", e);
+            sendErrorResponse(resp, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Failed to update task: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Refuse a method the path does not support with 405, listing the methods it does support
+     */
+    private void sendMethodNotAllowed(HttpServletResponse resp, String pathInfo, String message) throws IOException {
+        resp.setHeader("Allow", allowedMethods(pathInfo));
+        sendErrorResponse(resp, HttpServletResponse.SC_METHOD_NOT_ALLOWED, message);
+    }
+
+    /**
+     * @param pathInfo Path below /api/tasks, or null
+     * @return The methods the path supports, as listed in an Allow header
+     */
+    static String allowedMethods(String pathInfo) {
+        if (pathInfo == null || pathInfo.equals("/")) {
+            return "GET, POST";
+        }
+        return switch (pathInfo) {
+            case STATS_PATH -> "GET";
+            case BULK_PATH -> "POST";
+            default -> "GET, PUT, PATCH, DELETE";
+        };
+    }
+
+    /**
+     * @param contentType Content-Type header, possibly with parameters, or null
+     * @return The media type without parameters or surrounding whitespace, or null if there is none
+     */
+    private static String mediaType(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        int semicolon = contentType.indexOf(';');
+        return (semicolon < 0 ? contentType : contentType.substring(0, semicolon)).trim();
+    }
+
+    /**
+     * Parse a merge patch body into an update of the fields it names
+     * @throws IllegalArgumentException if the body is not an object or a member has the wrong type or is null
+     */
+    private TaskOperation readMergePatch(HttpServletRequest req, int taskId) throws IOException {
+        if (req.getContentLengthLong() > maxBodyBytes) {
+            throw new BoundedInputStream.TooLargeException(maxBodyBytes);
+        }
+        JsonNode patch;
+        try (InputStream in = new BoundedInputStream(req.getInputStream(), maxBodyBytes)) {
+            patch = objectMapper.readTree(in);
+        }
+        if (patch == null || !patch.isObject()) {
+            throw new IllegalArgumentException("Merge patch must be a JSON object");
+        }
+        JsonNode completed = patch.get("completed");
+        if (completed != null && !completed.isBoolean()) {
+            throw new IllegalArgumentException("Completed must be true or false");
+        }
+        return TaskOperation.patch(taskId, patchText(patch, "title"), patchText(patch, "description"),
+                completed == null ? null : completed.booleanValue());
+    }
+    
+    private static String patchText(JsonNode patch, String field) {
+        JsonNode value = patch.get(field);
+        if (value == null) {
+            return null;
+        }
+        if (!value.isTextual()) {
+            // A null member would remove the field, which a task cannot do without
+            throw new IllegalArgumentException("Field " + field + " must be a string");
+        }
+        return value.textValue();
+    }
+    
+    /**
+     * Answer an update applied with TaskManager.apply: the task and its new ETag, or why it failed
+     * @param ifMatch If-Match header of the request, or null
+     */
+    private void sendUpdateResult(HttpServletResponse resp, TaskOperation.Result result, String ifMatch) throws IOException {
+        switch (result.getStatus()) {
+            case UPDATED -> {
+                responseCache.invalidate(result.getTask().getId());
+                resp.setHeader(ETAG, taskETag(result.getTask()));
+                sendJsonResponse(resp, HttpServletResponse.SC_OK, responseCache.taskJson(result.getTask()));
+            }
+            case CONFLICT -> {
+                resp.setHeader(ETAG, taskETag(result.getTask()));
+                sendErrorResponse(resp, HttpServletResponse.SC_PRECONDITION_FAILED, TASK_MODIFIED);
+            }
+            case INVALID -> sendErrorResponse(resp, HttpServletResponse.SC_BAD_REQUEST, result.getError());
+            // If-Match can never match a task that does not exist
+            default -> sendErrorResponse(resp, ifMatch == null ? HttpServletResponse.SC_NOT_FOUND
+                    : HttpServletResponse.SC_PRECONDITION_FAILED, TASK_NOT_FOUND);
+        }
+    }
+    
+    /**
+     * Apply a JSON array or NDJSON stream of operations as one batch and report the outcome of each.
+     * The body is parsed in full before anything is applied, so a malformed body changes nothing.
+     */
+    private void applyBulk(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        List<BulkOperationRequest> items = readBulkRequest(req);
+        
+        // Items that do not describe an operation fail here; the rest go to the task manager together
+        String[] errors = new String[items.size()];
+        List<TaskOperation> operations = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            try {
+                operations.add(toOperation(items.get(i)));
+            } catch (IllegalArgumentException e) {
+                errors[i] = e.getMessage();
+            }
+        }
+        List<TaskOperation.Result> results = taskManager.applyOperations(operations);
+        for (TaskOperation.Result result : results) {
+            if (result.isSuccess() && result.getOperation().getType() != TaskOperation.Type.CREATE) {
+                responseCache.invalidate(result.getTask().getId());
+            }
+        }
+        
+        resp.setStatus(HttpServletResponse.SC_OK);
+        resp.setContentType(APPLICATION_JSON);
+        resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        boolean failed = false;
+        for (TaskOperation.Result result : results) {
+            failed |= !result.isSuccess();
+        }
+        int next = 0;
+        try (JsonGenerator generator = createGenerator(resp.getOutputStream())) {
+            generator.writeStartObject();
+            generator.writeBooleanField("errors", failed || operations.size() < items.size());
+            generator.writeArrayFieldStart("items");
+            for (int i = 0; i < items.size(); i++) {
+                generator.writeStartObject();
+                generator.writeStringField("op", items.get(i).getOp());
+                if (errors[i] != null) {
+                    generator.writeNumberField("status", HttpServletResponse.SC_BAD_REQUEST);
+                    generator.writeStringField("error", errors[i]);
+                } else {
+                    writeBulkResult(generator, results.get(next++));
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
     }
     
-    private void getTaskById(int taskId, HttpServletResponse resp) throws IOException {
+    private void writeBulkResult(JsonGenerator generator, TaskOperation.Result result) throws IOException {
+        int status = switch (result.getStatus()) {
+            case CREATED -> HttpServletResponse.SC_CREATED;
+            case UPDATED, DELETED -> HttpServletResponse.SC_OK;
+            case NOT_FOUND -> HttpServletResponse.SC_NOT_FOUND;
+            case CONFLICT -> HttpServletResponse.SC_CONFLICT;
+            case INVALID -> HttpServletResponse.SC_BAD_REQUEST;
+        };
+        if (result.getOperation().getType() != TaskOperation.Type.CREATE) {
+            generator.writeNumberField("id", result.getOperation().getId());
+        }
+        generator.writeNumberField("status", status);
+        if (result.isSuccess()) {
+            generator.writeFieldName("task");
+            taskWriter.writeValue(generator, result.getTask());
+        } else {
+            generator.writeStringField("error", result.getError());
+        }
+    }
+    
+    /**
+     * The version a bulk item requires of its task, or ANY_VERSION if it names none
+     */
+    private static long expectedVersion(BulkOperationRequest item) {
+        return item.getVersion() == null ? TaskOperation.ANY_VERSION : item.getVersion();
+    }
+    
+    /**
+     * Turn one bulk item into an operation
+     * @throws IllegalArgumentException if the op is missing or unknown, or lacks a field it needs
+     */
+    private TaskOperation toOperation(BulkOperationRequest item) {
+        if (item.getOp() == null) {
+            throw new IllegalArgumentException("Operation is required");
+        }
+        switch (item.getOp()) {
+            case "create":
+                return TaskOperation.create(item.getTitle(), item.getDescription());
+            case "update":
+                if (item.getTitle() == null && item.getDescription() == null && item.getCompleted() == null) {
+                    throw new IllegalArgumentException("Update needs a title, description or completed");
+                }
+                return TaskOperation.patch(requireId(item), item.getTitle(), item.getDescription(), item.getCompleted())
+                        .ifVersion(expectedVersion(item));
+            case "delete":
+                return TaskOperation.delete(requireId(item)).ifVersion(expectedVersion(item));
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + item.getOp());
+        }
+    }
+    
+    private int requireId(BulkOperationRequest item) {
+        if (item.getId() == null) {
+            throw new IllegalArgumentException(TASK_ID_REQUIRED);
+        }
+        return item.getId();
+    }
+    
+    private void listTasks(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        // Answer unchanged polls from the version counter alone, before building any snapshot
+        boolean ndjson = acceptsNdjson(req);
+        resp.setHeader("Vary", "Accept");
+        String currentETag = listETag(taskManager.getVersion(), ndjson);
+        if (isNotModified(req, currentETag)) {
+            sendNotModified(resp, currentETag);
+            return;
+        }
+        
+        if (req.getParameter("q") != null) {
+            searchTasks(req, resp, currentETag, ndjson);
+            return;
+        }
+        if (req.getParameter("limit") != null || req.getParameter("after") != null
+                || req.getParameter("completed") != null) {
+            listTaskPage(req, resp, currentETag, ndjson);
+            return;
+        }
+        
+        // Large listings are streamed a page at a time, so no copy of every task is built or kept
+        if (taskManager.getTaskCount() > STREAMING_THRESHOLD) {
+            resp.setHeader(ETAG, currentETag);
+            if (ndjson) {
+                streamNdjsonResponse(resp, taskManager.iterateTasks());
+            } else {
+                streamJsonResponse(resp, taskManager.iterateTasks());
+            }
+            return;
+        }
+        
+        // The snapshot and its JSON are shared across requests until the next mutation
+        TaskSnapshot snapshot = taskManager.snapshot();
+        resp.setHeader(ETAG, listETag(snapshot.getVersion(), ndjson));
+        if (ndjson) {
+            streamNdjsonResponse(resp, snapshot.getTasks());
+        } else if (snapshot.getTasks().size() > STREAMING_THRESHOLD) {
+            streamJsonResponse(resp, snapshot.getTasks());
+        } else {
+            sendJsonResponse(resp, HttpServletResponse.SC_OK, responseCache.listJson(snapshot));
+        }
+    }
+    
+    /**
+     * Send one page of tasks selected by the limit, after and completed query parameters.
+     * A Link header with rel="next" points at the following page while pages are full.
+     */
+    private void listTaskPage(HttpServletRequest req, HttpServletResponse resp, String etag, boolean ndjson)
+            throws IOException {
+        int limit = parseIntParameter(req, "limit", DEFAULT_PAGE_SIZE, 1, MAX_PAGE_SIZE);
+        int afterId = parseIntParameter(req, "after", 0, 0, Integer.MAX_VALUE);
+        Boolean completed = parseCompletedParameter(req);
+        
+        List<Task> page = taskManager.getTasks(afterId, limit, completed);
+        if (page.size() == limit) {
+            String next = req.getRequestURI() + "?after=" + page.get(page.size() - 1).getId() + "&limit=" + limit
+                    + (completed == null ? "" : "&completed=" + completed);
+            resp.setHeader("Link", "<" + next + ">; rel=\"next\"");
+        }
+        // The version was read before the page, so the ETag never claims newer data than served
+        resp.setHeader(ETAG, etag);
+        if (ndjson) {
+            streamNdjsonResponse(resp, page);
+        } else {
+            streamJsonResponse(resp, page);
+        }
+    }
+    
+    /**
+     * Send the tasks matching the q query parameter, best match first
+     */
+    private void searchTasks(HttpServletRequest req, HttpServletResponse resp, String etag, boolean ndjson)
+            throws IOException {
+        int limit = parseIntParameter(req, "limit", DEFAULT_PAGE_SIZE, 1, MAX_PAGE_SIZE);
+        List<Task> results = taskManager.searchTasks(req.getParameter("q"), limit, parseCompletedParameter(req));
+        resp.setHeader(ETAG, etag);
+        if (ndjson) {
+            streamNdjsonResponse(resp, results);
+        } else {
+            streamJsonResponse(resp, results);
+        }
+    }
+    
+    private int parseIntParameter(HttpServletRequest req, String name, int defaultValue, int min, int max) {
+        String value = req.getParameter(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            if (parsed >= min && parsed <= max) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below with the accepted range
+        }
+        throw new IllegalArgumentException("Parameter " + name + " must be an integer between " + min + " and " + max);
+    }
+    
+    private Boolean parseCompletedParameter(HttpServletRequest req) {
+        String value = req.getParameter("completed");
+        if (value == null) {
+            return null;
+        }
+        if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false")) {
+            return Boolean.valueOf(value);
+        }
+        throw new IllegalArgumentException("Parameter completed must be true or false");
+    }
+    
+    private void sendStats(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        String etag = "W/\"" + etagEpoch + "-" + taskManager.getVersion() + "-stats\"";
+        if (isNotModified(req, etag)) {
+            sendNotModified(resp, etag);
+            return;
+        }
+        resp.setHeader(ETAG, etag);
+        sendJsonResponse(resp, HttpServletResponse.SC_OK, objectMapper.writeValueAsBytes(taskManager.getStats()));
+    }
+    
+    private boolean acceptsNdjson(HttpServletRequest req) {
+        String accept = req.getHeader("Accept");
+        return accept != null && accept.contains(APPLICATION_NDJSON);
+    }
+    
+    private void getTaskById(int taskId, HttpServletRequest req, HttpServletResponse resp) throws IOException {
         Task task = taskManager.getTask(taskId);
         
         if (task != null) {
-            sendJsonResponse(resp, HttpServletResponse.SC_OK, task);
+            String etag = taskETag(task);
+            if (isNotModified(req, etag)) {
+                sendNotModified(resp, etag);
+                return;
+            }
+            resp.setHeader(ETAG, etag);
+            sendJsonResponse(resp, HttpServletResponse.SC_OK, responseCache.taskJson(task));
         } else {
             sendErrorResponse(resp, HttpServletResponse.SC_NOT_FOUND, TASK_NOT_FOUND);
         }
     }
     
+    /**
+     * Collections get weak ETags, which lets the connector gzip them: Tomcat never compresses
+     * a response carrying a strong ETag, since the tag would then name two different byte streams
+     */
+    private String listETag(long version, boolean ndjson) {
+        return "W/\"" + etagEpoch + "-" + version + (ndjson ? "-nd" : "") + "\"";
+    }
+    
+    private String taskETag(Task task) {
+        return "\"" + etagEpoch + "-" + task.getId() + "-" + task.getVersion() + "\"";
+    }
+    
+    /**
+     * Check whether an If-None-Match header lists the given entity tag
+     * @param req Request carrying the conditional header
+     * @param etag Current entity tag of the resource
+     * @return true if the client already holds the current representation
+     */
+    private boolean isNotModified(HttpServletRequest req, String etag) {
+        String ifNoneMatch = req.getHeader(IF_NONE_MATCH);
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        // If-None-Match uses weak comparison, so a W/ prefix on either tag does not matter
+        String current = etag.startsWith("W/") ? etag.substring(2) : etag;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(current)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Work out which version of a task an If-Match header allows a change to.
+     * If-Match uses strong comparison, so weak tags and tags from before a restart never match.
+     * @param ifMatch Header value, or null if the request has none
+     * @param taskId Task the request changes
+     * @return ANY_VERSION without a header or for "*", NO_VERSION if no listed tag can match, otherwise the version
+     */
+    private long expectedVersion(String ifMatch, int taskId) {
+        if (ifMatch == null) {
+            return TaskOperation.ANY_VERSION;
+        }
+        String prefix = "\"" + etagEpoch + "-" + taskId + "-";
+        long expected = NO_VERSION;
+        for (String candidate : ifMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return TaskOperation.ANY_VERSION;
+            }
+            if (tag.startsWith(prefix) && tag.endsWith("\"") && tag.length() > prefix.length() + 1) {
+                try {
+                    long version = Long.parseLong(tag.substring(prefix.length(), tag.length() - 1));
+                    if (version > 0) {
+                        // Versions only grow, so of several tags a client saw only the newest can still be current
+                        expected = Math.max(expected, version);
+                    }
+                } catch (NumberFormatException e) {
+                    // Not a tag this server issued
+                }
+            }
+        }
+        return expected;
+    }
+    
+    private void sendNotModified(HttpServletResponse resp, String etag) {
+        resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        resp.setHeader(ETAG, etag);
+    }
+    
     private int parseTaskId(String pathInfo) {
         return Integer.parseInt(pathInfo.substring(1));
     }
     
-    private String readRequestBody(HttpServletRequest req) throws IOException {
-        try (BufferedReader reader = req.getReader()) {
-            return reader.lines().collect(Collectors.joining(System.lineSeparator()));
+    /**
+     * Parse the request body straight from the servlet input stream
+     * @param req Request with a JSON task body
+     * @return The parsed request
+     * @throws BoundedInputStream.TooLargeException if the body is larger than the configured maximum
+     * @throws IOException if the body cannot be read or is not valid JSON
+     */
+    TaskRequest readTaskRequest(HttpServletRequest req) throws IOException {
+        // Reject declared oversized bodies before reading; chunked bodies are checked while streaming
+        if (req.getContentLengthLong() > maxBodyBytes) {
+            throw new BoundedInputStream.TooLargeException(maxBodyBytes);
+        }
+        try (InputStream in = new BoundedInputStream(req.getInputStream(), maxBodyBytes)) {
+            return taskRequestReader.readValue(in);
         }
     }
     
-    private void sendJsonResponse(HttpServletResponse resp, int status, Object data) throws IOException {
+    /**
+     * Parse the items of a bulk request, given either as one JSON array or as newline-delimited objects
+     * @param req Request with a bulk body
+     * @return The parsed items in order
+     * @throws BoundedInputStream.TooLargeException if the body is larger than the configured bulk maximum
+     * @throws IOException if the body cannot be read or is not valid JSON
+     */
+    List<BulkOperationRequest> readBulkRequest(HttpServletRequest req) throws IOException {
+        if (req.getContentLengthLong() > maxBulkBytes) {
+            throw new BoundedInputStream.TooLargeException(maxBulkBytes);
+        }
+        // A top-level array is unwrapped, so both forms read as a sequence of root values
+        try (InputStream in = new BoundedInputStream(req.getInputStream(), maxBulkBytes);
+             MappingIterator<BulkOperationRequest> values = bulkRequestReader.readValues(in)) {
+            return values.readAll();
+        }
+    }
+    
+    private void sendJsonResponse(HttpServletResponse resp, int status, byte[] json) throws IOException {
         resp.setStatus(status);
         resp.setContentType(APPLICATION_JSON);
-        try (PrintWriter out = resp.getWriter()) {
-            out.print(objectMapper.writeValueAsString(data));
-            out.flush();
+        resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        resp.setContentLength(json.length);
+        resp.getOutputStream().write(json);
+    }
+    
+    /**
+     * Write tasks as a JSON array one task at a time.
+     * No Content-Length is set, so the container switches to chunked transfer once the
+     * output buffer fills and memory stays bounded by that buffer.
+     */
+    private void streamJsonResponse(HttpServletResponse resp, Iterable<Task> tasks) throws IOException {
+        resp.setStatus(HttpServletResponse.SC_OK);
+        resp.setContentType(APPLICATION_JSON);
+        resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        try (JsonGenerator generator = createGenerator(resp.getOutputStream())) {
+            generator.writeStartArray();
+            for (Task task : tasks) {
+                taskWriter.writeValue(generator, task);
+            }
+            generator.writeEndArray();
+        }
+    }
+    
+    /**
+     * Write tasks as newline-delimited JSON, one task object per line
+     */
+    private void streamNdjsonResponse(HttpServletResponse resp, Iterable<Task> tasks) throws IOException {
+        resp.setStatus(HttpServletResponse.SC_OK);
+        resp.setContentType(APPLICATION_NDJSON);
+        resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        try (JsonGenerator generator = createGenerator(resp.getOutputStream())) {
+            generator.setRootValueSeparator(null);
+            for (Task task : tasks) {
+                taskWriter.writeValue(generator, task);
+                generator.writeRaw('\n');
+            }
         }
     }
     
+    private JsonGenerator createGenerator(OutputStream out) throws IOException {
+        // Leave the servlet stream open for the container to finish the response, and never close
+        // open arrays on the way out, so a stream that fails midway is not passed off as complete
+        return objectMapper.getFactory()
+                .createGenerator(out)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+    }
+    
+    JsonResponseCache getResponseCache() {
+        return responseCache;
+    }
+    
     private void sendSuccessResponse(HttpServletResponse resp, String message) throws IOException {
         resp.setStatus(HttpServletResponse.SC_OK);
         try (PrintWriter out = resp.getWriter()) {
@@ -175,11 +813,22 @@ public class TODOService extends HttpServlet {
         }
     }
     
+    /**
+     * Replace whatever a failed handler buffered with a plain text error.
+     * @throws IOException if part of a streamed body is already on the wire: the status can no longer
+     * change, and failing the request makes the container abort the body instead of ending it cleanly
+     */
     private void sendErrorResponse(HttpServletResponse resp, int status, String message) throws IOException {
-        resp.setStatus(status);
-        try (PrintWriter out = resp.getWriter()) {
-            out.write(message);
-            out.flush();
+        if (resp.isCommitted()) {
+            throw new IOException("Response already committed, aborting it: " + message);
         }
+        // A failed stream holds the output stream, so the error is written through it rather than a writer
+        resp.resetBuffer();
+        byte[] body = message.getBytes(StandardCharsets.UTF_8);
+        resp.setStatus(status);
+        resp.setContentType("text/plain");
+        resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        resp.setContentLength(body.length);
+        resp.getOutputStream().write(body);
     }
 } 
\ No newline at end of file
@@ -1,32 +1,31 @@
 package com.simpletomcat.todo;
 
-import java.util.Objects;
-
 /**
- * Represents a task in the Simple Tomcat application
+ * Represents a task in the Simple Tomcat application.
+ * Tasks are immutable: stores hand the same instance to concurrent readers, snapshots and the
+ * response cache, so every change is made by storing a new task with a higher version.
  */
 public class Task {
     private final int id;
-    private String title;
-    private String description;
-    private boolean completed;
-
-    public Task() {
-        this.id = 0;
-    }
+    private final String title;
+    private final String description;
+    private final boolean completed;
+    private final long version;
 
     public Task(int id, String title, String description) {
-        this.id = id;
-        setTitle(title);
-        setDescription(description);
-        this.completed = false;
+        this(id, title, description, false, 1);
     }
 
     public Task(int id, String title, String description, boolean completed) {
+        this(id, title, description, completed, 1);
+    }
+
+    Task(int id, String title, String description, boolean completed, long version) {
         this.id = id;
-        setTitle(title);
-        setDescription(description);
+        this.title = requireText(title, "Title");
+        this.description = requireText(description, "Description");
         this.completed = completed;
+        this.version = version;
     }
 
     public int getId() {
@@ -37,30 +36,28 @@ public class Task {
         return title;
     }
 
-    public void setTitle(String title) {
-        if (title == null || title.trim().isEmpty()) {
-            throw new IllegalArgumentException("Title cannot be null or empty");
-        }
-        this.title = title.trim();
-    }
-
     public String getDescription() {
         return description;
     }
 
-    public void setDescription(String description) {
-        if (description == null || description.trim().isEmpty()) {
-            throw new IllegalArgumentException("Description cannot be null or empty");
-        }
-        this.description = description.trim();
-    }
-
     public boolean isCompleted() {
         return completed;
     }
 
-    public void setCompleted(boolean completed) {
-        this.completed = completed;
+    /**
+     * Get the version of this task, which grows every time the stored task changes.
+     * Clients send it back in If-Match, as part of the ETag, to update only the version they read.
+     * @return The task version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    private static String requireText(String text, String field) {
+        if (text == null || text.trim().isEmpty()) {
+            throw new IllegalArgumentException(field + " cannot be null or empty");
+        }
+        return text.trim();
     }
 
     @Override
@@ -73,7 +70,7 @@ public class Task {
 
     @Override
     public int hashCode() {
-        return Objects.hash(id);
+        return Integer.hashCode(id);
     }
 
     @Override
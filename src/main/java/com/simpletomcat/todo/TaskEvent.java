@@ -0,0 +1,46 @@
+package com.simpletomcat.todo;
+
+/**
+ * A change to the task collection as published to the TaskEventRing
+ */
+public final class TaskEvent {
+
+    /**
+     * Kind of change
+     */
+    public enum Type {
+        ADDED,
+        UPDATED,
+        DELETED
+    }
+
+    private final long sequence;
+    private final Type type;
+    private final Task task;
+    // Wire form memoized by the stream servlet so each event is encoded once for every subscriber
+    volatile byte[] encoded;
+
+    TaskEvent(long sequence, Type type, Task task) {
+        this.sequence = sequence;
+        this.type = type;
+        this.task = task;
+    }
+
+    /**
+     * @return Position of the event in the ring; sequences start at 1 and have no gaps
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return The task after an add or update, or as it was before a delete
+     */
+    public Task getTask() {
+        return task;
+    }
+}
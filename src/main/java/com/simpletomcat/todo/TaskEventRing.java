@@ -0,0 +1,131 @@
+package com.simpletomcat.todo;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free buffer of the most recent task events.
+ * Writers claim the next sequence with one atomic increment and store the event in the slot
+ * the sequence maps to, overwriting the event one capacity older; they never wait for readers.
+ * A writer that claimed its sequence but was delayed past a newer writer to the same slot
+ * drops its event rather than overwrite the newer one, which readers then see as lost.
+ * Every reader keeps its own cursor. A slot still holding an older sequence has been claimed
+ * but not yet filled, so reading stops there; a slot holding a newer one was overwritten, so
+ * the reader fell more than a capacity behind and has to skip ahead, dropping the oldest events.
+ * Sequences restart at 1 with every process, so the ring also has an epoch that tells its
+ * sequences apart from those handed out before a restart.
+ */
+public final class TaskEventRing {
+    static final int DEFAULT_CAPACITY = 4096;
+
+    private final AtomicReferenceArray<TaskEvent> slots;
+    private final int mask;
+    private final AtomicLong nextSequence;
+    private final List<Runnable> listeners;
+    private final String epoch;
+
+    /**
+     * @param capacity Number of events kept; rounded up to a power of two
+     */
+    TaskEventRing(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.nextSequence = new AtomicLong(1);
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.epoch = Long.toString(System.currentTimeMillis(), 36);
+    }
+
+    /**
+     * Append an event and notify the listeners. Never blocks.
+     * @param type Kind of change
+     * @param task The task after an add or update, or as it was before a delete
+     * @return The sequence of the new event
+     */
+    long publish(TaskEvent.Type type, Task task) {
+        long sequence = nextSequence.getAndIncrement();
+        TaskEvent event = new TaskEvent(sequence, type, task);
+        int index = (int) (sequence & mask);
+        TaskEvent current;
+        do {
+            current = slots.get(index);
+            if (current != null && current.getSequence() > sequence) {
+                // A writer a whole ring ahead already filled the slot
+                break;
+            }
+        } while (!slots.compareAndSet(index, current, event));
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+        return sequence;
+    }
+
+    /**
+     * Register a callback run on the publishing thread after every event. It is called while
+     * the task that changed is still locked, so it must only hand off work, such as waking a thread.
+     * @param listener Callback to run
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Runnable listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return Token that differs between processes, to qualify sequences across restarts
+     */
+    public String getEpoch() {
+        return epoch;
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return The sequence of the latest claimed event, or 0 if none was published yet
+     */
+    public long getLastSequence() {
+        return nextSequence.get() - 1;
+    }
+
+    /**
+     * Read published events in order from a sequence on
+     * @param from Sequence of the first event wanted
+     * @param into Array to fill
+     * @return The number of events read, stopping at the first not yet published, or -1
+     *         if the event at from was already overwritten
+     */
+    public int read(long from, TaskEvent[] into) {
+        int count = 0;
+        for (long sequence = from; count < into.length; sequence++) {
+            TaskEvent event = slots.get((int) (sequence & mask));
+            if (event == null || event.getSequence() < sequence) {
+                break;
+            }
+            if (event.getSequence() > sequence) {
+                // Overwritten while the reader lagged; whatever was read before it is still valid
+                return count == 0 ? -1 : count;
+            }
+            into[count++] = event;
+        }
+        return count;
+    }
+
+    /**
+     * @return The oldest sequence a reader can still hope to find in the ring
+     */
+    public long getOldestSequence() {
+        return Math.max(1, nextSequence.get() - getCapacity());
+    }
+}
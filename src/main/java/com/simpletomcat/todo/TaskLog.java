@@ -0,0 +1,145 @@
+package com.simpletomcat.todo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Durable record of task changes.
+ * TaskManager appends every change before applying it in memory and replays the log
+ * on startup to rebuild its state. Changes to the same task are appended in the order
+ * they were applied, so replaying in log order restores the latest state of every task.
+ * A checkpoint replaces everything logged before it with a snapshot of all tasks, so
+ * replay time follows the number of tasks rather than the age of the log.
+ */
+public interface TaskLog extends Closeable {
+
+    /**
+     * Receives logged changes in the order they were appended
+     */
+    interface Replayer {
+        /**
+         * A task was added or replaced
+         * @param task The task as stored after the change
+         */
+        void put(Task task);
+
+        /**
+         * A task was deleted
+         * @param id Task ID
+         */
+        void delete(int id);
+
+        /**
+         * Ids below a bound were handed out before a snapshot, even if their tasks are gone
+         * @param nextId Lowest id that may still be handed out
+         */
+        void reserveIds(int nextId);
+    }
+
+    /**
+     * Feed every logged change to a replayer. Must be called once before the first append.
+     * @param replayer Receiver of the logged changes
+     * @return The number of changes replayed
+     * @throws IOException if the log cannot be read
+     */
+    long replay(Replayer replayer) throws IOException;
+
+    /**
+     * Record that a task was added or replaced, returning once the change is as durable
+     * as the log is configured to make it
+     * @param task The task as it will be stored
+     * @throws IOException if the change could not be logged
+     */
+    void appendPut(Task task) throws IOException;
+
+    /**
+     * Record that a task was deleted, returning once the change is as durable
+     * as the log is configured to make it
+     * @param id Task ID
+     * @throws IOException if the change could not be logged
+     */
+    void appendDelete(int id) throws IOException;
+
+    /**
+     * Record several changes in order, returning once all of them are as durable as the log
+     * is configured to make them. Implementations should make the batch durable at once rather
+     * than change by change; a crash may still keep only a prefix of the batch.
+     * @param changes Changes in the order they will be applied
+     * @throws IOException if the changes could not be logged
+     */
+    default void appendAll(List<Change> changes) throws IOException {
+        for (Change change : changes) {
+            if (change.isDelete()) {
+                appendDelete(change.getId());
+            } else {
+                appendPut(change.getTask());
+            }
+        }
+    }
+
+    /**
+     * Start a checkpoint. Changes appended after this call are kept apart from earlier ones,
+     * which the snapshot passed to completeCheckpoint will replace.
+     * @return Token identifying the checkpoint
+     * @throws IOException if the log cannot be switched
+     */
+    long startCheckpoint() throws IOException;
+
+    /**
+     * Persist a snapshot and drop the changes it replaces.
+     * The snapshot may also contain changes appended after startCheckpoint, since replaying
+     * those changes over it leads to the same state.
+     * @param checkpoint Token returned by startCheckpoint
+     * @param nextId Lowest id not yet handed out
+     * @param tasks Every stored task, reflecting at least every change appended before the checkpoint;
+     *              iterated once, so it can stream tasks straight from the store
+     * @return The number of tasks in the snapshot
+     * @throws IOException if the snapshot cannot be written
+     */
+    int completeCheckpoint(long checkpoint, int nextId, Iterable<Task> tasks) throws IOException;
+
+    /**
+     * One change in a batch: a task added or replaced, or the deletion of a task
+     */
+    final class Change {
+        private final int id;
+        private final Task task;
+
+        private Change(int id, Task task) {
+            this.id = id;
+            this.task = task;
+        }
+
+        /**
+         * @param task The task as it will be stored
+         * @return A change adding or replacing the task
+         */
+        public static Change put(Task task) {
+            return new Change(task.getId(), task);
+        }
+
+        /**
+         * @param id Task ID
+         * @return A change deleting the task
+         */
+        public static Change delete(int id) {
+            return new Change(id, null);
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * @return The task as it will be stored, or null for a deletion
+         */
+        public Task getTask() {
+            return task;
+        }
+
+        public boolean isDelete() {
+            return task == null;
+        }
+    }
+}
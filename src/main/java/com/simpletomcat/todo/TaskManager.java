@@ -1,27 +1,116 @@
 package com.simpletomcat.todo;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Manages tasks in the Simple Tomcat application
+ * Manages tasks in the Simple Tomcat application.
+ * Reads are lock-free. Writes lock only the stripe owning the task id, so writes to
+ * different tasks rarely contend, and stored tasks are replaced rather than mutated
+ * so readers always see a complete task.
+ * Every mutation bumps a version counter. The full listing is materialized once per
+ * version into an immutable TaskSnapshot that readers share until the next mutation.
+ * Pending and completed ids are indexed in bitsets so pages of tasks, filtered or not,
+ * are found without walking the whole store. Each status also keeps a counter, changed
+ * under the same stripe lock as its bitset, so status counts are O(1).
+ * Titles and descriptions are kept in a SearchIndex for ranked full-text queries.
+ * When a TaskLog is given, every change is appended to it under the stripe lock before it
+ * is applied, and the log is replayed on construction to recover the previous state.
+ * A checkpoint snapshots every task into the log so older changes can be dropped; it runs
+ * alongside writers, which at most wait for one stripe lock to be taken and released.
+ * A batch of operations takes every stripe it touches once, in stripe order so concurrent
+ * batches cannot deadlock, and logs all of its changes with a single append.
+ * Every applied change is published to a TaskEventRing under the same stripe lock, so the
+ * events of one task appear in the order its changes were made.
+ * Writers record how long they waited for and held their stripe locks in LatencyHistograms,
+ * so lock contention shows up in the metrics.
  */
 public class TaskManager {
-    private final List<Task> tasks;
+    private static final int LOCK_STRIPES = 64;
+    private static final int ITERATION_PAGE_SIZE = 1_000;
+
+    private final TaskStore tasks;
+    private final IdBitSet pendingIds;
+    private final IdBitSet completedIds;
+    private final AtomicInteger pendingCount;
+    private final AtomicInteger completedCount;
+    private final SearchIndex searchIndex;
     private final AtomicInteger idCounter;
-    private final ReadWriteLock lock;
+    private final Lock[] locks;
+    private final AtomicLong version;
+    private final TaskLog log;
+    private final Object checkpointLock;
+    private final TaskEventRing events;
+    private final LatencyHistogram lockWait;
+    private final LatencyHistogram lockHold;
+    private long checkpointVersion;
+    private volatile TaskSnapshot snapshot;
 
+    /**
+     * Create an in-memory task manager holding the sample tasks
+     */
     public TaskManager() {
-        this.tasks = Collections.synchronizedList(new ArrayList<>());
+        this(null);
+    }
+
+    /**
+     * Create a task manager that writes every change ahead to a log.
+     * The state is rebuilt by replaying the log; the sample tasks are only added when it is empty.
+     * @param log Log to replay and append to, or null to keep tasks in memory only
+     * @throws UncheckedIOException if the log cannot be replayed
+     */
+    public TaskManager(TaskLog log) {
+        this(log, new HeapTaskStore());
+    }
+
+    /**
+     * Create a task manager keeping its tasks in the given store
+     * @param log Log to replay and append to, or null to keep tasks in memory only
+     * @param store Empty store to hold the tasks
+     * @throws UncheckedIOException if the log cannot be replayed
+     */
+    TaskManager(TaskLog log, TaskStore store) {
+        this.tasks = store;
+        this.pendingIds = new IdBitSet();
+        this.completedIds = new IdBitSet();
+        this.pendingCount = new AtomicInteger();
+        this.completedCount = new AtomicInteger();
+        this.searchIndex = new SearchIndex();
         this.idCounter = new AtomicInteger(1);
-        this.lock = new ReentrantReadWriteLock();
-        
-        // Initialize with sample tasks
+        this.version = new AtomicLong();
+        this.locks = new Lock[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.log = log;
+        this.checkpointLock = new Object();
+        this.events = new TaskEventRing(TaskEventRing.DEFAULT_CAPACITY);
+        this.lockWait = new LatencyHistogram();
+        this.lockHold = new LatencyHistogram();
+
+        // Start from the sample tasks unless the log recovered earlier state
+        if (log != null) {
+            replay(log);
+            checkpointVersion = version.get();
+        }
+        if (idCounter.get() == 1) {
+            addSampleTasks();
+        }
+    }
+
+    private void addSampleTasks() {
         addTask("Complete project", "Finish the SimpleTomcat project implementation");
         addTask("Buy groceries", "Milk, eggs, bread, and vegetables");
         addTask("Clean house", "Vacuum living room and mop kitchen");
@@ -42,16 +131,185 @@ public class TaskManager {
             throw new IllegalArgumentException("Description cannot be null or empty");
         }
 
-        int id = idCounter.getAndIncrement();
-        Task task = new Task(id, title.trim(), description.trim());
-        
-        lock.writeLock().lock();
+        // Ids are sequential, so id order is insertion order
+        Task task = new Task(idCounter.getAndIncrement(), title.trim(), description.trim());
+        Lock lock = lockFor(task.getId());
+        long acquired = lock(lock);
         try {
-            tasks.add(task);
+            logPut(task);
+            addStored(task);
+            version.incrementAndGet();
+            events.publish(TaskEvent.Type.ADDED, task);
             return task;
         } finally {
-            lock.writeLock().unlock();
+            unlock(lock, acquired);
+        }
+    }
+
+    /**
+     * Add several tasks with one log append and one acquisition of each stripe lock involved
+     * @param operations Create operations for the new tasks
+     * @return The new tasks in the order of the operations
+     * @throws IllegalArgumentException if an operation is not a create or is invalid; no task is added then
+     */
+    public List<Task> addTasks(Collection<TaskOperation> operations) {
+        for (TaskOperation operation : operations) {
+            if (operation.getType() != TaskOperation.Type.CREATE) {
+                throw new IllegalArgumentException("Only create operations can be added: " + operation.getType());
+            }
+            String error = operation.validate();
+            if (error != null) {
+                throw new IllegalArgumentException(error);
+            }
+        }
+
+        List<TaskOperation.Result> results = applyOperations(new ArrayList<>(operations));
+        List<Task> added = new ArrayList<>(results.size());
+        for (TaskOperation.Result result : results) {
+            added.add(result.getTask());
+        }
+        return added;
+    }
+
+    /**
+     * Apply one create, update or delete atomically: the check of an expected version, the change
+     * and reading back the result all happen under one acquisition of the stripe lock, so an
+     * update conditional on the version the caller read is a compare-and-set
+     * @param operation Operation to apply
+     * @return The outcome, with the task as stored afterwards, or as stored now on a CONFLICT
+     */
+    public TaskOperation.Result apply(TaskOperation operation) {
+        return applyOperations(List.of(operation)).get(0);
+    }
+
+    /**
+     * Change any of the title, description and completion status of a task in one step.
+     * The fields are validated once, before the lock is taken, and the store, the status
+     * bitsets and counters, the search index, the log and the event ring are all updated in
+     * the same critical section, so readers never see half of an edit.
+     * @param id Task ID
+     * @param title New title, or null to keep the current one
+     * @param description New description, or null to keep the current one
+     * @param completed New completion status, or null to keep the current one
+     * @param expectedVersion Version the task must have, or TaskOperation.ANY_VERSION
+     * @return UPDATED with the task as stored afterwards, CONFLICT with the current task,
+     *         NOT_FOUND, or INVALID with the reason
+     */
+    public TaskOperation.Result patchTask(int id, String title, String description, Boolean completed, long expectedVersion) {
+        return apply(TaskOperation.patch(id, title, description, completed).ifVersion(expectedVersion));
+    }
+
+    /**
+     * Apply a batch of creates, updates and deletes in order.
+     * Every stripe the batch touches is locked once for the whole batch and all of its changes
+     * are logged with one append, so the batch costs one wait for durability however large it is.
+     * Each operation succeeds or fails on its own; later operations see the effect of earlier ones.
+     * @param operations Operations to apply
+     * @return One result per operation, in the same order
+     */
+    public List<TaskOperation.Result> applyOperations(List<TaskOperation> operations) {
+        int count = operations.size();
+        TaskOperation.Result[] results = new TaskOperation.Result[count];
+
+        // Malformed operations fail before taking ids or locks
+        int creates = 0;
+        for (int i = 0; i < count; i++) {
+            TaskOperation operation = operations.get(i);
+            String error = operation.validate();
+            if (error != null) {
+                results[i] = new TaskOperation.Result(operation, TaskOperation.Result.Status.INVALID, null, error);
+            } else if (operation.getType() == TaskOperation.Type.CREATE) {
+                creates++;
+            }
+        }
+        int nextId = creates == 0 ? 0 : idCounter.getAndAdd(creates);
+        int[] ids = new int[count];
+        boolean[] stripes = new boolean[LOCK_STRIPES];
+        for (int i = 0; i < count; i++) {
+            if (results[i] == null) {
+                TaskOperation operation = operations.get(i);
+                ids[i] = operation.getType() == TaskOperation.Type.CREATE ? nextId++ : operation.getId();
+                stripes[ids[i] & (LOCK_STRIPES - 1)] = true;
+            }
+        }
+
+        long waitStart = System.nanoTime();
+        for (int stripe = 0; stripe < LOCK_STRIPES; stripe++) {
+            if (stripes[stripe]) {
+                locks[stripe].lock();
+            }
+        }
+        long acquired = System.nanoTime();
+        lockWait.record(acquired - waitStart);
+        try {
+            // Work out every change against the store and the earlier changes of the batch, then log them at once
+            Map<Integer, Task> changed = new HashMap<>();
+            List<TaskLog.Change> changes = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                if (results[i] == null) {
+                    results[i] = plan(operations.get(i), ids[i], changed, changes);
+                }
+            }
+            logAll(changes);
+            for (TaskLog.Change change : changes) {
+                if (change.isDelete()) {
+                    events.publish(TaskEvent.Type.DELETED, removeStored(change.getId()));
+                } else if (tasks.get(change.getId()) == null) {
+                    addStored(change.getTask());
+                    events.publish(TaskEvent.Type.ADDED, change.getTask());
+                } else {
+                    replaceStored(change.getTask());
+                    events.publish(TaskEvent.Type.UPDATED, change.getTask());
+                }
+            }
+            version.addAndGet(changes.size());
+        } finally {
+            for (int stripe = LOCK_STRIPES - 1; stripe >= 0; stripe--) {
+                if (stripes[stripe]) {
+                    locks[stripe].unlock();
+                }
+            }
+            lockHold.record(System.nanoTime() - acquired);
+        }
+        return List.of(results);
+    }
+
+    /**
+     * Decide the outcome of one operation of a batch and record the change it makes.
+     * Caller holds the stripe lock of the id.
+     * @param changed Tasks changed earlier in the batch by id, null for deleted ones
+     */
+    private TaskOperation.Result plan(TaskOperation operation, int id, Map<Integer, Task> changed, List<TaskLog.Change> changes) {
+        if (operation.getType() == TaskOperation.Type.CREATE) {
+            Task task = new Task(id, operation.getTitle().trim(), operation.getDescription().trim());
+            changed.put(id, task);
+            changes.add(TaskLog.Change.put(task));
+            return new TaskOperation.Result(operation, TaskOperation.Result.Status.CREATED, task, null);
+        }
+
+        Task current = changed.containsKey(id) ? changed.get(id) : tasks.get(id);
+        if (current == null) {
+            return new TaskOperation.Result(operation, TaskOperation.Result.Status.NOT_FOUND, null, "Task not found");
+        }
+        if (operation.getExpectedVersion() != TaskOperation.ANY_VERSION && operation.getExpectedVersion() != current.getVersion()) {
+            return new TaskOperation.Result(operation, TaskOperation.Result.Status.CONFLICT, current,
+                    "Task is at version " + current.getVersion() + ", not " + operation.getExpectedVersion());
         }
+        if (operation.getType() == TaskOperation.Type.DELETE) {
+            changed.put(id, null);
+            changes.add(TaskLog.Change.delete(id));
+            return new TaskOperation.Result(operation, TaskOperation.Result.Status.DELETED, current, null);
+        }
+        String title = operation.getTitle() == null ? current.getTitle() : operation.getTitle().trim();
+        String description = operation.getDescription() == null ? current.getDescription() : operation.getDescription().trim();
+        boolean completed = operation.getCompleted() == null ? current.isCompleted() : operation.getCompleted();
+        // Only a real change gets a new version, so repeating an update is a no-op
+        if (!title.equals(current.getTitle()) || !description.equals(current.getDescription()) || completed != current.isCompleted()) {
+            current = new Task(id, title, description, completed, current.getVersion() + 1);
+            changed.put(id, current);
+            changes.add(TaskLog.Change.put(current));
+        }
+        return new TaskOperation.Result(operation, TaskOperation.Result.Status.UPDATED, current, null);
     }
 
     /**
@@ -64,15 +322,7 @@ public class TaskManager {
             throw new IllegalArgumentException("Task ID must be positive");
         }
 
-        lock.readLock().lock();
-        try {
-            return tasks.stream()
-                    .filter(task -> task.getId() == id)
-                    .findFirst()
-                    .orElse(null);
-        } finally {
-            lock.readLock().unlock();
-        }
+        return tasks.get(id);
     }
 
     /**
@@ -80,12 +330,140 @@ public class TaskManager {
      * @return Unmodifiable list of all tasks
      */
     public List<Task> getAllTasks() {
-        lock.readLock().lock();
-        try {
-            return Collections.unmodifiableList(new ArrayList<>(tasks));
-        } finally {
-            lock.readLock().unlock();
+        return snapshot().getTasks();
+    }
+
+    /**
+     * Get a page of tasks in id order, starting after a cursor
+     * @param afterId Only tasks with a larger id are returned; 0 starts at the beginning
+     * @param limit Maximum number of tasks to return
+     * @param completed Only tasks with this status are returned, or all tasks if null
+     * @return Unmodifiable list of at most limit tasks; the last id is the cursor for the next page
+     * @throws IllegalArgumentException if afterId is negative or limit is not positive
+     */
+    public List<Task> getTasks(int afterId, int limit, Boolean completed) {
+        if (afterId < 0) {
+            throw new IllegalArgumentException("Cursor must not be negative");
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+
+        List<Task> page = new ArrayList<>(Math.min(limit, 128));
+        int id = afterId;
+        while (page.size() < limit && id < Integer.MAX_VALUE) {
+            id = nextIndexedId(id + 1, completed);
+            if (id < 0) {
+                break;
+            }
+            // The index may briefly lag a concurrent write, so the task itself decides
+            Task task = tasks.get(id);
+            if (task != null && (completed == null || task.isCompleted() == completed)) {
+                page.add(task);
+            }
+        }
+        return Collections.unmodifiableList(page);
+    }
+
+    /**
+     * Iterate over every task in id order without copying the whole collection.
+     * Tasks are fetched a page at a time, so writes racing with the iteration may or may not be seen.
+     * @return Iterable whose iterators walk the tasks stored at the time they advance
+     */
+    public Iterable<Task> iterateTasks() {
+        return () -> new Iterator<>() {
+            private List<Task> page = Collections.emptyList();
+            private int index;
+            private int lastId;
+            private boolean exhausted;
+
+            @Override
+            public boolean hasNext() {
+                if (index == page.size() && !exhausted) {
+                    page = getTasks(lastId, ITERATION_PAGE_SIZE, null);
+                    index = 0;
+                    exhausted = page.size() < ITERATION_PAGE_SIZE;
+                    if (!page.isEmpty()) {
+                        lastId = page.get(page.size() - 1).getId();
+                    }
+                }
+                return index < page.size();
+            }
+
+            @Override
+            public Task next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.get(index++);
+            }
+        };
+    }
+
+    /**
+     * Search task titles and descriptions
+     * @param query Free text; every term must match a word or the start of a word
+     * @param limit Maximum number of tasks to return
+     * @param completed Only tasks with this status are returned, or all matches if null
+     * @return Unmodifiable list of matching tasks, best match first
+     * @throws IllegalArgumentException if limit is not positive
+     */
+    public List<Task> searchTasks(String query, int limit, Boolean completed) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+
+        // Status filtering happens after ranking, so filtered searches rank every match
+        int[] ids = searchIndex.search(query, completed == null ? limit : Integer.MAX_VALUE);
+        List<Task> results = new ArrayList<>(Math.min(ids.length, limit));
+        for (int i = 0; i < ids.length && results.size() < limit; i++) {
+            Task task = tasks.get(ids[i]);
+            if (task != null && (completed == null || task.isCompleted() == completed)) {
+                results.add(task);
+            }
+        }
+        return Collections.unmodifiableList(results);
+    }
+
+    private int nextIndexedId(int fromId, Boolean completed) {
+        if (completed != null) {
+            return (completed ? completedIds : pendingIds).nextSetBit(fromId);
+        }
+        int nextPending = pendingIds.nextSetBit(fromId);
+        int nextCompleted = completedIds.nextSetBit(fromId);
+        if (nextPending < 0 || nextCompleted < 0) {
+            return Math.max(nextPending, nextCompleted);
+        }
+        return Math.min(nextPending, nextCompleted);
+    }
+
+    /**
+     * Get an immutable snapshot of all tasks.
+     * The same snapshot is returned without locking or copying until the next mutation.
+     * @return Snapshot reflecting at least every mutation completed before this call
+     */
+    public TaskSnapshot snapshot() {
+        // Read the version before the tasks so the snapshot never claims a newer version
+        long current = version.get();
+        TaskSnapshot cached = snapshot;
+        if (cached != null && cached.getVersion() == current) {
+            return cached;
         }
+        TaskSnapshot fresh = new TaskSnapshot(current, tasks.toList());
+        synchronized (this) {
+            if (snapshot == null || snapshot.getVersion() < current) {
+                snapshot = fresh;
+            }
+        }
+        return fresh;
+    }
+
+    /**
+     * Get the version of the task collection
+     * @return A counter that grows with every add, delete and status change
+     */
+    public long getVersion() {
+        return version.get();
     }
 
     /**
@@ -99,15 +477,19 @@ public class TaskManager {
             throw new IllegalArgumentException("Task ID must be positive");
         }
 
-        lock.writeLock().lock();
+        Lock lock = lockFor(id);
+        long acquired = lock(lock);
         try {
-            Optional<Task> taskToRemove = tasks.stream()
-                    .filter(task -> task.getId() == id)
-                    .findFirst();
-            
-            return taskToRemove.isPresent() && tasks.remove(taskToRemove.get());
+            if (tasks.get(id) == null) {
+                return false;
+            }
+            logDelete(id);
+            Task removed = removeStored(id);
+            version.incrementAndGet();
+            events.publish(TaskEvent.Type.DELETED, removed);
+            return true;
         } finally {
-            lock.writeLock().unlock();
+            unlock(lock, acquired);
         }
     }
 
@@ -123,16 +505,57 @@ public class TaskManager {
             throw new IllegalArgumentException("Task ID must be positive");
         }
 
-        lock.writeLock().lock();
+        Lock lock = lockFor(id);
+        long acquired = lock(lock);
         try {
-            Task task = getTask(id);
-            if (task != null) {
-                task.setCompleted(completed);
-                return true;
+            Task task = tasks.get(id);
+            if (task == null) {
+                return false;
+            }
+            if (task.isCompleted() != completed) {
+                Task updated = new Task(id, task.getTitle(), task.getDescription(), completed, task.getVersion() + 1);
+                logPut(updated);
+                replaceStored(updated);
+                version.incrementAndGet();
+                events.publish(TaskEvent.Type.UPDATED, updated);
             }
-            return false;
+            return true;
         } finally {
-            lock.writeLock().unlock();
+            unlock(lock, acquired);
+        }
+    }
+
+    /**
+     * Snapshot every task into the log and drop the logged changes the snapshot replaces.
+     * Safe to call from a background thread while requests are served; does nothing if
+     * there is no log or nothing changed since the last checkpoint.
+     * @return The number of tasks in the snapshot, or -1 if none was written
+     * @throws UncheckedIOException if the snapshot cannot be written
+     */
+    public int checkpoint() {
+        if (log == null) {
+            return -1;
+        }
+        synchronized (checkpointLock) {
+            long current = version.get();
+            if (current == checkpointVersion) {
+                return -1;
+            }
+            try {
+                long checkpoint = log.startCheckpoint();
+                // Changes are logged and applied under one stripe lock, so once every stripe has been
+                // free, every change logged before the checkpoint is visible in the store
+                for (Lock lock : locks) {
+                    lock.lock();
+                    lock.unlock();
+                }
+                // The snapshot is streamed from the store rather than copied into a list first
+                int written = log.completeCheckpoint(checkpoint, idCounter.get(), tasks);
+                checkpointVersion = current;
+                return written;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to checkpoint the task log", e);
+            }
         }
     }
 
@@ -141,11 +564,170 @@ public class TaskManager {
      * @return The number of tasks
      */
     public int getTaskCount() {
-        lock.readLock().lock();
+        return tasks.size();
+    }
+
+    /**
+     * Get the ring buffer every add, status change and delete is published to
+     * @return The event ring of this manager
+     */
+    public TaskEventRing getEvents() {
+        return events;
+    }
+
+    /**
+     * Get how long writers waited for their stripe locks; a batch counts once for all of its stripes
+     * @return Histogram of lock waits in nanoseconds
+     */
+    public LatencyHistogram getLockWait() {
+        return lockWait;
+    }
+
+    /**
+     * Get how long writers held their stripe locks, including logging the change
+     * @return Histogram of lock hold times in nanoseconds
+     */
+    public LatencyHistogram getLockHold() {
+        return lockHold;
+    }
+
+    /**
+     * Get the number of tasks by completion status without scanning
+     * @return Current pending and completed counts
+     */
+    public TaskStats getStats() {
+        return new TaskStats(pendingCount.get(), completedCount.get());
+    }
+
+    /**
+     * Store a new task and index it. Caller holds the stripe lock of the task id.
+     */
+    private void addStored(Task task) {
+        tasks.put(task);
+        (task.isCompleted() ? completedIds : pendingIds).set(task.getId());
+        (task.isCompleted() ? completedCount : pendingCount).incrementAndGet();
+        searchIndex.add(task);
+    }
+
+    /**
+     * Replace a stored task with a new version and move it between the status indexes.
+     * The search index is only updated when the title or description changed, so status
+     * changes leave it alone. Caller holds the stripe lock of the task id.
+     */
+    private void replaceStored(Task task) {
+        Task previous = tasks.replace(task);
+        if (previous != null && (!previous.getTitle().equals(task.getTitle()) || !previous.getDescription().equals(task.getDescription()))) {
+            searchIndex.replace(previous, task);
+        }
+        boolean completed = task.isCompleted();
+        if (previous != null && previous.isCompleted() != completed) {
+            int id = task.getId();
+            // Add to the new set before leaving the old one so unfiltered scans never miss the task
+            (completed ? completedIds : pendingIds).set(id);
+            (completed ? pendingIds : completedIds).clear(id);
+            (completed ? completedCount : pendingCount).incrementAndGet();
+            (completed ? pendingCount : completedCount).decrementAndGet();
+        }
+    }
+
+    /**
+     * Remove a stored task from the store and every index. Caller holds the stripe lock of the id.
+     * @return The removed task, or null if there was none
+     */
+    private Task removeStored(int id) {
+        Task removed = tasks.remove(id);
+        if (removed != null) {
+            (removed.isCompleted() ? completedIds : pendingIds).clear(id);
+            (removed.isCompleted() ? completedCount : pendingCount).decrementAndGet();
+            searchIndex.remove(removed);
+        }
+        return removed;
+    }
+
+    /**
+     * Rebuild the state from a log. Runs in the constructor, before the manager is shared.
+     * Replayed changes overwrite whole tasks, so replaying changes a snapshot already contains is harmless.
+     * @return The number of changes replayed
+     */
+    private long replay(TaskLog log) {
+        int[] highestId = {0};
         try {
-            return tasks.size();
-        } finally {
-            lock.readLock().unlock();
+            long replayed = log.replay(new TaskLog.Replayer() {
+                @Override
+                public void put(Task task) {
+                    removeStored(task.getId());
+                    addStored(task);
+                    highestId[0] = Math.max(highestId[0], task.getId());
+                }
+
+                @Override
+                public void delete(int id) {
+                    removeStored(id);
+                    highestId[0] = Math.max(highestId[0], id);
+                }
+
+                @Override
+                public void reserveIds(int nextId) {
+                    highestId[0] = Math.max(highestId[0], nextId - 1);
+                }
+            });
+            // Deleted ids are never handed out again
+            idCounter.set(highestId[0] + 1);
+            version.addAndGet(replayed);
+            return replayed;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to replay the task log", e);
+        }
+    }
+
+    private void logPut(Task task) {
+        if (log != null) {
+            try {
+                log.appendPut(task);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to log task " + task.getId(), e);
+            }
+        }
+    }
+
+    private void logAll(List<TaskLog.Change> changes) {
+        if (log != null && !changes.isEmpty()) {
+            try {
+                log.appendAll(changes);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to log a batch of " + changes.size() + " changes", e);
+            }
+        }
+    }
+
+    private void logDelete(int id) {
+        if (log != null) {
+            try {
+                log.appendDelete(id);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to log deletion of task " + id, e);
+            }
         }
     }
+
+    private Lock lockFor(int id) {
+        return locks[id & (LOCK_STRIPES - 1)];
+    }
+
+    /**
+     * Take a stripe lock and record the wait
+     * @return System.nanoTime() once the lock is held, to pass to unlock
+     */
+    private long lock(Lock lock) {
+        long start = System.nanoTime();
+        lock.lock();
+        long acquired = System.nanoTime();
+        lockWait.record(acquired - start);
+        return acquired;
+    }
+
+    private void unlock(Lock lock, long acquired) {
+        lock.unlock();
+        lockHold.record(System.nanoTime() - acquired);
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,218 @@
+package com.simpletomcat.todo;
+
+/**
+ * One create, update or delete applied by TaskManager.apply or as part of a batch.
+ * An update changes only the fields it names and leaves the others as stored, like a JSON
+ * merge patch.
+ * An update or delete may name the version it expects the task to have; it is then
+ * applied only if the stored task still has that version, and fails with CONFLICT otherwise.
+ */
+public final class TaskOperation {
+
+    /**
+     * Expected version of an operation that applies whatever the version of the task
+     */
+    public static final long ANY_VERSION = 0;
+
+    /**
+     * What an operation does
+     */
+    public enum Type {
+        CREATE,
+        UPDATE,
+        DELETE
+    }
+
+    private final Type type;
+    private final int id;
+    private final String title;
+    private final String description;
+    private final Boolean completed;
+    private final long expectedVersion;
+
+    private TaskOperation(Type type, int id, String title, String description, Boolean completed, long expectedVersion) {
+        this.type = type;
+        this.id = id;
+        this.title = title;
+        this.description = description;
+        this.completed = completed;
+        this.expectedVersion = expectedVersion;
+    }
+
+    /**
+     * @param title Task title
+     * @param description Task description
+     * @return An operation adding a new task
+     */
+    public static TaskOperation create(String title, String description) {
+        return new TaskOperation(Type.CREATE, 0, title, description, Boolean.FALSE, ANY_VERSION);
+    }
+
+    /**
+     * @param id Task ID
+     * @param completed New completion status
+     * @return An operation changing the completion status of a task
+     */
+    public static TaskOperation update(int id, boolean completed) {
+        return new TaskOperation(Type.UPDATE, id, null, null, completed, ANY_VERSION);
+    }
+
+    /**
+     * @param id Task ID
+     * @param title New title, or null to keep the current one
+     * @param description New description, or null to keep the current one
+     * @param completed New completion status, or null to keep the current one
+     * @return An operation changing the given fields of a task and no others
+     */
+    public static TaskOperation patch(int id, String title, String description, Boolean completed) {
+        return new TaskOperation(Type.UPDATE, id, title, description, completed, ANY_VERSION);
+    }
+
+    /**
+     * @param id Task ID
+     * @return An operation deleting a task
+     */
+    public static TaskOperation delete(int id) {
+        return new TaskOperation(Type.DELETE, id, null, null, null, ANY_VERSION);
+    }
+
+    /**
+     * Make the operation conditional on the version of the task, like a compare-and-set
+     * @param version Version the task must have when the operation is applied, or ANY_VERSION
+     * @return A copy of this operation that only applies to that version
+     */
+    public TaskOperation ifVersion(long version) {
+        return new TaskOperation(type, id, title, description, completed, version);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return The task the operation targets, or 0 for a create
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return The title of a new task, or the new title of an update, or null to keep it
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * @return The description of a new task, or the new description of an update, or null to keep it
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return The new completion status of an update, or null to keep it
+     */
+    public Boolean getCompleted() {
+        return completed;
+    }
+
+    /**
+     * @return The version the task must have for the operation to apply, or ANY_VERSION
+     */
+    public long getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    /**
+     * Check the parts of the operation that do not depend on stored tasks
+     * @return The reason the operation can never succeed, or null if it is well formed
+     */
+    String validate() {
+        if (expectedVersion < 0) {
+            return "Task version must not be negative";
+        }
+        if (type == Type.CREATE) {
+            if (expectedVersion != ANY_VERSION) {
+                return "A new task has no version to match";
+            }
+            if (title == null || title.trim().isEmpty()) {
+                return "Title cannot be null or empty";
+            }
+            if (description == null || description.trim().isEmpty()) {
+                return "Description cannot be null or empty";
+            }
+            return null;
+        }
+        if (id <= 0) {
+            return "Task ID must be positive";
+        }
+        if (title != null && title.trim().isEmpty()) {
+            return "Title cannot be empty";
+        }
+        if (description != null && description.trim().isEmpty()) {
+            return "Description cannot be empty";
+        }
+        return null;
+    }
+
+    /**
+     * Outcome of one operation of a batch
+     */
+    public static final class Result {
+
+        /**
+         * Whether and how an operation was applied
+         */
+        public enum Status {
+            CREATED,
+            UPDATED,
+            DELETED,
+            NOT_FOUND,
+            CONFLICT,
+            INVALID
+        }
+
+        private final TaskOperation operation;
+        private final Status status;
+        private final Task task;
+        private final String error;
+
+        Result(TaskOperation operation, Status status, Task task, String error) {
+            this.operation = operation;
+            this.status = status;
+            this.task = task;
+            this.error = error;
+        }
+
+        public TaskOperation getOperation() {
+            return operation;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * @return Whether the operation was applied
+         */
+        public boolean isSuccess() {
+            return error == null;
+        }
+
+        /**
+         * @return The task as stored after a create or update, as it was before a delete, as it is
+         *         stored now after a CONFLICT, or null on any other failure
+         */
+        public Task getTask() {
+            return task;
+        }
+
+        /**
+         * @return Why the operation failed, or null if it was applied
+         */
+        public String getError() {
+            return error;
+        }
+    }
+}
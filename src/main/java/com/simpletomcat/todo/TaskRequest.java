@@ -0,0 +1,39 @@
+package com.simpletomcat.todo;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * Body of a create or update request.
+ * Fields are left null when the client omits them; unknown fields such as id are ignored
+ * so clients can send back a task they received.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+final class TaskRequest {
+    private String title;
+    private String description;
+    private Boolean completed;
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public Boolean getCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(Boolean completed) {
+        this.completed = completed;
+    }
+}
@@ -0,0 +1,33 @@
+package com.simpletomcat.todo;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable point-in-time view of all tasks, tagged with the TaskManager version it reflects
+ */
+public final class TaskSnapshot {
+    private final long version;
+    private final List<Task> tasks;
+
+    TaskSnapshot(long version, List<Task> tasks) {
+        this.version = version;
+        this.tasks = Collections.unmodifiableList(tasks);
+    }
+
+    /**
+     * Get the TaskManager version this snapshot was taken at
+     * @return The version, which grows with every mutation
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the tasks in insertion order
+     * @return Unmodifiable list of tasks
+     */
+    public List<Task> getTasks() {
+        return tasks;
+    }
+}
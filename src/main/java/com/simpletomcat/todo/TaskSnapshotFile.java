@@ -0,0 +1,208 @@
+package com.simpletomcat.todo;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary snapshot of every task, written by FileTaskLog at a checkpoint.
+ * Layout: magic, checkpoint and next id, then per task its id, version, status and
+ * length-prefixed UTF-8 title and description, then the task count and a CRC32C of
+ * everything before it. The count trails the tasks so they can be written while iterating
+ * the store. Snapshots are written to a temporary file and renamed into place, so a
+ * snapshot file is either complete or absent; loading maps the file window by window
+ * instead of reading it through a stream, so snapshots may exceed 2 GB.
+ */
+final class TaskSnapshotFile {
+    private static final int MAGIC = 0x54534E32;
+    // Earlier layout with the task count in the header and only the checksum after the tasks
+    private static final int HEADER_COUNT_MAGIC = 0x54534E31;
+    private static final int HEADER_BYTES = 4 + 8 + 4;
+    private static final int TRAILER_BYTES = 4 + 4;
+    private static final int TASK_HEADER_BYTES = 4 + 8 + 1 + 4;
+    private static final int BUFFER_BYTES = 1024 * 1024;
+    private static final long WINDOW_BYTES = 64L * 1024 * 1024;
+
+    private TaskSnapshotFile() {
+        // Utility class should not be instantiated
+    }
+
+    /**
+     * Atomically write a snapshot
+     * @param file Final path of the snapshot
+     * @param checkpoint Last log segment the snapshot covers
+     * @param nextId Lowest task id not yet handed out
+     * @param tasks Every stored task, iterated once
+     * @return The number of tasks written
+     * @throws IOException if the snapshot cannot be written
+     */
+    static int write(Path file, long checkpoint, int nextId, Iterable<Task> tasks) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32C checksum = new CRC32C();
+        int count = 0;
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+            buffer.putInt(MAGIC).putLong(checkpoint).putInt(nextId);
+            for (Task task : tasks) {
+                byte[] title = task.getTitle().getBytes(StandardCharsets.UTF_8);
+                byte[] description = task.getDescription().getBytes(StandardCharsets.UTF_8);
+                int length = TASK_HEADER_BYTES + title.length + 4 + description.length;
+                if (buffer.remaining() < length) {
+                    drain(channel, buffer, checksum);
+                    if (buffer.remaining() < length) {
+                        buffer = ByteBuffer.allocate(length);
+                    }
+                }
+                buffer.putInt(task.getId())
+                        .putLong(task.getVersion())
+                        .put((byte) (task.isCompleted() ? 1 : 0))
+                        .putInt(title.length).put(title)
+                        .putInt(description.length).put(description);
+                count++;
+            }
+            if (buffer.remaining() < 4) {
+                drain(channel, buffer, checksum);
+            }
+            buffer.putInt(count);
+            drain(channel, buffer, checksum);
+            buffer.putInt((int) checksum.getValue()).flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return count;
+    }
+
+    /**
+     * Map a snapshot and feed its tasks to a replayer
+     * @param file Snapshot to load
+     * @param replayer Receiver of the next id and every task
+     * @return The number of tasks loaded
+     * @throws IOException if the snapshot cannot be read or fails its checksum
+     */
+    static long load(Path file, TaskLog.Replayer replayer) throws IOException {
+        return load(file, replayer, WINDOW_BYTES);
+    }
+
+    /**
+     * Map a snapshot in windows of a given size and feed its tasks to a replayer
+     * @param windowBytes Bytes mapped at a time; a record larger than this gets a window of its own
+     */
+    static long load(Path file, TaskLog.Replayer replayer, long windowBytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + TRAILER_BYTES) {
+                throw new IOException("Invalid snapshot size " + size + ": " + file);
+            }
+            // Verify the whole file before replaying anything from it
+            long checksummed = size - 4;
+            CRC32C checksum = new CRC32C();
+            for (long position = 0; position < checksummed; position += windowBytes) {
+                checksum.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(windowBytes, checksummed - position)));
+            }
+            ByteBuffer trailer = channel.map(FileChannel.MapMode.READ_ONLY, size - TRAILER_BYTES, TRAILER_BYTES);
+            int count = trailer.getInt();
+            if ((int) checksum.getValue() != trailer.getInt()) {
+                throw new IOException("Snapshot checksum mismatch: " + file);
+            }
+
+            int magic = channel.map(FileChannel.MapMode.READ_ONLY, 0, 4).getInt();
+            boolean headerCount = magic == HEADER_COUNT_MAGIC;
+            if (magic != MAGIC && !headerCount) {
+                throw new IOException("Not a task snapshot: " + file);
+            }
+            Window body = new Window(channel, headerCount ? checksummed : size - TRAILER_BYTES, windowBytes);
+            ByteBuffer header = body.require(headerCount ? HEADER_BYTES + 4 : HEADER_BYTES);
+            header.getInt();
+            header.getLong();
+            replayer.reserveIds(header.getInt());
+            if (headerCount) {
+                count = header.getInt();
+            }
+            byte[] scratch = new byte[256];
+            for (int i = 0; i < count; i++) {
+                ByteBuffer record = body.require(TASK_HEADER_BYTES);
+                int id = record.getInt();
+                long version = record.getLong();
+                boolean completed = record.get() != 0;
+                int titleLength = record.getInt();
+                ByteBuffer titleBytes = body.require(titleLength);
+                scratch = ensureCapacity(scratch, titleLength);
+                String title = readString(titleBytes, scratch, titleLength);
+                int descriptionLength = body.require(4).getInt();
+                ByteBuffer descriptionBytes = body.require(descriptionLength);
+                scratch = ensureCapacity(scratch, descriptionLength);
+                String description = readString(descriptionBytes, scratch, descriptionLength);
+                replayer.put(new Task(id, title, description, completed, version));
+            }
+            return count;
+        } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+            throw new IOException("Malformed snapshot: " + file, e);
+        }
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer, CRC32C checksum) throws IOException {
+        buffer.flip();
+        checksum.update(buffer.array(), 0, buffer.limit());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static byte[] ensureCapacity(byte[] scratch, int length) {
+        return length <= scratch.length ? scratch : new byte[Math.max(length, scratch.length * 2)];
+    }
+
+    private static String readString(ByteBuffer body, byte[] scratch, int length) {
+        body.get(scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Mapped view of part of a snapshot that slides forward as records are read,
+     * so no single mapping has to cover the whole file
+     */
+    private static final class Window {
+        private final FileChannel channel;
+        private final long end;
+        private final long windowBytes;
+        private long start;
+        private ByteBuffer buffer;
+
+        private Window(FileChannel channel, long end, long windowBytes) {
+            this.channel = channel;
+            this.end = end;
+            this.windowBytes = windowBytes;
+            this.buffer = ByteBuffer.allocate(0);
+        }
+
+        /**
+         * Make the next bytes of the file readable from the returned buffer
+         * @throws BufferUnderflowException if fewer bytes are left before the end
+         */
+        private ByteBuffer require(int bytes) throws IOException {
+            if (bytes < 0) {
+                throw new IllegalArgumentException("Negative length " + bytes);
+            }
+            if (buffer.remaining() < bytes) {
+                long position = start + buffer.position();
+                if (end - position < bytes) {
+                    throw new BufferUnderflowException();
+                }
+                start = position;
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(Math.max(windowBytes, bytes), end - position));
+            }
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.simpletomcat.todo;
+
+/**
+ * Counts of tasks by completion status
+ */
+public final class TaskStats {
+    private final int pending;
+    private final int completed;
+
+    TaskStats(int pending, int completed) {
+        this.pending = pending;
+        this.completed = completed;
+    }
+
+    public int getTotal() {
+        return pending + completed;
+    }
+
+    public int getPending() {
+        return pending;
+    }
+
+    public int getCompleted() {
+        return completed;
+    }
+}
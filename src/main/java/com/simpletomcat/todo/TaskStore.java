@@ -0,0 +1,107 @@
+package com.simpletomcat.todo;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Id-indexed storage for tasks, used by TaskManager.
+ * Task ids are handed out sequentially, so implementations keep a slot per id and
+ * lookups, replacements and removals are O(1). Reads must never lock and must always
+ * see a complete task; callers serialize writes to the same id.
+ * Iterating walks the slots in id order without copying the tasks into a list first.
+ */
+interface TaskStore extends Iterable<Task> {
+
+    /**
+     * Store a task in the slot for its id
+     * @param task Task to store
+     * @throws IllegalArgumentException if the slot for the task id is already taken
+     */
+    void put(Task task);
+
+    /**
+     * Get the task stored for an id
+     * @param id Task ID
+     * @return The task if present, otherwise null
+     */
+    Task get(int id);
+
+    /**
+     * Replace the task stored for the id of the given task
+     * @param task New version of a stored task
+     * @return The replaced task, or null if the id is not stored (nothing is written then)
+     */
+    Task replace(Task task);
+
+    /**
+     * Remove the task stored for an id
+     * @param id Task ID
+     * @return The removed task, or null if there was none
+     */
+    Task remove(int id);
+
+    /**
+     * Copy all stored tasks in id order.
+     * The copy is weakly consistent: writes racing with it may or may not be included.
+     * @return A new list with every stored task
+     */
+    List<Task> toList();
+
+    /**
+     * Get the number of stored tasks
+     * @return The number of tasks
+     */
+    int size();
+
+    /**
+     * Get the highest id ever stored
+     * @return The highest id, or 0 if nothing was stored
+     */
+    int getHighestId();
+
+    /**
+     * Iterate over stored tasks in id order.
+     * Like toList, the iteration is weakly consistent with writes racing with it.
+     * @return An iterator decoding one task at a time
+     */
+    @Override
+    default Iterator<Task> iterator() {
+        int last = getHighestId();
+        return new Iterator<>() {
+            private int id;
+            private Task next = advance();
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Task next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Task task = next;
+                next = advance();
+                return task;
+            }
+
+            private Task advance() {
+                while (id < last) {
+                    Task task = get(++id);
+                    if (task != null) {
+                        return task;
+                    }
+                }
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Release what the store holds outside the heap. The store must not be used afterwards.
+     */
+    default void close() {
+    }
+}
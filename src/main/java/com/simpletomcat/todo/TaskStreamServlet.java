@@ -0,0 +1,337 @@
+package com.simpletomcat.todo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Servlet streaming task changes to clients as Server-Sent Events.
+ * Each GET becomes an async request with a non-blocking WriteListener, so a subscriber holds
+ * a connection but no thread. One dispatcher thread wakes whenever the TaskEventRing of the
+ * task manager gets an event and writes whatever each subscriber has not seen yet, as far as
+ * its connection accepts without blocking; the container resumes a subscriber whose socket
+ * was full once it drains. Every subscriber reads the ring through its own cursor, and one
+ * that falls a whole ring behind skips to the oldest event still held and is sent a reset
+ * event, telling it to fetch the full listing again. Event ids are the epoch of the ring and
+ * the sequence, so clients reconnecting with Last-Event-ID resume after that event, or get a
+ * reset if it has left the ring or was sent before the server restarted. Each event is encoded
+ * once and the same bytes are written to every subscriber.
+ */
+public class TaskStreamServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+    private static final Logger logger = LoggerFactory.getLogger(TaskStreamServlet.class);
+    private static final String HEARTBEAT_MILLIS_PARAM = "heartbeatMillis";
+    static final long DEFAULT_HEARTBEAT_MILLIS = 15_000;
+    // Events written to one subscriber between checks that its connection is still ready
+    private static final int BATCH_SIZE = 256;
+    private static final byte[] PREAMBLE = "retry: 3000\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] HEARTBEAT = ": keepalive\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final transient TaskEventRing events;
+    private final transient ObjectWriter taskWriter;
+    private final transient Set<Subscriber> subscribers;
+    private final transient Runnable wakeUp;
+    private long heartbeatNanos;
+    private transient Thread dispatcher;
+    private volatile boolean running;
+
+    /**
+     * @param events Ring the task manager publishes its changes to
+     */
+    public TaskStreamServlet(TaskEventRing events) {
+        this.events = events;
+        this.taskWriter = new ObjectMapper().writerFor(Task.class);
+        this.subscribers = ConcurrentHashMap.newKeySet();
+        this.wakeUp = () -> LockSupport.unpark(dispatcher);
+        this.heartbeatNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_HEARTBEAT_MILLIS);
+    }
+
+    @Override
+    public void init() throws ServletException {
+        String heartbeat = getInitParameter(HEARTBEAT_MILLIS_PARAM);
+        if (heartbeat != null) {
+            heartbeatNanos = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(heartbeat.trim()));
+        }
+        running = true;
+        dispatcher = new Thread(this::dispatch, "task-stream-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+        events.addListener(wakeUp);
+    }
+
+    @Override
+    public void destroy() {
+        events.removeListener(wakeUp);
+        running = false;
+        LockSupport.unpark(dispatcher);
+        try {
+            dispatcher.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Subscriber subscriber : subscribers) {
+            subscriber.close();
+        }
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        // Start from the next event, or after the one a reconnecting client saw last
+        long cursor = events.getLastSequence() + 1;
+        boolean reset = false;
+        String lastEventId = req.getHeader("Last-Event-ID");
+        if (lastEventId != null) {
+            long resumeFrom = resumeSequence(lastEventId.trim());
+            if (resumeFrom >= events.getOldestSequence() && resumeFrom <= cursor) {
+                cursor = resumeFrom;
+            } else {
+                // Gone from the ring, or from before a restart: the client has to reload
+                reset = true;
+            }
+        }
+
+        resp.setStatus(HttpServletResponse.SC_OK);
+        resp.setContentType("text/event-stream");
+        resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        resp.setHeader("Cache-Control", "no-cache");
+        AsyncContext async = req.startAsync();
+        async.setTimeout(0);
+        Subscriber subscriber = new Subscriber(async, resp.getOutputStream(), cursor, reset);
+        async.addListener(subscriber);
+        subscribers.add(subscriber);
+        // The container calls onWritePossible as soon as the response can be written
+        resp.getOutputStream().setWriteListener(subscriber);
+    }
+
+    /**
+     * @param lastEventId Id of the last event a client received, as epoch-sequence
+     * @return The sequence after it, or -1 if the id is malformed or from another epoch
+     */
+    private long resumeSequence(String lastEventId) {
+        int dash = lastEventId.lastIndexOf('-');
+        if (dash < 0 || !lastEventId.substring(0, dash).equals(events.getEpoch())) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(lastEventId.substring(dash + 1)) + 1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return The number of connected subscribers
+     */
+    int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Body of the dispatcher thread: after every wake-up, push new events to every subscriber
+     */
+    private void dispatch() {
+        long nextHeartbeat = System.nanoTime() + heartbeatNanos;
+        while (running) {
+            LockSupport.parkNanos(this, nextHeartbeat - System.nanoTime());
+            boolean heartbeat = System.nanoTime() - nextHeartbeat >= 0;
+            if (heartbeat) {
+                nextHeartbeat = System.nanoTime() + heartbeatNanos;
+            }
+            for (Subscriber subscriber : subscribers) {
+                if (heartbeat) {
+                    subscriber.heartbeatDue = true;
+                }
+                subscriber.drain();
+            }
+        }
+    }
+
+    private byte[] encode(TaskEvent event) throws IOException {
+        byte[] frame = event.encoded;
+        if (frame == null) {
+            String header = "id: " + events.getEpoch() + "-" + event.getSequence() + "\nevent: " + event.getType().name().toLowerCase(Locale.ROOT) + "\ndata: ";
+            ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+            out.write(header.getBytes(StandardCharsets.UTF_8));
+            taskWriter.writeValue(out, event.getTask());
+            out.write('\n');
+            out.write('\n');
+            frame = out.toByteArray();
+            // Racing encoders produce equal frames, so either may win
+            event.encoded = frame;
+        }
+        return frame;
+    }
+
+    /**
+     * One connected client with its position in the ring
+     */
+    private final class Subscriber implements WriteListener, AsyncListener {
+        private final AsyncContext async;
+        private final ServletOutputStream out;
+        private final TaskEvent[] batch;
+        // Counts drain requests so only one thread writes at a time and none is lost
+        private final AtomicInteger pending;
+        // Sequence of the next event to send; events from batchIndex to batchSize are read but unsent
+        private long cursor;
+        private int batchIndex;
+        private int batchSize;
+        private boolean preambleSent;
+        private boolean resetDue;
+        private boolean unflushed;
+        private volatile boolean heartbeatDue;
+        private volatile boolean closed;
+
+        private Subscriber(AsyncContext async, ServletOutputStream out, long cursor, boolean resetDue) {
+            this.async = async;
+            this.out = out;
+            this.batch = new TaskEvent[BATCH_SIZE];
+            this.pending = new AtomicInteger();
+            this.cursor = cursor;
+            this.resetDue = resetDue;
+        }
+
+        /**
+         * Write until the subscriber has every published event or its connection would block.
+         * Safe to call from any thread; callers arriving while another thread writes leave the
+         * work to it.
+         */
+        private void drain() {
+            if (pending.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                if (!closed) {
+                    try {
+                        writeAvailable();
+                    } catch (IOException | IllegalStateException e) {
+                        logger.debug("Dropping event stream subscriber", e);
+                        close();
+                    }
+                }
+                missed = pending.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void writeAvailable() throws IOException {
+            while (out.isReady()) {
+                byte[] frame = nextFrame();
+                if (frame == null) {
+                    if (!unflushed) {
+                        return;
+                    }
+                    unflushed = false;
+                    out.flush();
+                } else {
+                    out.write(frame);
+                    unflushed = true;
+                }
+            }
+            // Not ready: the container calls onWritePossible once the connection drains
+        }
+
+        /**
+         * @return The next bytes to send, or null if the subscriber is up to date
+         */
+        private byte[] nextFrame() throws IOException {
+            if (!preambleSent) {
+                preambleSent = true;
+                return PREAMBLE;
+            }
+            if (batchIndex == batchSize) {
+                int count = events.read(cursor, batch);
+                if (count < 0) {
+                    // Fell a whole ring behind: drop the oldest events and tell the client to reload
+                    long oldest = events.getOldestSequence();
+                    logger.debug("Event stream subscriber skipped {} events", oldest - cursor);
+                    cursor = oldest;
+                    resetDue = true;
+                }
+                batchIndex = 0;
+                batchSize = Math.max(count, 0);
+            }
+            if (resetDue) {
+                resetDue = false;
+                // The id moves the client's Last-Event-ID past the dropped events, so a reconnect
+                // resumes here instead of being reset again
+                return ("id: " + events.getEpoch() + "-" + (cursor - 1) + "\nevent: reset\ndata: {}\n\n")
+                        .getBytes(StandardCharsets.UTF_8);
+            }
+            if (batchIndex == batchSize) {
+                if (heartbeatDue) {
+                    heartbeatDue = false;
+                    return HEARTBEAT;
+                }
+                return null;
+            }
+            // The encoded frame is shared by every subscriber, so it is written as it is
+            TaskEvent event = batch[batchIndex];
+            batch[batchIndex++] = null;
+            cursor++;
+            return encode(event);
+        }
+
+        private void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            subscribers.remove(this);
+            try {
+                async.complete();
+            } catch (IllegalStateException e) {
+                // Already completed by the container
+            }
+        }
+
+        @Override
+        public void onWritePossible() {
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            close();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            closed = true;
+            subscribers.remove(this);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Not restarted
+        }
+    }
+}
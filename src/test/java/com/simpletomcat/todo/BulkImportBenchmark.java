@@ -0,0 +1,107 @@
+package com.simpletomcat.todo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Time to import a batch of tasks through TODOService, one POST per task against one
+ * POST /_bulk carrying all of them, in memory and with a task log in SYNC and GROUP durability.
+ * Requests go through servlet stubs, so the network round trip each single POST would add
+ * is not included. Results with a log depend on the fsync latency of java.io.tmpdir.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BulkImportBenchmark {
+
+    @Param({"none", "SYNC", "GROUP"})
+    private String durability;
+
+    @Param({"1000"})
+    private int batchSize;
+
+    private Path directory;
+    private FileTaskLog log;
+    private TODOService service;
+    private String[] singleBodies;
+    private String bulkBody;
+
+    @Setup(Level.Trial)
+    public void setUpBodies() {
+        singleBodies = new String[batchSize];
+        StringBuilder bulk = new StringBuilder();
+        for (int i = 0; i < batchSize; i++) {
+            singleBodies[i] = "{\"title\":\"Imported " + i + "\",\"description\":\"Task number " + i + " of the import\"}";
+            bulk.append("{\"op\":\"create\",").append(singleBodies[i].substring(1)).append('\n');
+        }
+        bulkBody = bulk.toString();
+    }
+
+    /**
+     * Start every iteration from a fresh manager so the store does not grow across the run
+     */
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        TaskManager taskManager;
+        if (durability.equals("none")) {
+            taskManager = new TaskManager();
+        } else {
+            directory = Files.createTempDirectory("bulk-import-benchmark");
+            log = new FileTaskLog(directory, FileTaskLog.Durability.valueOf(durability));
+            taskManager = new TaskManager(log);
+        }
+        service = new TODOService(taskManager);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        if (log != null) {
+            log.close();
+            log = null;
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Benchmark
+    public int perRequest() throws Exception {
+        int status = 0;
+        for (String body : singleBodies) {
+            ServletStubs.StubResponse resp = ServletStubs.response();
+            service.doPost(ServletStubs.request("POST", null).body(body).build(), resp.build());
+            status += resp.getStatus();
+        }
+        return status;
+    }
+
+    @Benchmark
+    public int bulk() throws Exception {
+        ServletStubs.StubResponse resp = ServletStubs.response();
+        service.doPost(ServletStubs.request("POST", "/_bulk")
+                .header("Content-Type", "application/x-ndjson")
+                .body(bulkBody)
+                .build(), resp.build());
+        return resp.getBodyBytes().length;
+    }
+}
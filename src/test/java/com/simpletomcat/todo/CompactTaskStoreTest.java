@@ -0,0 +1,149 @@
+package com.simpletomcat.todo;
+
+import org.junit.Before;
+import org.junit.Test;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for CompactTaskStore
+ */
+public class CompactTaskStoreTest {
+
+    private CompactTaskStore store;
+
+    @Before
+    public void setUp() {
+        store = new CompactTaskStore();
+    }
+
+    @Test
+    public void testPutAndGet() {
+        // Store a task beyond the first chunk, with multi-byte text
+        store.put(new Task(10_000, "Café ☕", "Emoji 😀 and accents é"));
+
+        // Verify every field is decoded from the arrays
+        Task task = store.get(10_000);
+        assertNotNull("Stored task should be found", task);
+        assertEquals("Title should round-trip", "Café ☕", task.getTitle());
+        assertEquals("Description should round-trip", "Emoji 😀 and accents é", task.getDescription());
+        assertFalse("Status should round-trip", task.isCompleted());
+        assertEquals("Version should round-trip", 1, task.getVersion());
+        assertNull("Empty slot should return null", store.get(9_999));
+        assertNull("Out of range id should return null", store.get(1_000_000));
+        assertEquals("Size should count stored tasks", 1, store.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPutDuplicateId() {
+        store.put(new Task(1, "Title", "Description"));
+        store.put(new Task(1, "Other", "Other description"));
+    }
+
+    @Test
+    public void testReplaceAndRemove() {
+        store.put(new Task(1, "Title", "Description"));
+
+        // Verify replacement keeps or rewrites the text as needed
+        Task previous = store.replace(new Task(1, "Title", "Description", true, 2));
+        assertFalse("Replace should return the previous version", previous.isCompleted());
+        assertTrue("New status should be stored", store.get(1).isCompleted());
+        store.replace(new Task(1, "Renamed", "New description", true, 3));
+        assertEquals("New title should be stored", "Renamed", store.get(1).getTitle());
+        assertEquals("New description should be stored", "New description", store.get(1).getDescription());
+        assertNull("Replacing a missing id should do nothing", store.replace(new Task(2, "Missing", "Not stored")));
+
+        // Verify removal empties the slot only once
+        assertEquals("Remove should return the stored task", 3, store.remove(1).getVersion());
+        assertNull("Second remove should return null", store.remove(1));
+        assertEquals("Size should drop to zero", 0, store.size());
+        store.put(new Task(1, "Reused", "Slot filled again"));
+        assertFalse("Status of a removed task should not leak into the slot", store.get(1).isCompleted());
+    }
+
+    @Test
+    public void testToListIsOrderedById() {
+        store.put(new Task(3, "Three", "Third"));
+        store.put(new Task(1, "One", "First"));
+        store.put(new Task(2, "Two", "Second"));
+        store.remove(2);
+
+        List<Task> tasks = store.toList();
+        assertEquals("Removed task should be skipped", 2, tasks.size());
+        assertEquals("Lowest id should come first", 1, tasks.get(0).getId());
+        assertEquals("Highest id should come last", 3, tasks.get(1).getId());
+    }
+
+    @Test
+    public void testReadersNeverSeeTornTasks() throws Exception {
+        store.put(new Task(1, "Pending", "Odd versions are pending", false, 1));
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            // One writer flips status, text and version together while two threads read
+            Future<?> writer = executor.submit(() -> {
+                for (int version = 2; version <= 50_000; version++) {
+                    boolean completed = version % 2 == 0;
+                    store.replace(new Task(1, completed ? "Completed" : "Pending",
+                            completed ? "Even versions are completed" : "Odd versions are pending", completed, version));
+                }
+            });
+            Runnable reader = () -> {
+                while (!writer.isDone()) {
+                    Task task = store.get(1);
+                    boolean completed = task.getVersion() % 2 == 0;
+                    assertEquals("Status should match the version", completed, task.isCompleted());
+                    assertEquals("Title should match the version", completed ? "Completed" : "Pending", task.getTitle());
+                }
+            };
+            Future<?> first = executor.submit(reader);
+            Future<?> second = executor.submit(reader);
+            writer.get(60, TimeUnit.SECONDS);
+            first.get(60, TimeUnit.SECONDS);
+            second.get(60, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testConcurrentStatusChangesOfAdjacentIds() throws Exception {
+        // Neighboring ids share a status word but belong to different stripes
+        int threads = 8;
+        int ids = 256;
+        for (int id = 1; id <= ids; id++) {
+            store.put(new Task(id, "Task " + id, "Description"));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Future<?>[] writers = new Future<?>[threads];
+            for (int t = 0; t < threads; t++) {
+                int first = t + 1;
+                writers[t] = executor.submit(() -> {
+                    // Each thread owns every eighth id, toggles it repeatedly and ends on a known status
+                    for (int version = 2; version <= 2_001; version++) {
+                        for (int id = first; id <= ids; id += threads) {
+                            boolean completed = version == 2_001 ? id % 3 == 0 : version % 2 == 0;
+                            store.replace(new Task(id, "Task " + id, "Description", completed, version));
+                        }
+                    }
+                });
+            }
+            for (Future<?> writer : writers) {
+                writer.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Verify no status change was lost to a neighbor's write
+        for (int id = 1; id <= ids; id++) {
+            assertEquals("Final status of task " + id, id % 3 == 0, store.get(id).isCompleted());
+            assertEquals("Final version of task " + id, 2_001, store.get(id).getVersion());
+        }
+    }
+}
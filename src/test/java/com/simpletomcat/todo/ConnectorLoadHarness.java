@@ -0,0 +1,266 @@
+package com.simpletomcat.todo;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Closed-loop load test holding thousands of keep-alive connections against a running server.
+ * Every connection runs on its own virtual thread and sends requests back to back over one
+ * socket, so compare a server started with -Dtodo.threads=platform against one started with
+ * -Dtodo.threads=virtual. With slowBodyMillis above zero each request is a PUT whose body
+ * arrives that long after its headers, the way a slow client uploads, which keeps a server
+ * thread blocked on the read for the whole delay.
+ * Usage: java -cp target/test-classes:target/classes com.simpletomcat.todo.ConnectorLoadHarness
+ * [host=localhost] [port=8080] [connections=10000] [seconds=30] [warmupSeconds=5] [slowBodyMillis=0]
+ */
+public final class ConnectorLoadHarness {
+    // Latencies are counted in buckets 5% wide, from 1 microsecond to over an hour
+    private static final double BUCKET_GROWTH = 1.05;
+    private static final int BUCKETS = 512;
+
+    private final String host;
+    private final int port;
+    private final int slowBodyMillis;
+    private final AtomicLongArray latencyBuckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private volatile boolean recording;
+    private volatile boolean running = true;
+
+    private ConnectorLoadHarness(String host, int port, int slowBodyMillis) {
+        this.host = host;
+        this.port = port;
+        this.slowBodyMillis = slowBodyMillis;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals < 0) {
+                throw new IllegalArgumentException("Expected key=value but got " + arg);
+            }
+            options.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        String host = options.getOrDefault("host", "localhost");
+        int port = Integer.parseInt(options.getOrDefault("port", "8080"));
+        int connections = Integer.parseInt(options.getOrDefault("connections", "10000"));
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "30"));
+        int warmupSeconds = Integer.parseInt(options.getOrDefault("warmupSeconds", "5"));
+        int slowBodyMillis = Integer.parseInt(options.getOrDefault("slowBodyMillis", "0"));
+
+        new ConnectorLoadHarness(host, port, slowBodyMillis).run(connections, warmupSeconds, seconds);
+    }
+
+    private void run(int connections, int warmupSeconds, int seconds) throws InterruptedException {
+        System.out.printf("Opening %d keep-alive connections to %s:%d%s%n", connections, host, port,
+                slowBodyMillis > 0 ? " with request bodies delayed by " + slowBodyMillis + " ms" : "");
+        CountDownLatch connected = new CountDownLatch(connections);
+        List<Socket> sockets = new ArrayList<>();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < connections; i++) {
+                clients.execute(() -> runConnection(sockets, connected));
+            }
+            if (!connected.await(120, TimeUnit.SECONDS)) {
+                System.out.printf("Only %d connections were opened%n", connections - connected.getCount());
+            }
+
+            // Measure only once every connection is busy and the server has warmed up
+            TimeUnit.SECONDS.sleep(warmupSeconds);
+            long errorsBefore = errors.get();
+            recording = true;
+            long start = System.nanoTime();
+            TimeUnit.SECONDS.sleep(seconds);
+            recording = false;
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            running = false;
+            synchronized (sockets) {
+                for (Socket socket : sockets) {
+                    closeQuietly(socket);
+                }
+            }
+            report(elapsed, errors.get() - errorsBefore);
+        }
+    }
+
+    private void runConnection(List<Socket> sockets, CountDownLatch connected) {
+        boolean counted = false;
+        while (running) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(host, port), 60_000);
+                socket.setTcpNoDelay(true);
+                synchronized (sockets) {
+                    sockets.add(socket);
+                }
+                if (!counted) {
+                    connected.countDown();
+                    counted = true;
+                }
+                OutputStream out = socket.getOutputStream();
+                InputStream in = new BufferedInputStream(socket.getInputStream());
+                boolean keepAlive = true;
+                while (running && keepAlive) {
+                    long start = System.nanoTime();
+                    sendRequest(out);
+                    Response response = readResponse(in);
+                    if (response.status != 200) {
+                        errors.incrementAndGet();
+                    }
+                    record(System.nanoTime() - start);
+                    // The server ends a connection after maxKeepAliveRequests; open a new one
+                    keepAlive = response.keepAlive;
+                }
+            } catch (IOException | InterruptedException e) {
+                // The server closed the connection (or the run ended); reconnect while running
+                if (running) {
+                    errors.incrementAndGet();
+                }
+            }
+        }
+        if (!counted) {
+            connected.countDown();
+        }
+    }
+
+    private void sendRequest(OutputStream out) throws IOException, InterruptedException {
+        if (slowBodyMillis <= 0) {
+            out.write(("GET /api/tasks/1 HTTP/1.1\r\nHost: " + host + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            return;
+        }
+        byte[] body = ("{\"completed\":" + ThreadLocalRandom.current().nextBoolean() + "}").getBytes(StandardCharsets.US_ASCII);
+        out.write(("PUT /api/tasks/1 HTTP/1.1\r\nHost: " + host + "\r\nContent-Type: application/json\r\nContent-Length: "
+                + body.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        Thread.sleep(slowBodyMillis);
+        out.write(body);
+        out.flush();
+    }
+
+    /**
+     * Read one response, skipping its body
+     * @return Status of the response and whether the connection stays open
+     */
+    private static Response readResponse(InputStream in) throws IOException {
+        String statusLine = readLine(in);
+        int status = Integer.parseInt(statusLine.substring(9, 12));
+        long contentLength = 0;
+        boolean chunked = false;
+        boolean keepAlive = true;
+        String line;
+        while (!(line = readLine(in)).isEmpty()) {
+            String lower = line.toLowerCase(Locale.ROOT);
+            if (lower.startsWith("content-length:")) {
+                contentLength = Long.parseLong(line.substring(15).trim());
+            } else if (lower.startsWith("transfer-encoding:") && lower.contains("chunked")) {
+                chunked = true;
+            } else if (lower.startsWith("connection:") && lower.contains("close")) {
+                keepAlive = false;
+            }
+        }
+        if (chunked) {
+            long size;
+            while ((size = Long.parseLong(readLine(in).trim(), 16)) > 0) {
+                skipFully(in, size);
+                readLine(in);
+            }
+            readLine(in);
+        } else {
+            skipFully(in, contentLength);
+        }
+        return new Response(status, keepAlive);
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                throw new IOException("Connection closed by the server");
+            }
+            if (b != '\r') {
+                line.append((char) b);
+            }
+        }
+        return line.toString();
+    }
+
+    private static void skipFully(InputStream in, long bytes) throws IOException {
+        while (bytes > 0) {
+            long skipped = in.skip(bytes);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new IOException("Connection closed by the server");
+                }
+                skipped = 1;
+            }
+            bytes -= skipped;
+        }
+    }
+
+    private void record(long nanos) {
+        if (!recording) {
+            return;
+        }
+        completed.incrementAndGet();
+        long micros = Math.max(1, nanos / 1000);
+        int bucket = (int) Math.min(BUCKETS - 1, Math.log(micros) / Math.log(BUCKET_GROWTH));
+        latencyBuckets.incrementAndGet(bucket);
+    }
+
+    private void report(double elapsedSeconds, long errorCount) {
+        long total = completed.get();
+        System.out.printf("Requests: %d in %.1f s, %.0f req/s, %d errors%n", total, elapsedSeconds, total / elapsedSeconds, errorCount);
+        System.out.printf("Latency: p50 %s, p90 %s, p99 %s, p99.9 %s, max %s%n",
+                percentile(total, 0.50), percentile(total, 0.90), percentile(total, 0.99),
+                percentile(total, 0.999), percentile(total, 1.0));
+    }
+
+    private String percentile(long total, double fraction) {
+        long rank = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += latencyBuckets.get(i);
+            if (seen >= rank && seen > 0) {
+                // Upper bound of the bucket, so percentiles are never understated
+                return String.format("%.1f ms", Math.pow(BUCKET_GROWTH, i + 1) / 1000);
+            }
+        }
+        return "n/a";
+    }
+
+    private static final class Response {
+        private final int status;
+        private final boolean keepAlive;
+
+        private Response(int status, boolean keepAlive) {
+            this.status = status;
+            this.keepAlive = keepAlive;
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+}
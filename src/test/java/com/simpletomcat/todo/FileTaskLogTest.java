@@ -0,0 +1,369 @@
+package com.simpletomcat.todo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+import static org.junit.Assert.*;
+
+/**
+ * Recovery tests for FileTaskLog and TaskManager
+ */
+public class FileTaskLogTest {
+
+    private static final int INITIAL_TASKS = 3;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRecoveryInEveryDurabilityMode() throws Exception {
+        for (FileTaskLog.Durability durability : FileTaskLog.Durability.values()) {
+            Path directory = folder.newFolder(durability.name()).toPath();
+
+            // A fresh log starts from the sample tasks, which are logged like any other change
+            List<Task> before;
+            try (FileTaskLog log = new FileTaskLog(directory, durability)) {
+                TaskManager taskManager = new TaskManager(log);
+                assertEquals(durability + ": empty log should seed the sample tasks", INITIAL_TASKS, taskManager.getTaskCount());
+                Task kept = taskManager.addTask("Kept", "Survives a restart");
+                Task deleted = taskManager.addTask("Deleted", "Removed before the restart");
+                taskManager.updateTaskStatus(kept.getId(), true);
+                taskManager.deleteTask(deleted.getId());
+                taskManager.deleteTask(1);
+                before = taskManager.getAllTasks();
+            }
+
+            // Replaying rebuilds the same tasks without adding the samples again
+            try (FileTaskLog log = new FileTaskLog(directory, durability)) {
+                TaskManager taskManager = new TaskManager(log);
+                assertTasksEqual(durability + ": replayed tasks should match", before, taskManager.getAllTasks());
+                assertEquals(durability + ": stats should be rebuilt", 1, taskManager.getStats().getCompleted());
+                assertEquals(durability + ": search should be rebuilt", 1, taskManager.searchTasks("survives", 10, null).size());
+                assertEquals(durability + ": ids of deleted tasks should not be reused", 6, taskManager.addTask("Next", "After restart").getId());
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentGroupCommit() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        int threads = 8;
+        int tasksPerThread = 250;
+
+        // Writers on different stripes share batches
+        try (FileTaskLog log = new FileTaskLog(directory, FileTaskLog.Durability.GROUP)) {
+            TaskManager taskManager = new TaskManager(log);
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    futures.add(executor.submit(() -> {
+                        for (int i = 0; i < tasksPerThread; i++) {
+                            Task task = taskManager.addTask("Grouped " + i, "Added concurrently");
+                            if (i % 2 == 0) {
+                                taskManager.updateTaskStatus(task.getId(), true);
+                            }
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get(60, TimeUnit.SECONDS);
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        // Every acknowledged change is replayed
+        try (FileTaskLog log = new FileTaskLog(directory, FileTaskLog.Durability.GROUP)) {
+            TaskManager taskManager = new TaskManager(log);
+            assertEquals("Every added task should be recovered", INITIAL_TASKS + threads * tasksPerThread, taskManager.getTaskCount());
+            assertEquals("Every status change should be recovered", threads * tasksPerThread / 2, taskManager.getStats().getCompleted());
+        }
+    }
+
+    @Test
+    public void testTornTailIsDiscarded() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (FileTaskLog log = new FileTaskLog(directory, FileTaskLog.Durability.SYNC)) {
+            new TaskManager(log).addTask("Complete", "Fully written");
+        }
+        Path segment = onlySegment(directory);
+        long goodSize = sizeOf(segment);
+
+        // Simulate a crash in the middle of writing a record
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.allocate(20).putInt(100).putInt(12345).flip());
+        }
+
+        // The partial record is dropped and new records follow the last good one
+        try (FileTaskLog log = new FileTaskLog(directory, FileTaskLog.Durability.SYNC)) {
+            TaskManager taskManager = new TaskManager(log);
+            assertEquals("Only complete records should be replayed", INITIAL_TASKS + 1, taskManager.getTaskCount());
+            assertEquals("Torn tail should be truncated", goodSize, sizeOf(segment));
+            taskManager.addTask("After", "Written after recovery");
+        }
+        try (FileTaskLog log = new FileTaskLog(directory, FileTaskLog.Durability.SYNC)) {
+            assertEquals("Records after recovery should be replayed", INITIAL_TASKS + 2, new TaskManager(log).getTaskCount());
+        }
+    }
+
+    @Test
+    public void testCorruptRecordEndsReplay() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (FileTaskLog log = new FileTaskLog(directory, FileTaskLog.Durability.SYNC)) {
+            new TaskManager(log).addTask("Corrupted", "Last record gets a flipped byte");
+        }
+
+        // Flip the final byte so the checksum no longer matches
+        try (FileChannel channel = FileChannel.open(onlySegment(directory), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, channel.size() - 1);
+            channel.write(ByteBuffer.wrap(new byte[] {(byte) ~last.get(0)}), channel.size() - 1);
+        }
+
+        try (FileTaskLog log = new FileTaskLog(directory, FileTaskLog.Durability.SYNC)) {
+            TaskManager taskManager = new TaskManager(log);
+            assertEquals("Records before the corrupt one should be replayed", INITIAL_TASKS, taskManager.getTaskCount());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAppendBeforeReplayIsRejected() throws Exception {
+        try (FileTaskLog log = new FileTaskLog(folder.getRoot().toPath(), FileTaskLog.Durability.SYNC)) {
+            log.appendDelete(1);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testAppendAfterCloseIsRejected() throws Exception {
+        FileTaskLog log = new FileTaskLog(folder.getRoot().toPath(), FileTaskLog.Durability.GROUP);
+        new TaskManager(log);
+        log.close();
+        log.appendDelete(1);
+    }
+
+    @Test
+    public void testCheckpointReplacesOlderSegments() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        List<Task> before;
+        try (FileTaskLog log = new FileTaskLog(directory, FileTaskLog.Durability.GROUP)) {
+            TaskManager taskManager = new TaskManager(log);
+            for (int i = 0; i < 100; i++) {
+                taskManager.addTask("Snapshotted " + i, "Written before the checkpoint");
+            }
+            taskManager.deleteTask(103);
+            assertEquals("Checkpoint should snapshot every task", INITIAL_TASKS + 99, taskManager.checkpoint());
+            assertEquals("Unchanged tasks should not be snapshotted again", -1, taskManager.checkpoint());
+
+            // Changes after the checkpoint go to the new segment
+            taskManager.updateTaskStatus(1, true);
+            taskManager.deleteTask(2);
+            taskManager.addTask("Tail", "Written after the checkpoint");
+            before = taskManager.getAllTasks();
+        }
+
+        // Only the snapshot and the segment after it remain
+        assertEquals("Covered segments should be deleted", 1, countFiles(directory, "segment-*.log"));
+        assertEquals("One snapshot should remain", 1, countFiles(directory, "snapshot-*.bin"));
+
+        // Startup loads the snapshot and replays the tail
+        try (FileTaskLog log = new FileTaskLog(directory, FileTaskLog.Durability.GROUP)) {
+            TaskManager taskManager = new TaskManager(log);
+            assertTasksEqual("Snapshot plus tail should rebuild the tasks", before, taskManager.getAllTasks());
+            assertEquals("Ids should continue after the snapshot", 105, taskManager.addTask("Next", "After restart").getId());
+        }
+    }
+
+    @Test
+    public void testCheckpointDuringConcurrentWrites() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        int threads = 4;
+        int tasksPerThread = 500;
+        List<Task> before;
+        try (FileTaskLog log = new FileTaskLog(directory, FileTaskLog.Durability.ASYNC)) {
+            TaskManager taskManager = new TaskManager(log);
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    futures.add(executor.submit(() -> {
+                        for (int i = 0; i < tasksPerThread; i++) {
+                            Task task = taskManager.addTask("Racing " + i, "Added while checkpointing");
+                            taskManager.updateTaskStatus(task.getId(), true);
+                            if (i % 3 == 0) {
+                                taskManager.deleteTask(task.getId());
+                            }
+                        }
+                    }));
+                }
+                // Checkpoint repeatedly while the writers run
+                while (!futures.stream().allMatch(Future::isDone)) {
+                    taskManager.checkpoint();
+                }
+                for (Future<?> future : futures) {
+                    future.get(60, TimeUnit.SECONDS);
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+            before = taskManager.getAllTasks();
+        }
+
+        try (FileTaskLog log = new FileTaskLog(directory, FileTaskLog.Durability.ASYNC)) {
+            assertTasksEqual("Fuzzy snapshots plus their tails should rebuild the tasks", before, new TaskManager(log).getAllTasks());
+        }
+    }
+
+    @Test
+    public void testBatchRecoveryInEveryDurabilityMode() throws Exception {
+        for (FileTaskLog.Durability durability : FileTaskLog.Durability.values()) {
+            Path directory = folder.newFolder("batch-" + durability.name()).toPath();
+
+            // A batch is logged with one append and replayed like separate changes
+            List<Task> before;
+            try (FileTaskLog log = new FileTaskLog(directory, durability)) {
+                TaskManager taskManager = new TaskManager(log);
+                List<TaskOperation> creates = new ArrayList<>();
+                for (int i = 0; i < 500; i++) {
+                    creates.add(TaskOperation.create("Batched " + i, "Logged together"));
+                }
+                taskManager.addTasks(creates);
+                taskManager.applyOperations(List.of(TaskOperation.update(4, true), TaskOperation.delete(5), TaskOperation.delete(1)));
+                before = taskManager.getAllTasks();
+            }
+
+            try (FileTaskLog log = new FileTaskLog(directory, durability)) {
+                TaskManager taskManager = new TaskManager(log);
+                assertTasksEqual(durability + ": replayed batch should match", before, taskManager.getAllTasks());
+                assertEquals(durability + ": stats should be rebuilt", 1, taskManager.getStats().getCompleted());
+            }
+        }
+    }
+
+    @Test
+    public void testSnapshotLoadsAcrossMappedWindows() throws Exception {
+        // Records of every size, some larger than a whole window
+        List<Task> tasks = new ArrayList<>();
+        for (int id = 1; id <= 200; id++) {
+            tasks.add(new Task(id, "Task " + id + " ☕", "d".repeat(id * 3), id % 2 == 0, id + 1));
+        }
+        Path file = folder.getRoot().toPath().resolve("snapshot.bin");
+        assertEquals("Write should count the streamed tasks", 200, TaskSnapshotFile.write(file, 7, 250, tasks));
+
+        // A tiny window makes most records straddle a mapping boundary
+        List<Task> loaded = new ArrayList<>();
+        int[] nextId = new int[1];
+        TaskLog.Replayer replayer = new TaskLog.Replayer() {
+            @Override
+            public void put(Task task) {
+                loaded.add(task);
+            }
+
+            @Override
+            public void delete(int id) {
+                fail("Snapshots hold no deletes");
+            }
+
+            @Override
+            public void reserveIds(int next) {
+                nextId[0] = next;
+            }
+        };
+        assertEquals("Every task should be loaded", 200, TaskSnapshotFile.load(file, replayer, 100));
+        assertEquals("Next id should be loaded", 250, nextId[0]);
+        assertTasksEqual("Windowed load should match the written tasks", tasks, loaded);
+    }
+
+    @Test
+    public void testSnapshotWithCountInHeaderStillLoads() throws Exception {
+        // Earlier layout: magic, checkpoint, next id and count, one task, then the checksum
+        byte[] title = "Old".getBytes(StandardCharsets.UTF_8);
+        byte[] description = "Written before the count moved".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(20 + 17 + title.length + 4 + description.length + 4);
+        buffer.putInt(0x54534E31).putLong(3).putInt(9).putInt(1)
+                .putInt(8).putLong(2).put((byte) 1)
+                .putInt(title.length).put(title).putInt(description.length).put(description);
+        CRC32C checksum = new CRC32C();
+        checksum.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) checksum.getValue());
+        Path file = folder.getRoot().toPath().resolve("old-snapshot.bin");
+        Files.write(file, buffer.array());
+
+        // The task is loaded as before
+        List<Task> loaded = new ArrayList<>();
+        TaskLog.Replayer replayer = new TaskLog.Replayer() {
+            @Override
+            public void put(Task task) {
+                loaded.add(task);
+            }
+
+            @Override
+            public void delete(int id) {
+                fail("Snapshots hold no deletes");
+            }
+
+            @Override
+            public void reserveIds(int nextId) {
+                assertEquals("Next id should be loaded", 9, nextId);
+            }
+        };
+        assertEquals("The one task should be loaded", 1, TaskSnapshotFile.load(file, replayer));
+        assertTasksEqual("Old snapshot should load", List.of(new Task(8, "Old", "Written before the count moved", true, 2)), loaded);
+    }
+
+    private static Path onlySegment(Path directory) throws IOException {
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, "segment-*.log")) {
+            Iterator<Path> iterator = segments.iterator();
+            Path segment = iterator.next();
+            assertFalse("Expected a single segment", iterator.hasNext());
+            return segment;
+        }
+    }
+
+    private static int countFiles(Path directory, String glob) throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, glob)) {
+            for (Path ignored : files) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static long sizeOf(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.size();
+        }
+    }
+
+    private static void assertTasksEqual(String message, List<Task> expected, List<Task> actual) {
+        assertEquals(message, expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Task e = expected.get(i);
+            Task a = actual.get(i);
+            assertEquals(message, e.getId(), a.getId());
+            assertEquals(message, e.getTitle(), a.getTitle());
+            assertEquals(message, e.getDescription(), a.getDescription());
+            assertEquals(message, e.isCompleted(), a.isCompleted());
+            assertEquals(message, e.getVersion(), a.getVersion());
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.simpletomcat.todo;
+
+import org.junit.Before;
+import org.junit.Test;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for HeapTaskStore
+ */
+public class HeapTaskStoreTest {
+
+    private HeapTaskStore store;
+
+    @Before
+    public void setUp() {
+        store = new HeapTaskStore();
+    }
+
+    @Test
+    public void testPutAndGet() {
+        // Store a task far beyond the initial capacity
+        Task task = new Task(500, "Title", "Description");
+        store.put(task);
+
+        // Verify the task is found in its slot
+        assertSame("Stored task should be returned", task, store.get(500));
+        assertNull("Empty slot should return null", store.get(499));
+        assertNull("Out of range id should return null", store.get(100000));
+        assertEquals("Size should count stored tasks", 1, store.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPutDuplicateId() {
+        store.put(new Task(1, "Title", "Description"));
+        store.put(new Task(1, "Other", "Other description"));
+    }
+
+    @Test
+    public void testRemove() {
+        Task task = new Task(2, "Title", "Description");
+        store.put(task);
+
+        // Verify removal empties the slot only once
+        assertSame("Remove should return the stored task", task, store.remove(2));
+        assertNull("Second remove should return null", store.remove(2));
+        assertEquals("Size should drop to zero", 0, store.size());
+    }
+
+    @Test
+    public void testToListIsOrderedById() {
+        store.put(new Task(3, "Three", "Third"));
+        store.put(new Task(1, "One", "First"));
+        store.put(new Task(2, "Two", "Second"));
+        store.remove(2);
+
+        // Verify the copy is ordered and skips removed slots
+        List<Task> tasks = store.toList();
+        assertEquals("Removed task should be skipped", 2, tasks.size());
+        assertEquals("Lowest id should come first", 1, tasks.get(0).getId());
+        assertEquals("Highest id should come last", 3, tasks.get(1).getId());
+    }
+}
@@ -0,0 +1,49 @@
+package com.simpletomcat.todo;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for IdBitSet
+ */
+public class IdBitSetTest {
+
+    private IdBitSet ids;
+
+    @Before
+    public void setUp() {
+        ids = new IdBitSet();
+    }
+
+    @Test
+    public void testSetClearAndGet() {
+        ids.set(5);
+        ids.set(70_000);
+
+        // Verify membership in the first and in a later chunk
+        assertTrue("Set id should be a member", ids.get(5));
+        assertTrue("Id in a later chunk should be a member", ids.get(70_000));
+        assertFalse("Unset id should not be a member", ids.get(6));
+        
+        ids.clear(5);
+        assertFalse("Cleared id should not be a member", ids.get(5));
+        assertFalse("Id beyond every chunk should not be a member", ids.get(10_000_000));
+    }
+
+    @Test
+    public void testNextSetBit() {
+        ids.set(1);
+        ids.set(63);
+        ids.set(64);
+        ids.set(200_000);
+
+        // Verify scanning within a word, across words and across missing chunks
+        assertEquals("Start id itself should be found", 1, ids.nextSetBit(1));
+        assertEquals("Scan should reach the end of a word", 63, ids.nextSetBit(2));
+        assertEquals("Scan should cross into the next word", 64, ids.nextSetBit(64));
+        assertEquals("Scan should skip empty chunks", 200_000, ids.nextSetBit(65));
+        assertEquals("Scan past the last member should find nothing", -1, ids.nextSetBit(200_001));
+    }
+}
@@ -0,0 +1,72 @@
+package com.simpletomcat.todo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for LatencyHistogram
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketsCoverEveryValue() {
+        // Every value falls in a bucket whose bounds hold it, and buckets stay within about 3% wide
+        for (long value : new long[] {0, 1, 31, 32, 33, 63, 64, 1_000, 123_456, 1_000_000_007L, 1L << 39}) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            long upper = LatencyHistogram.upperBound(bucket);
+            long lower = bucket == 0 ? 0 : LatencyHistogram.upperBound(bucket - 1);
+            assertTrue("Value " + value + " should be below its bucket's upper bound", value < upper);
+            assertTrue("Value " + value + " should not be below its bucket's lower bound", value >= lower);
+            assertTrue("Bucket of " + value + " should be narrow", upper - lower <= Math.max(1, lower / 32));
+        }
+
+        // Durations beyond the range all count in the last bucket
+        assertEquals("Huge values should land in the last bucket",
+                LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testQuantilesAndCounts() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals("Empty histogram should report 0", 0, histogram.valueAtQuantile(0.99));
+        for (int i = 1; i <= 1_000; i++) {
+            histogram.record(i * 1_000L);
+        }
+        histogram.record(-5);
+
+        // Counts and sums are exact, quantiles are bucket upper bounds within 3%
+        assertEquals("Every value should be counted", 1_001, histogram.getCount());
+        assertEquals("Sum should add every value, negatives as 0", 500_500_000L, histogram.getSum());
+        long median = histogram.valueAtQuantile(0.5);
+        assertTrue("Median should not be understated", median >= 500_000);
+        assertTrue("Median should be within 3%", median <= 515_000);
+        long p99 = histogram.valueAtQuantile(0.99);
+        assertTrue("p99 should be within 3% above 990 us", p99 >= 989_000 && p99 <= 1_020_000);
+
+        // Bounds count only whole buckets at or below them
+        assertEquals("Nothing but the negative value is at or below 0", 1, histogram.countAtOrBelow(0));
+        assertEquals("Everything should be at or below the maximum", 1_001, histogram.countAtOrBelow(Long.MAX_VALUE));
+        long belowHalf = histogram.countAtOrBelow(500_000);
+        assertTrue("About half should be at or below 500 us", belowHalf > 480 && belowHalf <= 501);
+    }
+
+    @Test
+    public void testAdd() {
+        LatencyHistogram fast = new LatencyHistogram();
+        LatencyHistogram slow = new LatencyHistogram();
+        fast.record(1_000);
+        fast.record(2_000);
+        slow.record(5_000_000);
+
+        // The merged histogram holds the durations of both
+        LatencyHistogram all = new LatencyHistogram();
+        all.add(fast);
+        all.add(slow);
+        assertEquals("Counts should add up", 3, all.getCount());
+        assertEquals("Sums should add up", 5_003_000, all.getSum());
+        assertTrue("Median should come from the fast histogram", all.valueAtQuantile(0.5) < 2_100);
+        assertTrue("Maximum should come from the slow histogram", all.valueAtQuantile(1.0) >= 5_000_000);
+        assertEquals("Sources should be unchanged", 2, fast.getCount());
+    }
+}
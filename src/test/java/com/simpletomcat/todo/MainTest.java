@@ -0,0 +1,251 @@
+package com.simpletomcat.todo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.catalina.Executor;
+import org.apache.catalina.core.StandardThreadExecutor;
+import org.apache.catalina.core.StandardVirtualThreadExecutor;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.coyote.AbstractProtocol;
+import org.apache.coyote.http11.Http11Nio2Protocol;
+import org.apache.coyote.http11.Http11NioProtocol;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Integration tests starting the server on an ephemeral port with different connector settings
+ */
+public class MainTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Tomcat tomcat;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void tearDown() throws Exception {
+        if (tomcat != null) {
+            tomcat.stop();
+            tomcat.destroy();
+        }
+    }
+
+    @Test
+    public void testDefaultConnector() throws Exception {
+        start();
+        assertTrue("NIO should be the default protocol", tomcat.getConnector().getProtocolHandler() instanceof Http11NioProtocol);
+        Executor executor = tomcat.getService().getExecutor("httpExecutor");
+        assertTrue("Platform threads should be the default", executor instanceof StandardThreadExecutor);
+        assertEquals("Default pool size", 200, ((StandardThreadExecutor) executor).getMaxThreads());
+
+        // The API is served with the sample tasks
+        HttpResponse<String> response = get("/api/tasks", HttpClient.Version.HTTP_1_1, null);
+        assertEquals("Listing should succeed", 200, response.statusCode());
+        assertEquals("Listing should contain the sample tasks", 3, objectMapper.readTree(response.body()).size());
+
+        // The UI is served from memory at the root
+        HttpResponse<String> page = get("/", HttpClient.Version.HTTP_1_1, null);
+        assertEquals("UI should be served", 200, page.statusCode());
+        assertTrue("UI should be HTML", page.headers().firstValue("Content-Type").orElse("").startsWith("text/html"));
+
+        // Metrics are scraped at /metrics and count the listing above
+        HttpResponse<String> metrics = get("/metrics", HttpClient.Version.HTTP_1_1, null);
+        assertEquals("Metrics should be served", 200, metrics.statusCode());
+        assertTrue("Listing should be counted", metrics.body().contains(
+                "todo_http_requests_total{endpoint=\"/api/tasks\",method=\"GET\",status=\"2xx\"} 1\n"));
+        assertTrue("Stream subscribers should be reported", metrics.body().contains("todo_event_stream_subscribers 0\n"));
+    }
+
+    @Test
+    public void testNio2Protocol() throws Exception {
+        start("todo.protocol", "nio2", "todo.maxThreads", "9");
+        assertTrue("NIO2 should be selected", tomcat.getConnector().getProtocolHandler() instanceof Http11Nio2Protocol);
+
+        // The connector owns its executor, since NIO2 shuts it down on stop
+        assertNull("No executor should be shared through the service", tomcat.getService().getExecutor("httpExecutor"));
+        assertEquals("Pool size should be applied to the connector", 9,
+                ((AbstractProtocol<?>) tomcat.getConnector().getProtocolHandler()).getMaxThreads());
+        assertEquals("Requests should be served over NIO2", 200, get("/api/tasks/1", HttpClient.Version.HTTP_1_1, null).statusCode());
+    }
+
+    @Test
+    public void testSnapshotsCanBeDisabled() throws Exception {
+        start("todo.snapshotIntervalSeconds", "0");
+        assertEquals("Requests should be served without periodic snapshots", 200,
+                get("/api/tasks/1", HttpClient.Version.HTTP_1_1, null).statusCode());
+    }
+
+    @Test
+    public void testBaseDirIsUnderDataDir() throws Exception {
+        File dataDir = folder.newFolder("data");
+        start("todo.dataDir", dataDir.getPath());
+        assertEquals("Tomcat should run from the data directory", new File(dataDir, "tomcat").getCanonicalFile(),
+                tomcat.getServer().getCatalinaBase().getCanonicalFile());
+
+        // A restart reuses the same base rather than creating a new one
+        tomcat.stop();
+        tomcat.destroy();
+        start("todo.dataDir", dataDir.getPath());
+        assertEquals("Restart should reuse the base", new File(dataDir, "tomcat").getCanonicalFile(),
+                tomcat.getServer().getCatalinaBase().getCanonicalFile());
+        assertEquals("Requests should be served", 200, get("/api/tasks/1", HttpClient.Version.HTTP_1_1, null).statusCode());
+    }
+
+    @Test
+    public void testThreadAndQueueLimits() throws Exception {
+        start("todo.maxThreads", "7", "todo.acceptCount", "5", "todo.maxConnections", "50");
+        assertEquals("Pool size should be applied", 7,
+                ((StandardThreadExecutor) tomcat.getService().getExecutor("httpExecutor")).getMaxThreads());
+        AbstractProtocol<?> protocol = (AbstractProtocol<?>) tomcat.getConnector().getProtocolHandler();
+        assertEquals("Accept count should be applied", 5, protocol.getAcceptCount());
+        assertEquals("Connection limit should be applied", 50, protocol.getMaxConnections());
+        assertEquals("Requests should be served", 200, get("/api/tasks/1", HttpClient.Version.HTTP_1_1, null).statusCode());
+    }
+
+    @Test
+    public void testVirtualThreads() throws Exception {
+        start("todo.threads", "virtual");
+        assertTrue("Virtual threads should be selected",
+                tomcat.getService().getExecutor("httpExecutor") instanceof StandardVirtualThreadExecutor);
+        assertEquals("Requests should be served on virtual threads", 200,
+                get("/api/tasks/1", HttpClient.Version.HTTP_1_1, null).statusCode());
+    }
+
+    @Test
+    public void testMaxKeepAliveRequests() throws Exception {
+        start("todo.maxKeepAliveRequests", "2");
+        try (Socket socket = new Socket("localhost", port())) {
+            OutputStream out = socket.getOutputStream();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+
+            // The connection is kept open after the first request and closed after the second
+            assertFalse("First response should keep the connection", sendAndCheckClose(out, in));
+            assertTrue("Second response should close the connection", sendAndCheckClose(out, in));
+        }
+    }
+
+    @Test
+    public void testCompression() throws Exception {
+        start("todo.compression", "true", "todo.compressionMinSize", "100");
+
+        // The listing is larger than the threshold, so it is gzipped
+        HttpResponse<byte[]> listing = getBytes("/api/tasks", "gzip");
+        assertEquals("Large JSON should be gzipped", "gzip", listing.headers().firstValue("Content-Encoding").orElse(null));
+        try (InputStream body = new GZIPInputStream(new ByteArrayInputStream(listing.body()))) {
+            JsonNode tasks = objectMapper.readTree(body);
+            assertEquals("Decompressed listing should contain the sample tasks", 3, tasks.size());
+        }
+
+        // Clients that do not accept gzip get plain JSON
+        HttpResponse<byte[]> plain = getBytes("/api/tasks", null);
+        assertFalse("Plain response should not be encoded", plain.headers().firstValue("Content-Encoding").isPresent());
+
+        // The precompressed UI is passed through rather than gzipped a second time
+        HttpResponse<byte[]> page = getBytes("/", "gzip");
+        assertEquals("UI should be encoded once", List.of("gzip"), page.headers().allValues("Content-Encoding"));
+        try (InputStream body = new GZIPInputStream(new ByteArrayInputStream(page.body()))) {
+            assertTrue("Decompressed UI should be HTML", new String(body.readAllBytes(), StandardCharsets.UTF_8).contains("<html"));
+        }
+    }
+
+    @Test
+    public void testCompressionThreshold() throws Exception {
+        start("todo.compression", "true", "todo.compressionMinSize", "100000");
+        HttpResponse<byte[]> listing = getBytes("/api/tasks", "gzip");
+        assertFalse("Responses below the threshold should not be gzipped", listing.headers().firstValue("Content-Encoding").isPresent());
+    }
+
+    @Test
+    public void testHttp2Upgrade() throws Exception {
+        start("todo.http2", "true");
+        HttpResponse<String> response = get("/api/tasks", HttpClient.Version.HTTP_2, null);
+        assertEquals("h2c upgrade should be accepted", HttpClient.Version.HTTP_2, response.version());
+        assertEquals("Listing should succeed over HTTP/2", 3, objectMapper.readTree(response.body()).size());
+    }
+
+    @Test
+    public void testHttp2DisabledByDefault() throws Exception {
+        start();
+        HttpResponse<String> response = get("/api/tasks", HttpClient.Version.HTTP_2, null);
+        assertEquals("Without HTTP/2 the upgrade should be ignored", HttpClient.Version.HTTP_1_1, response.version());
+    }
+
+    private void start(String... settings) throws Exception {
+        Map<String, String> arguments = new HashMap<>();
+        arguments.put(Main.PORT, "0");
+        arguments.put(Main.DATA_DIR, folder.newFolder().getPath());
+        arguments.put(Main.DURABILITY, "ASYNC");
+        for (int i = 0; i < settings.length; i += 2) {
+            arguments.put(settings[i], settings[i + 1]);
+        }
+        tomcat = Main.startServer(new ServerConfig(arguments, new Properties(), new HashMap<>()));
+    }
+
+    private int port() {
+        return tomcat.getConnector().getLocalPort();
+    }
+
+    private HttpResponse<String> get(String path, HttpClient.Version version, String acceptEncoding) throws Exception {
+        return HttpClient.newBuilder().version(version).build()
+                .send(request(path, acceptEncoding), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<byte[]> getBytes(String path, String acceptEncoding) throws Exception {
+        return HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build()
+                .send(request(path, acceptEncoding), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private HttpRequest request(String path, String acceptEncoding) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create("http://localhost:" + port() + path));
+        if (acceptEncoding != null) {
+            builder.header("Accept-Encoding", acceptEncoding);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Send one GET over a raw connection and read the response
+     * @return Whether the server announced that it closes the connection
+     */
+    private static boolean sendAndCheckClose(OutputStream out, BufferedReader in) throws IOException {
+        out.write("GET /api/tasks/1 HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        assertTrue("Request should succeed", in.readLine().startsWith("HTTP/1.1 200"));
+        boolean close = false;
+        int contentLength = 0;
+        String line;
+        while (!(line = in.readLine()).isEmpty()) {
+            String lower = line.toLowerCase(Locale.ROOT);
+            close |= lower.startsWith("connection:") && lower.contains("close");
+            if (lower.startsWith("content-length:")) {
+                contentLength = Integer.parseInt(line.substring(15).trim());
+            }
+        }
+        in.skip(contentLength);
+        return close;
+    }
+}
@@ -0,0 +1,186 @@
+package com.simpletomcat.todo;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for MappedTaskStore
+ */
+public class MappedTaskStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MappedTaskStore store;
+
+    @Before
+    public void setUp() {
+        store = new MappedTaskStore(folder.getRoot().toPath());
+    }
+
+    @Test
+    public void testPutAndGet() {
+        // Store a task far beyond the first slot chunk, with multi-byte text
+        store.put(new Task(200_000, "Café ☕", "Emoji 😀 and accents é"));
+
+        // Verify every field is decoded from the mapped records
+        Task task = store.get(200_000);
+        assertNotNull("Stored task should be found", task);
+        assertEquals("Id should match", 200_000, task.getId());
+        assertEquals("Title should round-trip", "Café ☕", task.getTitle());
+        assertEquals("Description should round-trip", "Emoji 😀 and accents é", task.getDescription());
+        assertFalse("Status should round-trip", task.isCompleted());
+        assertNull("Empty slot should return null", store.get(199_999));
+        assertNull("Out of range id should return null", store.get(5_000_000));
+        assertEquals("Size should count stored tasks", 1, store.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPutDuplicateId() {
+        store.put(new Task(1, "Title", "Description"));
+        store.put(new Task(1, "Other", "Other description"));
+    }
+
+    @Test
+    public void testReplace() {
+        store.put(new Task(1, "Title", "Description"));
+
+        // A status change rewrites the header over the same text
+        Task previous = store.replace(new Task(1, "Title", "Description", true, 2));
+        assertFalse("Replace should return the previous version", previous.isCompleted());
+        Task current = store.get(1);
+        assertTrue("New status should be stored", current.isCompleted());
+        assertEquals("Version should be stored", 2, current.getVersion());
+        assertEquals("Text should be kept", "Description", current.getDescription());
+
+        // Longer text moves to new space in the arena
+        store.replace(new Task(1, "Renamed", "New description", true, 3));
+        assertEquals("New title should be stored", "Renamed", store.get(1).getTitle());
+        assertNull("Replacing a missing id should do nothing", store.replace(new Task(2, "Missing", "Not stored")));
+        assertNull("Missing id should stay empty", store.get(2));
+    }
+
+    @Test
+    public void testRemove() {
+        store.put(new Task(2, "Title", "Description"));
+
+        // Verify removal empties the slot only once
+        assertEquals("Remove should return the stored task", "Title", store.remove(2).getTitle());
+        assertNull("Second remove should return null", store.remove(2));
+        assertNull("Removed task should not be found", store.get(2));
+        assertEquals("Size should drop to zero", 0, store.size());
+    }
+
+    @Test
+    public void testManyTasksSpanSegments() {
+        // Enough text to fill more than one 64 MB text segment
+        String description = "x".repeat(4_000);
+        int count = 20_000;
+        for (int id = 1; id <= count; id++) {
+            store.put(new Task(id, "Task " + id, description));
+        }
+
+        // Verify records on both sides of every segment boundary
+        List<Task> tasks = store.toList();
+        assertEquals("Every task should be listed", count, tasks.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals("Tasks should be listed in id order", i + 1, tasks.get(i).getId());
+            assertEquals("Title should survive segment changes", "Task " + (i + 1), tasks.get(i).getTitle());
+        }
+        assertEquals("Description should survive segment changes", description, store.get(count).getDescription());
+    }
+
+    @Test
+    public void testTaskManagerOnMappedStore() {
+        TaskManager taskManager = new TaskManager(null, store);
+        Task task = taskManager.addTask("Mapped", "Runs on the mapped store");
+        taskManager.updateTaskStatus(task.getId(), true);
+
+        assertTrue("Status change should be visible", taskManager.getTask(task.getId()).isCompleted());
+        assertEquals("Search should find the task", 1, taskManager.searchTasks("mapped", 10, null).size());
+        assertTrue("Delete should remove the task", taskManager.deleteTask(task.getId()));
+        assertEquals("Only the sample tasks should remain", 3, taskManager.getTaskCount());
+    }
+
+    @Test
+    public void testUpdatesReuseSpace() {
+        for (int id = 1; id <= 100; id++) {
+            store.put(new Task(id, "Task " + id, "Description " + id));
+        }
+        long allocated = store.getAllocatedBytes();
+
+        // Status toggles and text that fits the old space are written in place
+        for (int round = 1; round <= 49; round++) {
+            for (int id = 1; id <= 100; id++) {
+                store.replace(new Task(id, "Task " + id, round % 2 == 0 ? "Short" : "Description " + id,
+                        round % 2 == 0, round + 1));
+            }
+        }
+        assertEquals("In-place updates should not allocate", allocated, store.getAllocatedBytes());
+
+        // Deleted tasks free their header and text for new tasks of the same size
+        for (int id = 1; id <= 50; id++) {
+            store.remove(id);
+        }
+        for (int id = 101; id <= 150; id++) {
+            store.put(new Task(id, "Task " + id, "Description " + id));
+        }
+        assertEquals("New tasks should reuse freed records", allocated, store.getAllocatedBytes());
+        assertEquals("Reused records should hold the new task", "Description 150", store.get(150).getDescription());
+        assertEquals("Kept tasks should be intact", "Description 51", store.get(51).getDescription());
+
+        // Text that outgrows its space moves, and the next task of that size takes the old space
+        store.replace(new Task(51, "Task 51", "x".repeat(200), false, 60));
+        long grown = store.getAllocatedBytes();
+        store.put(new Task(151, "Task 151", "Description 151"));
+        assertEquals("Moved text should be reused, leaving only a new header", grown + MappedTaskStore.HEADER_BYTES,
+                store.getAllocatedBytes());
+        assertEquals("Moved text should be readable", "x".repeat(200), store.get(51).getDescription());
+    }
+
+    @Test
+    public void testReadersNeverSeeTornRecords() throws InterruptedException {
+        // Every version pairs the title with the description, so a torn read shows up as a mismatch
+        store.put(new Task(1, "v0", "v0 body"));
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                Task task = store.get(1);
+                if (task == null || !task.getDescription().startsWith(task.getTitle() + " ")) {
+                    failure.compareAndSet(null, task == null ? "missing" : task.getTitle() + " / " + task.getDescription());
+                }
+            }
+        });
+        reader.start();
+
+        // Alternate between in-place rewrites and moves to larger space
+        for (int version = 1; version <= 20_000; version++) {
+            String title = "v" + version;
+            String body = version % 3 == 0 ? title + " " + "y".repeat(1 + version % 100) : title + " body";
+            store.replace(new Task(1, title, body, version % 2 == 0, version + 1));
+        }
+        done.set(true);
+        reader.join();
+        assertNull("Readers should only see complete versions", failure.get());
+    }
+
+    @Test
+    public void testClose() {
+        store.put(new Task(1, "Title", "Description"));
+        store.close();
+
+        // The store is empty after closing and refuses new tasks
+        assertNull("Closed store should find nothing", store.get(1));
+        store.close();
+        assertThrows("Closed store should refuse new tasks", IllegalStateException.class,
+                () -> store.put(new Task(2, "Title", "Description")));
+    }
+}
@@ -0,0 +1,66 @@
+package com.simpletomcat.todo;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of recording request metrics: one histogram record, the start and finish of a request
+ * series, and a GET /{id} through service(), which records metrics, against calling doGet directly.
+ * Run with -t 4 to see the recording cost when threads share the same series.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class MetricsBenchmark {
+
+    private LatencyHistogram histogram;
+    private RequestMetrics requestMetrics;
+    private TODOService service;
+    private HttpServletRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        histogram = new LatencyHistogram();
+        requestMetrics = new RequestMetrics();
+        service = new TODOService(new TaskManager(), true);
+        request = ServletStubs.request("GET", "/1").build();
+    }
+
+    @Benchmark
+    public void record() {
+        histogram.record(ThreadLocalRandom.current().nextLong(1_000, 10_000_000));
+    }
+
+    @Benchmark
+    public void startFinish() {
+        long start = System.nanoTime();
+        requestMetrics.start("/1", "GET").finish(start, 200);
+    }
+
+    @Benchmark
+    public void getTaskUnmeasured() throws Exception {
+        service.doGet(request, ServletStubs.response().build());
+    }
+
+    @Benchmark
+    public void getTaskMeasured() throws Exception {
+        service.service(request, ServletStubs.response().build());
+    }
+}
@@ -0,0 +1,97 @@
+package com.simpletomcat.todo;
+
+import com.simpletomcat.todo.ServletStubs.StubResponse;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for MetricsServlet
+ */
+public class MetricsServletTest {
+
+    private TaskManager taskManager;
+    private TODOService service;
+    private MetricsServlet metrics;
+
+    @Before
+    public void setUp() {
+        taskManager = new TaskManager();
+        service = new TODOService(taskManager, true);
+        metrics = new MetricsServlet(taskManager, service, null);
+    }
+
+    @Test
+    public void testRequestsAreCountedByEndpointMethodAndStatus() throws Exception {
+        call("GET", null, null);
+        call("GET", "/1", null);
+        call("GET", "/99", null);
+        call("POST", null, "{\"title\":\"Metric\",\"description\":\"Counted\"}");
+        call("GET", "/stats", null);
+
+        String body = scrape();
+        assertTrue("Listing should be counted",
+                body.contains("todo_http_requests_total{endpoint=\"/api/tasks\",method=\"GET\",status=\"2xx\"} 1\n"));
+        assertTrue("Task read should be counted under the id template",
+                body.contains("todo_http_requests_total{endpoint=\"/api/tasks/{id}\",method=\"GET\",status=\"2xx\"} 1\n"));
+        assertTrue("Missing task should be counted as 4xx",
+                body.contains("todo_http_requests_total{endpoint=\"/api/tasks/{id}\",method=\"GET\",status=\"4xx\"} 1\n"));
+        assertTrue("Create should be counted",
+                body.contains("todo_http_requests_total{endpoint=\"/api/tasks\",method=\"POST\",status=\"2xx\"} 1\n"));
+        assertTrue("Finished requests should not be in flight",
+                body.contains("todo_http_requests_in_flight{endpoint=\"/api/tasks/stats\",method=\"GET\"} 0\n"));
+        assertFalse("Methods never used should not be reported", body.contains("method=\"DELETE\""));
+
+        // Each series is a complete cumulative histogram
+        assertTrue("Duration histogram should end with +Inf",
+                body.contains("todo_http_request_duration_seconds_bucket{endpoint=\"/api/tasks/{id}\",method=\"GET\",le=\"+Inf\"} 2\n"));
+        assertTrue("Duration count should match",
+                body.contains("todo_http_request_duration_seconds_count{endpoint=\"/api/tasks/{id}\",method=\"GET\"} 2\n"));
+    }
+
+    @Test
+    public void testLockAndStoreMetrics() throws Exception {
+        taskManager.updateTaskStatus(1, true);
+        taskManager.deleteTask(2);
+
+        // The three sample tasks plus two writes took a stripe lock five times
+        String body = scrape();
+        assertTrue("Lock waits should be counted", body.contains("todo_lock_wait_seconds_count 5\n"));
+        assertTrue("Lock holds should be counted", body.contains("todo_lock_hold_seconds_count 5\n"));
+        assertTrue("Pending tasks should be reported", body.contains("todo_tasks{status=\"pending\"} 1\n"));
+        assertTrue("Completed tasks should be reported", body.contains("todo_tasks{status=\"completed\"} 1\n"));
+        assertTrue("Store size should be reported", body.contains("todo_task_store_size 2\n"));
+        assertTrue("Every line should be a comment or a sample",
+                body.lines().allMatch(line -> line.startsWith("# ") || line.matches("[a-z_]+(\\{[^}]*\\})? [0-9.E+-]+")));
+    }
+
+    @Test
+    public void testResponseCacheMetrics() throws Exception {
+        call("GET", "/1", null);
+        call("GET", "/1", null);
+
+        // The first read serializes and caches the task, the second is served from the cache
+        String body = scrape();
+        assertTrue("Cache hits should be reported", body.contains("todo_response_cache_hits_total 1\n"));
+        assertTrue("Cache misses should be reported", body.contains("todo_response_cache_misses_total 1\n"));
+        assertTrue("Cache evictions should be reported", body.contains("todo_response_cache_evictions_total 0\n"));
+        assertTrue("Cache size should be reported", body.contains("todo_response_cache_entries 1\n"));
+    }
+
+    private String scrape() throws Exception {
+        StubResponse resp = ServletStubs.response();
+        metrics.doGet(ServletStubs.request("GET", null).build(), resp.build());
+        assertEquals("Scrape should succeed", 200, resp.getStatus());
+        assertEquals("Scrape should use the Prometheus text format", MetricsServlet.CONTENT_TYPE, resp.getContentType());
+        return resp.getBody();
+    }
+
+    private void call(String method, String pathInfo, String body) throws Exception {
+        ServletStubs.StubRequest req = ServletStubs.request(method, pathInfo);
+        if (body != null) {
+            req.body(body);
+        }
+        service.service(req.build(), ServletStubs.response().build());
+    }
+}
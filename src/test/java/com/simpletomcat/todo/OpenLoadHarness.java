@@ -0,0 +1,316 @@
+package com.simpletomcat.todo;
+
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.startup.Tomcat;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Open-model load test of the real server with a mix of API requests.
+ * Unless a port is given it starts Main's server on an ephemeral port with a fresh data
+ * directory, seeds it through the bulk endpoint and tears it down afterwards, so it needs
+ * nothing but this machine. Requests are scheduled at a fixed rate whatever the server does:
+ * each is sent from its own virtual thread through java.net.http.HttpClient, and its latency is
+ * measured from the time it was scheduled to start rather than the time it was sent, so a
+ * server that stalls is charged for the requests that queued up behind the stall
+ * (coordinated-omission correction). The time from send to response is reported alongside.
+ * The operation sequence comes from a seeded random generator, so runs are repeatable.
+ * Server settings such as -Dtodo.threads=virtual or -Dtodo.durability=SYNC apply to the
+ * embedded server as usual.
+ * Usage: java -cp target/test-classes:target/classes:... com.simpletomcat.todo.OpenLoadHarness
+ * [rate=1000] [seconds=30] [warmupSeconds=5] [tasks=1000] [seed=42]
+ * [mix=list:5,get:60,post:15,put:15,delete:5] [host=localhost] [port=0]
+ */
+public final class OpenLoadHarness {
+    private static final String DEFAULT_MIX = "list:5,get:60,post:15,put:15,delete:5";
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    /**
+     * Kinds of request in the mix
+     */
+    private enum Operation {
+        LIST,
+        GET,
+        POST,
+        PUT,
+        DELETE
+    }
+
+    private final HttpClient client;
+    private final URI base;
+    private final int[] weights;
+    private final int totalWeight;
+    private final LatencyHistogram[] corrected;
+    private final LatencyHistogram[] service;
+    private final AtomicLong[] notFound;
+    private final AtomicLong errors;
+    private final AtomicLong inFlight;
+
+    private OpenLoadHarness(HttpClient client, URI base, int[] weights) {
+        this.client = client;
+        this.base = base;
+        this.weights = weights;
+        int sum = 0;
+        for (int weight : weights) {
+            sum += weight;
+        }
+        this.totalWeight = sum;
+        int operations = Operation.values().length;
+        this.corrected = new LatencyHistogram[operations];
+        this.service = new LatencyHistogram[operations];
+        this.notFound = new AtomicLong[operations];
+        for (int i = 0; i < operations; i++) {
+            corrected[i] = new LatencyHistogram();
+            service[i] = new LatencyHistogram();
+            notFound[i] = new AtomicLong();
+        }
+        this.errors = new AtomicLong();
+        this.inFlight = new AtomicLong();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals < 0) {
+                throw new IllegalArgumentException("Expected key=value but got " + arg);
+            }
+            options.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        int rate = Integer.parseInt(options.getOrDefault("rate", "1000"));
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "30"));
+        int warmupSeconds = Integer.parseInt(options.getOrDefault("warmupSeconds", "5"));
+        int tasks = Integer.parseInt(options.getOrDefault("tasks", "1000"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        int[] weights = parseMix(options.getOrDefault("mix", DEFAULT_MIX));
+        String host = options.getOrDefault("host", "localhost");
+        int port = Integer.parseInt(options.getOrDefault("port", "0"));
+
+        Tomcat tomcat = null;
+        Path dataDir = null;
+        if (port == 0) {
+            dataDir = Files.createTempDirectory("todo-load");
+            Map<String, String> settings = new HashMap<>();
+            settings.put(Main.PORT, "0");
+            settings.put(Main.DATA_DIR, dataDir.toString());
+            tomcat = Main.startServer(new ServerConfig(settings, System.getProperties(), System.getenv()));
+            port = tomcat.getConnector().getLocalPort();
+        }
+        try (ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(senders)
+                    .connectTimeout(REQUEST_TIMEOUT)
+                    .build();
+            OpenLoadHarness harness = new OpenLoadHarness(client, URI.create("http://" + host + ":" + port), weights);
+            int highestId = harness.seed(tasks);
+            harness.run(senders, new SplittableRandom(seed), highestId, rate, warmupSeconds, seconds);
+        } finally {
+            if (tomcat != null) {
+                stop(tomcat, dataDir);
+            }
+        }
+    }
+
+    /**
+     * Parse weights such as "get:80,put:20"; operations left out get no requests
+     */
+    private static int[] parseMix(String mix) {
+        int[] weights = new int[Operation.values().length];
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected operation:weight but got " + entry);
+            }
+            weights[Operation.valueOf(parts[0].trim().toUpperCase(Locale.ROOT)).ordinal()] = Integer.parseInt(parts[1].trim());
+        }
+        return weights;
+    }
+
+    /**
+     * Create the starting tasks with one bulk request
+     * @return The highest task id afterwards
+     */
+    private int seed(int tasks) throws IOException, InterruptedException {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < tasks; i++) {
+            body.append("{\"op\":\"create\",\"title\":\"Load task ").append(i)
+                    .append("\",\"description\":\"Seeded by the load harness\"}\n");
+        }
+        HttpResponse<String> response = client.send(request("/api/tasks/_bulk")
+                .header("Content-Type", "application/x-ndjson")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString())).build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Seeding failed with status " + response.statusCode());
+        }
+        // The sample tasks take the first ids
+        return tasks + 3;
+    }
+
+    private void run(ExecutorService senders, SplittableRandom random, int highestId, int rate,
+                     int warmupSeconds, int seconds) throws InterruptedException {
+        System.out.printf("Sending %d req/s to %s for %d s after %d s of warmup, mix %s%n",
+                rate, base, seconds, warmupSeconds, describeMix());
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(seconds);
+        long scheduled = 0;
+        long maxInFlight = 0;
+        int nextId = highestId;
+        for (long intended = start; intended < end; intended = start + ++scheduled * interval) {
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            // A late scheduler sends at once but keeps the intended time, so the delay is still counted
+            Operation operation = pick(random);
+            int id = operation == Operation.POST ? ++nextId : random.nextInt(1, nextId + 1);
+            boolean record = intended >= measureFrom;
+            long scheduledAt = intended;
+            maxInFlight = Math.max(maxInFlight, inFlight.incrementAndGet());
+            senders.execute(() -> send(operation, id, scheduledAt, record));
+        }
+
+        // Let the requests still in flight finish so they are counted
+        long deadline = System.nanoTime() + REQUEST_TIMEOUT.toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        double elapsed = (System.nanoTime() - measureFrom) / 1e9;
+        report(elapsed, rate, maxInFlight);
+    }
+
+    private Operation pick(SplittableRandom random) {
+        int ticket = random.nextInt(totalWeight);
+        for (Operation operation : Operation.values()) {
+            ticket -= weights[operation.ordinal()];
+            if (ticket < 0) {
+                return operation;
+            }
+        }
+        throw new IllegalStateException("Mix has no weight");
+    }
+
+    private void send(Operation operation, int id, long intended, boolean record) {
+        try {
+            HttpRequest request = switch (operation) {
+                case LIST -> request("/api/tasks?limit=100").GET().build();
+                case GET -> request("/api/tasks/" + id).GET().build();
+                case POST -> request("/api/tasks").header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(
+                                "{\"title\":\"Load task " + id + "\",\"description\":\"Posted by the load harness\"}")).build();
+                case PUT -> request("/api/tasks/" + id).header("Content-Type", "application/json")
+                        .PUT(HttpRequest.BodyPublishers.ofString("{\"completed\":" + (id % 2 == 0) + "}")).build();
+                case DELETE -> request("/api/tasks/" + id).DELETE().build();
+            };
+            long sent = System.nanoTime();
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            long done = System.nanoTime();
+            if (record) {
+                corrected[operation.ordinal()].record(done - intended);
+                service[operation.ordinal()].record(done - sent);
+                if (response.statusCode() == 404) {
+                    // Expected once the random ids hit deleted tasks
+                    notFound[operation.ordinal()].incrementAndGet();
+                } else if (response.statusCode() >= 300) {
+                    errors.incrementAndGet();
+                }
+            }
+        } catch (IOException e) {
+            if (record) {
+                errors.incrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(base.resolve(path)).timeout(REQUEST_TIMEOUT);
+    }
+
+    private String describeMix() {
+        StringBuilder mix = new StringBuilder();
+        for (Operation operation : Operation.values()) {
+            if (weights[operation.ordinal()] > 0) {
+                mix.append(mix.length() == 0 ? "" : ",").append(operation.name().toLowerCase(Locale.ROOT))
+                        .append(':').append(weights[operation.ordinal()]);
+            }
+        }
+        return mix.toString();
+    }
+
+    private void report(double elapsedSeconds, int rate, long maxInFlight) {
+        LatencyHistogram allCorrected = new LatencyHistogram();
+        LatencyHistogram allService = new LatencyHistogram();
+        long total = 0;
+        long totalNotFound = 0;
+        for (Operation operation : Operation.values()) {
+            total += corrected[operation.ordinal()].getCount();
+            totalNotFound += notFound[operation.ordinal()].get();
+        }
+        System.out.printf("Requests: %d in %.1f s, %.0f req/s of %d targeted, %d not found, %d errors, at most %d in flight%n",
+                total, elapsedSeconds, total / elapsedSeconds, rate, totalNotFound, errors.get(), maxInFlight);
+        System.out.printf("%-8s %9s  %-38s  %-38s%n", "", "count", "latency from schedule p50/p99/p99.9/max",
+                "service time p50/p99/p99.9/max");
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram latency = corrected[operation.ordinal()];
+            if (latency.getCount() > 0) {
+                printRow(operation.name().toLowerCase(Locale.ROOT), latency, service[operation.ordinal()]);
+            }
+        }
+        for (Operation operation : Operation.values()) {
+            allCorrected.add(corrected[operation.ordinal()]);
+            allService.add(service[operation.ordinal()]);
+        }
+        printRow("all", allCorrected, allService);
+    }
+
+    private static void printRow(String name, LatencyHistogram latency, LatencyHistogram serviceTime) {
+        System.out.printf("%-8s %9d  %-38s  %-38s%n", name, latency.getCount(), percentiles(latency), percentiles(serviceTime));
+    }
+
+    private static String percentiles(LatencyHistogram histogram) {
+        return String.format("%s / %s / %s / %s", millis(histogram.valueAtQuantile(0.5)), millis(histogram.valueAtQuantile(0.99)),
+                millis(histogram.valueAtQuantile(0.999)), millis(histogram.valueAtQuantile(1.0)));
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.2f ms", nanos / 1e6);
+    }
+
+    private static void stop(Tomcat tomcat, Path dataDir) throws LifecycleException, IOException {
+        tomcat.stop();
+        tomcat.destroy();
+        try (Stream<Path> paths = Files.walk(dataDir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.simpletomcat.todo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Time to restart a TaskManager from its log: replaying every change from the log
+ * against loading a snapshot written by a checkpoint. Each task in the log was added
+ * and then completed, so the log holds two records per task.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx3g")
+public class RecoveryBenchmark {
+
+    @Param({"1000000"})
+    private int size;
+
+    @Param({"true", "false"})
+    private boolean snapshot;
+
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("recovery-benchmark");
+        try (FileTaskLog log = new FileTaskLog(directory, FileTaskLog.Durability.ASYNC)) {
+            TaskManager taskManager = new TaskManager(log);
+            for (int i = 0; i < size; i++) {
+                Task task = taskManager.addTask("Task " + i, "Description of task " + i);
+                taskManager.updateTaskStatus(task.getId(), true);
+            }
+            if (snapshot) {
+                taskManager.checkpoint();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public int restart() throws IOException {
+        try (FileTaskLog log = new FileTaskLog(directory, FileTaskLog.Durability.ASYNC)) {
+            return new TaskManager(log).getTaskCount();
+        }
+    }
+}
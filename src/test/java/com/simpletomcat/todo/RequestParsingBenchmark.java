@@ -0,0 +1,64 @@
+package com.simpletomcat.todo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Request body parsing before and after streaming straight from the input stream.
+ * Run with -prof gc to compare gc.alloc.rate.norm, the bytes allocated per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestParsingBenchmark {
+
+    private static final String BODY = "{\"title\":\"Write the quarterly report\","
+            + "\"description\":\"Collect the numbers from every team and summarize them for the review\","
+            + "\"completed\":false}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private TODOService service;
+    private HttpServletRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        service = new TODOService(new TaskManager(), true);
+        request = ServletStubs.request("POST", null).body(BODY).build();
+    }
+
+    /**
+     * The original path: join the body lines into a String, then parse it.
+     * The original parsed into a Task; Task is immutable now, so both paths bind a TaskRequest.
+     */
+    @Benchmark
+    public TaskRequest joinedString() throws IOException {
+        String body;
+        try (BufferedReader reader = request.getReader()) {
+            body = reader.lines().collect(Collectors.joining(System.lineSeparator()));
+        }
+        return objectMapper.readValue(body, TaskRequest.class);
+    }
+
+    @Benchmark
+    public TaskRequest streamed() throws IOException {
+        return service.readTaskRequest(request);
+    }
+}
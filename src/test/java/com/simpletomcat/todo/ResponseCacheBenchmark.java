@@ -0,0 +1,76 @@
+package com.simpletomcat.todo;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution of read-heavy traffic through TODOService with and without the JSON response cache.
+ * Sample mode reports percentiles, including p0.99, for each configuration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseCacheBenchmark {
+
+    @Param({"true", "false"})
+    private boolean cacheResponses;
+
+    @Param({"1000"})
+    private int size;
+
+    private TODOService service;
+    private HttpServletRequest listRequest;
+    private HttpServletRequest[] taskRequests;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        TaskManager taskManager = new TaskManager();
+        for (int i = 0; i < size; i++) {
+            taskManager.addTask("Task " + i, "Description of task " + i);
+        }
+        service = new TODOService(taskManager, cacheResponses);
+        listRequest = ServletStubs.request("GET", null).build();
+        taskRequests = new HttpServletRequest[taskManager.getTaskCount()];
+        for (int i = 0; i < taskRequests.length; i++) {
+            taskRequests[i] = ServletStubs.request("GET", "/" + (i + 1)).build();
+        }
+    }
+
+    /**
+     * 90% single-task reads, 9% listings and 1% status updates
+     */
+    @Benchmark
+    public int readHeavy() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int roll = random.nextInt(100);
+        ServletStubs.StubResponse resp = ServletStubs.response();
+        if (roll < 90) {
+            service.doGet(taskRequests[random.nextInt(taskRequests.length)], resp.build());
+        } else if (roll < 99) {
+            service.doGet(listRequest, resp.build());
+        } else {
+            int id = random.nextInt(1, taskRequests.length + 1);
+            HttpServletRequest update = ServletStubs.request("PUT", "/" + id)
+                    .body("{\"completed\":" + random.nextBoolean() + "}")
+                    .build();
+            service.doPut(update, resp.build());
+        }
+        return resp.getStatus();
+    }
+}
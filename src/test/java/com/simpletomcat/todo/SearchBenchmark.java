@@ -0,0 +1,87 @@
+package com.simpletomcat.todo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full-text query latency over a large generated task set.
+ * Words are drawn from a skewed vocabulary so common terms have long postings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx3g")
+public class SearchBenchmark {
+
+    private static final int VOCABULARY = 50_000;
+    private static final int LIMIT = 20;
+
+    @Param({"1000000"})
+    private int size;
+
+    private TaskManager taskManager;
+    private String[] words;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        words = new String[VOCABULARY];
+        for (int i = 0; i < VOCABULARY; i++) {
+            StringBuilder word = new StringBuilder();
+            for (int length = 4 + random.nextInt(6); word.length() < length; ) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            words[i] = word.toString();
+        }
+        taskManager = new TaskManager();
+        for (int i = 0; i < size; i++) {
+            taskManager.addTask(sentence(random, 4), sentence(random, 10));
+        }
+    }
+
+    @Benchmark
+    public List<Task> singleTerm() {
+        return taskManager.searchTasks(randomWord(), LIMIT, null);
+    }
+
+    @Benchmark
+    public List<Task> twoTerms() {
+        return taskManager.searchTasks(randomWord() + " " + randomWord(), LIMIT, null);
+    }
+
+    @Benchmark
+    public List<Task> prefix() {
+        String word = randomWord();
+        return taskManager.searchTasks(word.substring(0, 3), LIMIT, null);
+    }
+
+    private String sentence(Random random, int length) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            // Squaring the uniform draw skews choices toward the start of the vocabulary
+            double skewed = random.nextDouble() * random.nextDouble();
+            sentence.append(words[(int) (skewed * VOCABULARY)]).append(' ');
+        }
+        return sentence.toString();
+    }
+
+    private String randomWord() {
+        return words[ThreadLocalRandom.current().nextInt(VOCABULARY)];
+    }
+}
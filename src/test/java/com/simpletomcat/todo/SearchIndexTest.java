@@ -0,0 +1,117 @@
+package com.simpletomcat.todo;
+
+import org.junit.Before;
+import org.junit.Test;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for SearchIndex
+ */
+public class SearchIndexTest {
+
+    private SearchIndex index;
+
+    @Before
+    public void setUp() {
+        index = new SearchIndex();
+        index.add(new Task(1, "Buy groceries", "Milk, eggs and bread"));
+        index.add(new Task(2, "Bake bread", "Use the new oven"));
+        index.add(new Task(3, "Clean kitchen", "Wipe the oven and buy soap"));
+    }
+
+    @Test
+    public void testTokenize() {
+        assertEquals("Text should split on punctuation and lower-case",
+                Set.of("milk", "eggs", "and", "bread", "2x"), SearchIndex.tokenize("Milk, EGGS and bread! 2x"));
+        assertTrue("Null text should have no terms", SearchIndex.tokenize(null).isEmpty());
+    }
+
+    @Test
+    public void testTitleMatchesRankFirst() {
+        // "bread" is in the title of task 2 and the description of task 1
+        assertArrayEquals("Title match should outrank description match", new int[] {2, 1}, index.search("bread", 10));
+        assertArrayEquals("Limit should cut the ranked results", new int[] {2}, index.search("bread", 1));
+    }
+
+    @Test
+    public void testAllTermsMustMatch() {
+        assertArrayEquals("Only task 3 mentions both terms", new int[] {3}, index.search("oven soap", 10));
+        assertArrayEquals("Unknown term should match nothing", new int[0], index.search("oven piano", 10));
+    }
+
+    @Test
+    public void testReplace() {
+        // Task 2 loses "bread" and "oven" and gains "cake"; its other terms stay
+        index.replace(new Task(2, "Bake bread", "Use the new oven"), new Task(2, "Bake cake", "Use the new mixer"));
+        assertArrayEquals("Removed title term should no longer match", new int[] {1}, index.search("bread", 10));
+        assertArrayEquals("Removed description term should no longer match", new int[] {3}, index.search("oven", 10));
+        assertArrayEquals("New terms should match", new int[] {2}, index.search("cake mixer", 10));
+        assertArrayEquals("Unchanged terms should still match", new int[] {2}, index.search("bake", 10));
+    }
+
+    @Test
+    public void testPrefixMatching() {
+        // "groc" completes to groceries, "ov" to oven
+        assertArrayEquals("Prefix should match the start of a word", new int[] {1}, index.search("groc", 10));
+        assertArrayEquals("Exact and prefix matches should rank by weight", new int[] {2, 3}, index.search("ov", 10));
+    }
+
+    @Test
+    public void testRemove() {
+        index.remove(new Task(2, "Bake bread", "Use the new oven"));
+
+        // Verify the removed task no longer matches any of its terms
+        assertArrayEquals("Removed task should not match", new int[] {1}, index.search("bread", 10));
+        assertArrayEquals("Removed-only terms should match nothing", new int[0], index.search("bake", 10));
+    }
+
+    @Test
+    public void testRemovedIdsAreCompacted() {
+        // Enough removals to tombstone and then compact most of the "note" postings
+        for (int id = 10; id < 110; id++) {
+            index.add(new Task(id, "Note " + id, "Filler"));
+        }
+        for (int id = 10; id < 100; id++) {
+            index.remove(new Task(id, "Note " + id, "Filler"));
+        }
+        assertEquals("Only the remaining notes should match", 10, index.search("note", 100).length);
+
+        // A removed id can be indexed again, and older ids slot back into order
+        index.add(new Task(50, "Note 50", "Filler"));
+        index.add(new Task(105, "Note again", "Filler"));
+        int[] matches = index.search("note", 100);
+        assertEquals("Re-added note should match", 11, matches.length);
+        assertArrayEquals("Re-added title term should match", new int[] {105}, index.search("again", 10));
+        assertArrayEquals("Unrelated tasks should be untouched", new int[] {2, 1}, index.search("bread", 10));
+    }
+
+    @Test
+    public void testConcurrentWriters() throws Exception {
+        // Writers add and remove their own ids under shared terms while a reader queries
+        int writers = 4;
+        int perWriter = 2_000;
+        Thread[] threads = new Thread[writers];
+        for (int w = 0; w < writers; w++) {
+            int first = 1_000 + w * perWriter;
+            threads[w] = new Thread(() -> {
+                for (int id = first; id < first + perWriter; id++) {
+                    index.add(new Task(id, "Shared task " + id, "Common words"));
+                    if (id % 2 == 0) {
+                        index.remove(new Task(id, "Shared task " + id, "Common words"));
+                    }
+                }
+            });
+            threads[w].start();
+        }
+        for (int i = 0; i < 200; i++) {
+            index.search("shared comm", 10);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals("Every odd id should remain indexed", writers * perWriter / 2,
+                index.search("shared common", Integer.MAX_VALUE).length);
+    }
+}
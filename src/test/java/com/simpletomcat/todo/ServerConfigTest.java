@@ -0,0 +1,80 @@
+package com.simpletomcat.todo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for ServerConfig
+ */
+public class ServerConfigTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSourcePrecedence() throws Exception {
+        Path file = folder.newFile("server.properties").toPath();
+        Files.write(file, ("todo.maxThreads=10\ntodo.acceptCount=20\ntodo.protocol=nio2\ntodo.port=1000\n")
+                .getBytes(StandardCharsets.UTF_8));
+        Map<String, String> arguments = ServerConfig.parseArguments(new String[] {"--maxThreads=40", "--todo.config=" + file});
+        Properties systemProperties = new Properties();
+        systemProperties.setProperty("todo.maxThreads", "30");
+        systemProperties.setProperty("todo.acceptCount", "30");
+        Map<String, String> environment = new HashMap<>();
+        environment.put("TODO_MAXTHREADS", "20");
+        environment.put("TODO_ACCEPTCOUNT", "20");
+        environment.put("TODO_PROTOCOL", "nio");
+
+        // Each source overrides the ones after it
+        ServerConfig config = new ServerConfig(arguments, systemProperties, environment);
+        assertEquals("Command line should win", 40, config.getInt("todo.maxThreads", 1));
+        assertEquals("System property should beat environment and file", 30, config.getInt("todo.acceptCount", 1));
+        assertEquals("Environment should beat the file", "nio", config.getString("todo.protocol", "x"));
+        assertEquals("File should beat the default", 1000, config.getInt("todo.port", 1));
+        assertEquals("Default should apply when nothing sets it", 7, config.getInt("todo.maxConnections", 7));
+    }
+
+    @Test
+    public void testValuesAreTrimmed() {
+        Properties systemProperties = new Properties();
+        systemProperties.setProperty("todo.http2", " true ");
+        ServerConfig config = new ServerConfig(new HashMap<>(), systemProperties, new HashMap<>());
+        assertTrue("Surrounding whitespace should be ignored", config.getBoolean("todo.http2", false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidNumberIsRejected() {
+        Properties systemProperties = new Properties();
+        systemProperties.setProperty("todo.maxThreads", "many");
+        new ServerConfig(new HashMap<>(), systemProperties, new HashMap<>()).getInt("todo.maxThreads", 1);
+    }
+
+    @Test
+    public void testNegativeNumberIsRejected() {
+        Map<String, String> arguments = new HashMap<>();
+        arguments.put("todo.snapshotIntervalSeconds", "0");
+        assertEquals("Zero should be accepted", 0,
+                new ServerConfig(arguments, new Properties(), new HashMap<>()).getNonNegativeInt("todo.snapshotIntervalSeconds", 300));
+
+        // A negative value fails at startup with the setting named
+        arguments.put("todo.snapshotIntervalSeconds", "-5");
+        ServerConfig config = new ServerConfig(arguments, new Properties(), new HashMap<>());
+        IllegalArgumentException e = assertThrows("Negative value should be rejected", IllegalArgumentException.class,
+                () -> config.getNonNegativeInt("todo.snapshotIntervalSeconds", 300));
+        assertTrue("Error should name the setting", e.getMessage().contains("todo.snapshotIntervalSeconds"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedArgumentIsRejected() {
+        ServerConfig.parseArguments(new String[] {"maxThreads=4"});
+    }
+}
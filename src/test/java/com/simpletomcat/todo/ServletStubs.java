@@ -0,0 +1,301 @@
+package com.simpletomcat.todo;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Minimal in-memory servlet request and response for exercising the servlets without a container.
+ * Only the methods the servlets use are implemented; everything else returns a default value.
+ */
+final class ServletStubs {
+
+    private ServletStubs() {
+        // Utility class should not be instantiated
+    }
+
+    static StubRequest request(String method, String pathInfo) {
+        return new StubRequest(method, pathInfo);
+    }
+
+    static StubResponse response() {
+        return new StubResponse();
+    }
+
+    /**
+     * Request with a method, path info, headers, query parameters and an optional body
+     */
+    static final class StubRequest {
+        private final String method;
+        private final String pathInfo;
+        private final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        private final Map<String, String> parameters = new HashMap<>();
+        private final Map<String, Object> attributes = new HashMap<>();
+        private byte[] body = new byte[0];
+
+        private StubRequest(String method, String pathInfo) {
+            this.method = method;
+            this.pathInfo = pathInfo;
+        }
+
+        StubRequest header(String name, String value) {
+            headers.put(name, value);
+            return this;
+        }
+
+        StubRequest parameter(String name, String value) {
+            parameters.put(name, value);
+            return this;
+        }
+
+        StubRequest body(String json) {
+            this.body = json.getBytes(StandardCharsets.UTF_8);
+            return this;
+        }
+
+        HttpServletRequest build() {
+            return (HttpServletRequest) Proxy.newProxyInstance(
+                    ServletStubs.class.getClassLoader(),
+                    new Class<?>[] {HttpServletRequest.class},
+                    (proxy, m, args) -> switch (m.getName()) {
+                        case "getMethod" -> method;
+                        case "getPathInfo" -> pathInfo;
+                        case "getServletPath" -> "";
+                        case "getRequestURI" -> "/api/tasks" + (pathInfo == null ? "" : pathInfo);
+                        case "getProtocol" -> "HTTP/1.1";
+                        case "getHeader" -> headers.get((String) args[0]);
+                        case "getHeaders" -> headers.containsKey((String) args[0])
+                                ? Collections.enumeration(Collections.singletonList(headers.get((String) args[0])))
+                                : Collections.emptyEnumeration();
+                        case "getHeaderNames" -> Collections.enumeration(headers.keySet());
+                        case "getContentType" -> headers.get("Content-Type");
+                        case "getCharacterEncoding" -> StandardCharsets.UTF_8.name();
+                        case "getContentLength" -> body.length;
+                        case "getContentLengthLong" -> (long) body.length;
+                        case "getParameter" -> parameters.get((String) args[0]);
+                        case "getAttribute" -> attributes.get((String) args[0]);
+                        case "setAttribute" -> attributes.put((String) args[0], args[1]);
+                        case "getInputStream" -> new StubInputStream(body);
+                        case "getReader" -> new BufferedReader(new InputStreamReader(
+                                new ByteArrayInputStream(body), StandardCharsets.UTF_8));
+                        default -> defaultValue(m.getReturnType());
+                    });
+        }
+    }
+
+    /**
+     * Response that records the status, headers and body written by the servlet
+     */
+    static final class StubResponse {
+        private final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private int status = HttpServletResponse.SC_OK;
+        private String contentType;
+        private PrintWriter writer;
+        private boolean outputStreamUsed;
+        private int bufferSize = Integer.MAX_VALUE;
+
+        HttpServletResponse build() {
+            return (HttpServletResponse) Proxy.newProxyInstance(
+                    ServletStubs.class.getClassLoader(),
+                    new Class<?>[] {HttpServletResponse.class},
+                    (proxy, m, args) -> switch (m.getName()) {
+                        case "setStatus" -> {
+                            status = (Integer) args[0];
+                            yield null;
+                        }
+                        case "sendError" -> {
+                            status = (Integer) args[0];
+                            yield null;
+                        }
+                        case "getStatus" -> status;
+                        case "setContentType" -> {
+                            contentType = (String) args[0];
+                            yield null;
+                        }
+                        case "getContentType" -> contentType;
+                        case "setHeader", "addHeader" -> {
+                            headers.put((String) args[0], (String) args[1]);
+                            yield null;
+                        }
+                        case "setIntHeader", "addIntHeader" -> {
+                            headers.put((String) args[0], String.valueOf(args[1]));
+                            yield null;
+                        }
+                        case "setContentLength", "setContentLengthLong" -> {
+                            headers.put("Content-Length", String.valueOf(args[0]));
+                            yield null;
+                        }
+                        case "getHeader" -> headers.get((String) args[0]);
+                        case "containsHeader" -> headers.containsKey((String) args[0]);
+                        case "getCharacterEncoding" -> StandardCharsets.UTF_8.name();
+                        case "getOutputStream" -> {
+                            // Like a container, a response hands out either its stream or its writer
+                            if (writer != null) {
+                                throw new IllegalStateException("getWriter() has already been called");
+                            }
+                            outputStreamUsed = true;
+                            yield new StubOutputStream(body);
+                        }
+                        case "getWriter" -> {
+                            if (outputStreamUsed) {
+                                throw new IllegalStateException("getOutputStream() has already been called");
+                            }
+                            yield writer();
+                        }
+                        case "isCommitted" -> body.size() > bufferSize;
+                        case "resetBuffer" -> {
+                            if (body.size() > bufferSize) {
+                                throw new IllegalStateException("Response is already committed");
+                            }
+                            body.reset();
+                            yield null;
+                        }
+                        case "flushBuffer" -> {
+                            if (writer != null) {
+                                writer.flush();
+                            }
+                            yield null;
+                        }
+                        default -> defaultValue(m.getReturnType());
+                    });
+        }
+
+        /**
+         * Treat the response as committed once more than this many body bytes are written
+         */
+        StubResponse bufferSize(int bytes) {
+            this.bufferSize = bytes;
+            return this;
+        }
+
+        int getStatus() {
+            return status;
+        }
+
+        String getContentType() {
+            return contentType;
+        }
+
+        String getHeader(String name) {
+            return headers.get(name);
+        }
+
+        byte[] getBodyBytes() {
+            if (writer != null) {
+                writer.flush();
+            }
+            return body.toByteArray();
+        }
+
+        String getBody() {
+            return new String(getBodyBytes(), StandardCharsets.UTF_8);
+        }
+
+        void reset() {
+            getBodyBytes();
+            body.reset();
+            headers.clear();
+            status = HttpServletResponse.SC_OK;
+            contentType = null;
+            writer = null;
+            outputStreamUsed = false;
+        }
+
+        private PrintWriter writer() {
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8));
+            }
+            return writer;
+        }
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+
+    private static final class StubInputStream extends ServletInputStream {
+        private final ByteArrayInputStream in;
+
+        private StubInputStream(byte[] body) {
+            this.in = new ByteArrayInputStream(body);
+        }
+
+        @Override
+        public int read() {
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            return in.read(b, off, len);
+        }
+
+        @Override
+        public boolean isFinished() {
+            return in.available() == 0;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class StubOutputStream extends ServletOutputStream {
+        private final ByteArrayOutputStream out;
+
+        private StubOutputStream(ByteArrayOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) {
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.simpletomcat.todo;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.servlets.DefaultServlet;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.util.modeler.Registry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Requests per second for the UI page served by StaticContentServlet from precompressed memory
+ * against Tomcat's DefaultServlet reading the same file from a docBase, with the connector
+ * gzipping its responses on the fly. Each benchmark thread sends GETs back to back over its
+ * own keep-alive connection.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class StaticContentBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Server {
+        @Param({"memory", "default"})
+        private String servlet;
+
+        private Tomcat tomcat;
+        private Path docBase;
+
+        @Setup(Level.Trial)
+        public void start() throws Exception {
+            Registry.disableRegistry();
+            docBase = Files.createTempDirectory("static-benchmark");
+            try (InputStream in = StaticContentBenchmark.class.getClassLoader().getResourceAsStream("static/index.html")) {
+                Files.write(docBase.resolve("index.html"), in.readAllBytes());
+            }
+            tomcat = new Tomcat();
+            tomcat.setBaseDir(docBase.resolve("tomcat").toString());
+            Connector connector = new Connector();
+            connector.setPort(0);
+            connector.setProperty("maxKeepAliveRequests", "-1");
+            // Only affects DefaultServlet; StaticContentServlet sets Content-Encoding itself
+            connector.setProperty("compression", "on");
+            connector.setProperty("compressionMinSize", "256");
+            tomcat.setConnector(connector);
+            Context context = tomcat.addContext("", docBase.toString());
+            if (servlet.equals("memory")) {
+                Tomcat.addServlet(context, "static", new StaticContentServlet("static", 3600, "index.html"));
+            } else {
+                Tomcat.addServlet(context, "static", new DefaultServlet());
+                context.addMimeMapping("html", "text/html");
+            }
+            context.addServletMappingDecoded("/", "static");
+            tomcat.start();
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() throws Exception {
+            tomcat.stop();
+            tomcat.destroy();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        @Param({"identity", "gzip"})
+        private String encoding;
+
+        private Socket socket;
+        private OutputStream out;
+        private InputStream in;
+        private byte[] request;
+
+        @Setup(Level.Trial)
+        public void connect(Server server) throws IOException {
+            socket = new Socket("localhost", server.tomcat.getConnector().getLocalPort());
+            socket.setTcpNoDelay(true);
+            out = socket.getOutputStream();
+            in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+            request = ("GET /index.html HTTP/1.1\r\nHost: localhost\r\nAccept-Encoding: " + encoding + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    @Benchmark
+    public long get(Client client) throws IOException {
+        client.out.write(client.request);
+        client.out.flush();
+        return readResponse(client.in);
+    }
+
+    /**
+     * Read one response, skipping its body
+     * @return Number of body bytes
+     */
+    private static long readResponse(InputStream in) throws IOException {
+        String statusLine = readLine(in);
+        if (!statusLine.startsWith("HTTP/1.1 200")) {
+            throw new IOException("Unexpected response: " + statusLine);
+        }
+        long contentLength = 0;
+        boolean chunked = false;
+        String line;
+        while (!(line = readLine(in)).isEmpty()) {
+            String lower = line.toLowerCase(Locale.ROOT);
+            if (lower.startsWith("content-length:")) {
+                contentLength = Long.parseLong(line.substring(15).trim());
+            } else if (lower.startsWith("transfer-encoding:") && lower.contains("chunked")) {
+                chunked = true;
+            }
+        }
+        if (!chunked) {
+            skipFully(in, contentLength);
+            return contentLength;
+        }
+        long total = 0;
+        long size;
+        while ((size = Long.parseLong(readLine(in).trim(), 16)) > 0) {
+            skipFully(in, size);
+            readLine(in);
+            total += size;
+        }
+        readLine(in);
+        return total;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                throw new IOException("Connection closed by the server");
+            }
+            if (b != '\r') {
+                line.append((char) b);
+            }
+        }
+        return line.toString();
+    }
+
+    private static void skipFully(InputStream in, long bytes) throws IOException {
+        while (bytes > 0) {
+            long skipped = in.skip(bytes);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new IOException("Connection closed by the server");
+                }
+                skipped = 1;
+            }
+            bytes -= skipped;
+        }
+    }
+}
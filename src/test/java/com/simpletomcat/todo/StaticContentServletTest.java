@@ -0,0 +1,126 @@
+package com.simpletomcat.todo;
+
+import com.simpletomcat.todo.ServletStubs.StubResponse;
+import org.junit.Test;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for StaticContentServlet
+ */
+public class StaticContentServletTest {
+
+    private final StaticContentServlet servlet = new StaticContentServlet("static", 600, "index.html");
+
+    @Test
+    public void testWelcomeFile() throws Exception {
+        StubResponse root = get("/", null);
+        StubResponse index = get("/index.html", null);
+
+        // The root path serves index.html from memory
+        assertEquals("Root should be served", 200, root.getStatus());
+        assertTrue("Root should be HTML", root.getContentType().startsWith("text/html"));
+        assertTrue("Root should contain the page", new String(root.getBodyBytes(), StandardCharsets.UTF_8).contains("<html"));
+        assertArrayEquals("Root and index.html should be the same file", root.getBodyBytes(), index.getBodyBytes());
+        assertEquals("Both paths should share an ETag", root.getHeader("ETag"), index.getHeader("ETag"));
+        assertNull("Identity should not be labelled", root.getHeader("Content-Encoding"));
+    }
+
+    @Test
+    public void testCachingHeaders() throws Exception {
+        StubResponse resp = get("/", "gzip");
+        assertEquals("Browsers may cache for the configured max age", "public, max-age=600", resp.getHeader("Cache-Control"));
+        assertEquals("Caches should key on the encoding", "Accept-Encoding", resp.getHeader("Vary"));
+        assertTrue("ETag should be strong", resp.getHeader("ETag").startsWith("\""));
+    }
+
+    @Test
+    public void testGzipVariant() throws Exception {
+        byte[] plain = get("/", null).getBodyBytes();
+        StubResponse resp = get("/", "gzip, deflate, br");
+
+        // Gzip wins over deflate when both are accepted equally
+        assertEquals("Gzip should be preferred", "gzip", resp.getHeader("Content-Encoding"));
+        assertTrue("Gzip should be smaller", resp.getBodyBytes().length < plain.length);
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(resp.getBodyBytes()))) {
+            assertArrayEquals("Gzip should decompress to the file", plain, in.readAllBytes());
+        }
+    }
+
+    @Test
+    public void testDeflateVariant() throws Exception {
+        byte[] plain = get("/", null).getBodyBytes();
+        StubResponse resp = get("/", "gzip;q=0.5, deflate");
+        assertEquals("The higher quality should win", "deflate", resp.getHeader("Content-Encoding"));
+        try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(resp.getBodyBytes()))) {
+            assertArrayEquals("Deflate should decompress to the file", plain, in.readAllBytes());
+        }
+    }
+
+    @Test
+    public void testRefusedEncodings() throws Exception {
+        assertNull("q=0 should refuse gzip", get("/", "gzip;q=0").getHeader("Content-Encoding"));
+        assertNull("Unknown encodings should fall back to identity", get("/", "br").getHeader("Content-Encoding"));
+        assertEquals("A wildcard should accept gzip", "gzip", get("/", "*").getHeader("Content-Encoding"));
+
+        // Refusing identity too still returns the file rather than an error
+        StubResponse resp = get("/", "identity;q=0");
+        assertEquals("File should still be served", 200, resp.getStatus());
+    }
+
+    @Test
+    public void testQuality() {
+        assertEquals("Identity is acceptable without a header", 1.0, StaticContentServlet.quality(null, "identity"), 0);
+        assertEquals("Gzip needs to be listed", 0.0, StaticContentServlet.quality(null, "gzip"), 0);
+        assertEquals("Listed quality should be parsed", 0.4, StaticContentServlet.quality("br, GZIP;q=0.4", "gzip"), 0);
+        assertEquals("Wildcard should apply to unlisted encodings", 0.3, StaticContentServlet.quality("gzip, *;q=0.3", "deflate"), 0);
+        assertEquals("Malformed quality should refuse", 0.0, StaticContentServlet.quality("gzip;q=x", "gzip"), 0);
+    }
+
+    @Test
+    public void testConditionalRequest() throws Exception {
+        String identityTag = get("/", null).getHeader("ETag");
+        String gzipTag = get("/", "gzip").getHeader("ETag");
+        assertNotNull("Static files should carry an ETag", identityTag);
+        assertNotEquals("Each encoding should have its own ETag", identityTag, gzipTag);
+
+        // A matching If-None-Match returns an empty 304 for the variant it names
+        StubResponse resp = ServletStubs.response();
+        servlet.doGet(ServletStubs.request("GET", "/").header("Accept-Encoding", "gzip")
+                .header("If-None-Match", gzipTag).build(), resp.build());
+        assertEquals("Unchanged file should return 304", 304, resp.getStatus());
+        assertEquals("304 should have no body", 0, resp.getBodyBytes().length);
+
+        // The gzip tag does not validate the identity copy
+        resp = ServletStubs.response();
+        servlet.doGet(ServletStubs.request("GET", "/").header("If-None-Match", gzipTag).build(), resp.build());
+        assertEquals("Another variant's tag should not match", 200, resp.getStatus());
+    }
+
+    @Test
+    public void testUnknownPath() throws Exception {
+        assertEquals("Unknown files should not be found", 404, get("/missing.js", null).getStatus());
+    }
+
+    @Test(expected = UncheckedIOException.class)
+    public void testMissingResourceFailsAtStartup() {
+        new StaticContentServlet("static", 600, "missing.html");
+    }
+
+    private StubResponse get(String path, String acceptEncoding) throws IOException {
+        StubResponse resp = ServletStubs.response();
+        ServletStubs.StubRequest request = ServletStubs.request("GET", path);
+        if (acceptEncoding != null) {
+            request.header("Accept-Encoding", acceptEncoding);
+        }
+        servlet.doGet(request.build(), resp.build());
+        return resp;
+    }
+}
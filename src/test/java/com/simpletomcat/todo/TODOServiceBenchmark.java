@@ -0,0 +1,109 @@
+package com.simpletomcat.todo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.servlet.http.HttpServletRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of a Task, parsing of a create request body, and full request handling through TODOService.service()
+ * with stub requests and responses, so routing, parsing, the response cache and metrics are
+ * included but the connector is not. Part of the default set of the jmh profile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class TODOServiceBenchmark {
+
+    @Param({"1000", "100000"})
+    private int size;
+
+    private ObjectWriter taskWriter;
+    private ObjectReader taskRequestReader;
+    private Task task;
+    private byte[] taskRequestJson;
+    private TODOService service;
+    private HttpServletRequest[] taskRequests;
+    private HttpServletRequest pageRequest;
+    private TaskManager taskManager;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        taskWriter = objectMapper.writerFor(Task.class);
+        taskRequestReader = objectMapper.readerFor(TaskRequest.class);
+        task = new Task(42, "Buy groceries", "Milk, eggs, bread, and vegetables");
+        taskRequestJson = "{\"title\":\"Buy groceries\",\"description\":\"Milk, eggs, bread, and vegetables\"}"
+                .getBytes(StandardCharsets.UTF_8);
+
+        taskManager = new TaskManager();
+        for (int i = taskManager.getTaskCount(); i < size; i++) {
+            taskManager.addTask("Task " + i, "Description " + i);
+        }
+        service = new TODOService(taskManager);
+        taskRequests = new HttpServletRequest[1024];
+        for (int i = 0; i < taskRequests.length; i++) {
+            taskRequests[i] = ServletStubs.request("GET", "/" + ThreadLocalRandom.current().nextInt(1, size + 1)).build();
+        }
+        pageRequest = ServletStubs.request("GET", null).parameter("limit", "100").parameter("after", "0").build();
+    }
+
+    @Benchmark
+    public byte[] serializeTask() throws Exception {
+        return taskWriter.writeValueAsBytes(task);
+    }
+
+    @Benchmark
+    public TaskRequest deserializeTaskRequest() throws Exception {
+        return taskRequestReader.readValue(taskRequestJson);
+    }
+
+    @Benchmark
+    public int getTask() throws Exception {
+        return handle(taskRequests[ThreadLocalRandom.current().nextInt(taskRequests.length)]);
+    }
+
+    @Benchmark
+    public int getPage() throws Exception {
+        return handle(pageRequest);
+    }
+
+    @Benchmark
+    public int createTask() throws Exception {
+        return handle(ServletStubs.request("POST", null)
+                .body("{\"title\":\"Benchmark\",\"description\":\"Created through the servlet\"}").build());
+    }
+
+    @Benchmark
+    public int updateTask() throws Exception {
+        int id = ThreadLocalRandom.current().nextInt(1, size + 1);
+        return handle(ServletStubs.request("PUT", "/" + id)
+                .body("{\"completed\":" + ThreadLocalRandom.current().nextBoolean() + "}").build());
+    }
+
+    private int handle(HttpServletRequest request) throws Exception {
+        ServletStubs.StubResponse response = ServletStubs.response();
+        service.service(request, response.build());
+        return response.getStatus();
+    }
+}
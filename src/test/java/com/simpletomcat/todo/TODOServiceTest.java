@@ -0,0 +1,538 @@
+package com.simpletomcat.todo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.simpletomcat.todo.ServletStubs.StubResponse;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.IOException;
+import java.util.Iterator;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for TODOService
+ */
+public class TODOServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private TaskManager taskManager;
+    private TODOService service;
+
+    @Before
+    public void setUp() {
+        taskManager = new TaskManager();
+        service = new TODOService(taskManager, true);
+    }
+
+    @Test
+    public void testListTasks() throws Exception {
+        StubResponse resp = get(null);
+
+        // Verify the listing contains the initial tasks
+        assertEquals("Listing should succeed", 200, resp.getStatus());
+        assertEquals("Listing should be JSON", "application/json", resp.getContentType());
+        assertEquals("Listing should contain the initial tasks", 3, json(resp).size());
+    }
+
+    @Test
+    public void testRepeatedReadsAreServedFromCache() throws Exception {
+        JsonResponseCache cache = service.getResponseCache();
+        String first = get(null).getBody();
+        long misses = cache.getMisses();
+
+        // Reading again without a mutation should not serialize again
+        String second = get(null).getBody();
+        get("/1");
+        get("/1");
+        assertEquals("Cached listing should be identical", first, second);
+        assertEquals("Only the first task read should miss", misses + 1, cache.getMisses());
+        assertEquals("Repeated reads should hit", 2, cache.getHits());
+    }
+
+    @Test
+    public void testFullCacheEvictsUnreadEntries() throws Exception {
+        JsonResponseCache cache = new JsonResponseCache(new ObjectMapper(), true, 2);
+        Task first = new Task(1, "First", "Read often");
+        Task second = new Task(2, "Second", "Read once");
+        cache.taskJson(first);
+        cache.taskJson(second);
+        cache.taskJson(first);
+
+        // A third task takes the slot of the entry not read since it was cached
+        cache.taskJson(new Task(3, "Third", "Needs room"));
+        assertEquals("Cache should stay at its limit", 2, cache.size());
+        assertEquals("One entry should be evicted", 1, cache.getEvictions());
+        long hits = cache.getHits();
+        cache.taskJson(first);
+        assertEquals("Recently read entry should survive", hits + 1, cache.getHits());
+        long misses = cache.getMisses();
+        cache.taskJson(second);
+        assertEquals("Unread entry should have been evicted", misses + 1, cache.getMisses());
+        assertEquals("New tasks should keep being cached under churn", 2, cache.size());
+    }
+
+    @Test
+    public void testMutationsInvalidateCachedResponses() throws Exception {
+        get(null);
+        get("/1");
+
+        // Update the task through the API
+        StubResponse updated = put("/1", "{\"completed\":true}");
+        assertTrue("Update response should show the new status", json(updated).get("completed").asBoolean());
+
+        // Verify fresh reads reflect the update
+        assertTrue("Task read should show the new status", json(get("/1")).get("completed").asBoolean());
+        assertTrue("Listing should show the new status", json(get(null)).get(0).get("completed").asBoolean());
+
+        // Delete the task and verify it is gone from both responses
+        taskManager.deleteTask(2);
+        assertEquals("Listing should drop a task deleted directly in TaskManager", 2, json(get(null)).size());
+        StubResponse deleted = delete("/1");
+        assertEquals("Delete should succeed", 200, deleted.getStatus());
+        assertEquals("Deleted task should not be found", 404, get("/1").getStatus());
+        assertEquals("Listing should drop the deleted task", 1, json(get(null)).size());
+    }
+
+    @Test
+    public void testConditionalListRequest() throws Exception {
+        StubResponse first = get(null);
+        String etag = first.getHeader("ETag");
+        assertNotNull("Listing should carry an ETag", etag);
+        long misses = service.getResponseCache().getMisses();
+
+        // Verify a matching If-None-Match gets an empty 304 without serializing
+        StubResponse notModified = getIfNoneMatch(null, etag);
+        assertEquals("Unchanged listing should return 304", 304, notModified.getStatus());
+        assertEquals("304 should have no body", 0, notModified.getBodyBytes().length);
+        assertEquals("304 should repeat the ETag", etag, notModified.getHeader("ETag"));
+        assertEquals("304 should not touch the serializer", misses, service.getResponseCache().getMisses());
+
+        // Verify a mutation changes the ETag and returns the full body again
+        taskManager.addTask("Changed", "Listing changed");
+        StubResponse changed = getIfNoneMatch(null, etag);
+        assertEquals("Changed listing should return 200", 200, changed.getStatus());
+        assertNotEquals("Changed listing should have a new ETag", etag, changed.getHeader("ETag"));
+    }
+
+    @Test
+    public void testConditionalTaskRequest() throws Exception {
+        String etag = get("/2").getHeader("ETag");
+
+        // Verify weak and list forms of If-None-Match both match
+        assertEquals("Matching ETag should return 304", 304, getIfNoneMatch("/2", "\"other\", W/" + etag).getStatus());
+        assertEquals("Wildcard should return 304", 304, getIfNoneMatch("/2", "*").getStatus());
+
+        // Changing another task keeps this task's ETag valid
+        taskManager.updateTaskStatus(1, true);
+        assertEquals("Other task changes should not invalidate the ETag", 304, getIfNoneMatch("/2", etag).getStatus());
+
+        // Changing the task itself invalidates it
+        taskManager.updateTaskStatus(2, true);
+        StubResponse changed = getIfNoneMatch("/2", etag);
+        assertEquals("Changed task should return 200", 200, changed.getStatus());
+        assertNotEquals("Changed task should have a new ETag", etag, changed.getHeader("ETag"));
+    }
+
+    @Test
+    public void testNdjsonListing() throws Exception {
+        StubResponse resp = ServletStubs.response();
+        service.doGet(ServletStubs.request("GET", null).header("Accept", "application/x-ndjson").build(), resp.build());
+
+        // Verify one task object per line, each line terminated
+        assertEquals("NDJSON listing should succeed", 200, resp.getStatus());
+        assertEquals("Content type should be NDJSON", "application/x-ndjson", resp.getContentType());
+        String body = resp.getBody();
+        assertTrue("Every line should end with a newline", body.endsWith("\n"));
+        String[] lines = body.split("\n");
+        assertEquals("Each task should be on its own line", 3, lines.length);
+        assertEquals("Lines should be task objects", 1, objectMapper.readTree(lines[0]).get("id").asInt());
+        assertNotEquals("NDJSON should have its own ETag", get(null).getHeader("ETag"), resp.getHeader("ETag"));
+    }
+
+    @Test
+    public void testLargeListingIsStreamed() throws Exception {
+        for (int i = 0; i < TODOService.STREAMING_THRESHOLD; i++) {
+            taskManager.addTask("Task " + i, "Streamed task " + i);
+        }
+        long misses = service.getResponseCache().getMisses();
+
+        // Verify the streamed array is complete and bypasses the cache
+        StubResponse resp = get(null);
+        assertNull("Streamed listing should not declare a length", resp.getHeader("Content-Length"));
+        JsonNode tasks = json(resp);
+        assertEquals("Streamed listing should contain every task", TODOService.STREAMING_THRESHOLD + 3, tasks.size());
+        assertEquals("Streamed tasks should keep their order", "Task 0", tasks.get(3).get("title").asText());
+        assertEquals("Streaming should not use the cache", misses, service.getResponseCache().getMisses());
+    }
+
+    @Test
+    public void testFailedStreamIsNotPassedOffAsComplete() throws Exception {
+        // A task manager whose iteration breaks partway through a streamed listing
+        TaskManager failing = new TaskManager() {
+            @Override
+            public Iterable<Task> iterateTasks() {
+                Iterator<Task> tasks = super.iterateTasks().iterator();
+                return () -> new Iterator<>() {
+                    private int served;
+
+                    @Override
+                    public boolean hasNext() {
+                        return tasks.hasNext();
+                    }
+
+                    @Override
+                    public Task next() {
+                        if (++served > 1_000) {
+                            throw new IllegalStateException("Store failed");
+                        }
+                        return tasks.next();
+                    }
+                };
+            }
+        };
+        for (int i = 0; i < TODOService.STREAMING_THRESHOLD; i++) {
+            failing.addTask("Task " + i, "Streamed task " + i);
+        }
+        TODOService failingService = new TODOService(failing, true);
+
+        // Before anything is committed the partial array is replaced by a plain error
+        StubResponse buffered = ServletStubs.response();
+        failingService.doGet(ServletStubs.request("GET", null).build(), buffered.build());
+        assertEquals("Failure should be reported", 500, buffered.getStatus());
+        assertEquals("Partial array should be discarded", "Internal server error", buffered.getBody());
+        assertEquals("Error should be plain text", "text/plain", buffered.getContentType());
+
+        // Once committed the request fails, so the container aborts the body rather than closing the array
+        StubResponse committed = ServletStubs.response().bufferSize(1024);
+        assertThrows("Committed stream should fail the request", IOException.class,
+                () -> failingService.doGet(ServletStubs.request("GET", null).build(), committed.build()));
+        assertTrue("Some tasks should have been sent", committed.getBody().startsWith("[{"));
+        assertFalse("Array should be left open", committed.getBody().endsWith("]"));
+    }
+
+    @Test
+    public void testPagedListing() throws Exception {
+        StubResponse first = getPage("2", null, null);
+
+        // Verify a full page links to the next one
+        assertEquals("Page should hold the limit", 2, json(first).size());
+        assertEquals("Link should point at the next page", "</api/tasks?after=2&limit=2>; rel=\"next\"", first.getHeader("Link"));
+        StubResponse second = getPage("2", "2", null);
+        assertEquals("Last page should hold the remaining task", 1, json(second).size());
+        assertNull("Partial page should not link further", second.getHeader("Link"));
+
+        // Verify status filtering and parameter validation
+        taskManager.updateTaskStatus(3, true);
+        JsonNode completed = json(getPage(null, null, "true"));
+        assertEquals("Filter should return only completed tasks", 1, completed.size());
+        assertEquals("Filtered task should be the completed one", 3, completed.get(0).get("id").asInt());
+        assertEquals("Invalid limit should be rejected", 400, getPage("0", null, null).getStatus());
+        assertEquals("Invalid status should be rejected", 400, getPage(null, null, "maybe").getStatus());
+    }
+
+    @Test
+    public void testStats() throws Exception {
+        taskManager.updateTaskStatus(1, true);
+        StubResponse resp = get("/stats");
+
+        // Verify the counts and that unchanged stats can be revalidated
+        JsonNode stats = json(resp);
+        assertEquals("Stats should succeed", 200, resp.getStatus());
+        assertEquals("Total should count every task", 3, stats.get("total").asInt());
+        assertEquals("Pending count should match", 2, stats.get("pending").asInt());
+        assertEquals("Completed count should match", 1, stats.get("completed").asInt());
+        assertEquals("Unchanged stats should return 304", 304, getIfNoneMatch("/stats", resp.getHeader("ETag")).getStatus());
+    }
+
+    @Test
+    public void testSearch() throws Exception {
+        taskManager.addTask("Buy paint", "For the kitchen");
+        taskManager.updateTaskStatus(2, true);
+
+        // "buy" is in the titles of task 2 and the new task 4
+        assertEquals("Both matching tasks should be found", 2, json(search("buy", null)).size());
+        JsonNode pending = json(search("buy", "false"));
+        assertEquals("Status filter should apply to search results", 1, pending.size());
+        assertEquals("Pending match should be the new task", 4, pending.get(0).get("id").asInt());
+
+        // Deleted tasks drop out of the index
+        taskManager.deleteTask(4);
+        taskManager.deleteTask(2);
+        assertEquals("Deleted tasks should not be found", 0, json(search("buy", null)).size());
+    }
+
+    @Test
+    public void testCreateTask() throws Exception {
+        StubResponse resp = post("{\"title\":\"New\",\"description\":\"Created in a test\"}");
+
+        // Verify the created task is returned and listed
+        assertEquals("Create should return 201", 201, resp.getStatus());
+        assertEquals("Created title should match", "New", json(resp).get("title").asText());
+        assertEquals("Listing should include the new task", 4, json(get(null)).size());
+    }
+
+    @Test
+    public void testRequestBodyLimits() throws Exception {
+        // A body over the limit is rejected while streaming, without a declared length
+        StringBuilder description = new StringBuilder();
+        while (description.length() <= TODOService.DEFAULT_MAX_BODY_BYTES) {
+            description.append("0123456789");
+        }
+        StubResponse tooLarge = post("{\"title\":\"Big\",\"description\":\"" + description + "\"}");
+        assertEquals("Oversized body should return 413", 413, tooLarge.getStatus());
+
+        // Malformed JSON is a client error
+        assertEquals("Malformed body should return 400", 400, post("{\"title\":").getStatus());
+        assertEquals("Task count should not change", 3, taskManager.getTaskCount());
+    }
+
+    @Test
+    public void testUpdateIgnoresUnknownFields() throws Exception {
+        // Clients may send back the whole task they received
+        StubResponse resp = put("/1", "{\"id\":1,\"title\":\"Ignored\",\"completed\":true,\"extra\":1}");
+
+        assertEquals("Update should succeed", 200, resp.getStatus());
+        assertTrue("Status should be updated", taskManager.getTask(1).isCompleted());
+        assertEquals("PUT should only change the status", "Complete project", taskManager.getTask(1).getTitle());
+    }
+
+    @Test
+    public void testInvalidTaskId() throws Exception {
+        assertEquals("Non-numeric id should be rejected", 400, get("/abc").getStatus());
+    }
+
+    private StubResponse get(String pathInfo) throws Exception {
+        StubResponse resp = ServletStubs.response();
+        service.doGet(ServletStubs.request("GET", pathInfo).build(), resp.build());
+        return resp;
+    }
+
+    private StubResponse getIfNoneMatch(String pathInfo, String etag) throws Exception {
+        StubResponse resp = ServletStubs.response();
+        service.doGet(ServletStubs.request("GET", pathInfo).header("If-None-Match", etag).build(), resp.build());
+        return resp;
+    }
+
+    private StubResponse getPage(String limit, String after, String completed) throws Exception {
+        ServletStubs.StubRequest req = ServletStubs.request("GET", null);
+        if (limit != null) {
+            req.parameter("limit", limit);
+        }
+        if (after != null) {
+            req.parameter("after", after);
+        }
+        if (completed != null) {
+            req.parameter("completed", completed);
+        }
+        StubResponse resp = ServletStubs.response();
+        service.doGet(req.build(), resp.build());
+        return resp;
+    }
+
+    private StubResponse search(String query, String completed) throws Exception {
+        ServletStubs.StubRequest req = ServletStubs.request("GET", null).parameter("q", query);
+        if (completed != null) {
+            req.parameter("completed", completed);
+        }
+        StubResponse resp = ServletStubs.response();
+        service.doGet(req.build(), resp.build());
+        return resp;
+    }
+
+    @Test
+    public void testBulkArray() throws Exception {
+        StubResponse resp = bulk("[{\"op\":\"create\",\"title\":\"Imported\",\"description\":\"From bulk\"},"
+                + "{\"op\":\"update\",\"id\":1,\"completed\":true},"
+                + "{\"op\":\"delete\",\"id\":2},"
+                + "{\"op\":\"delete\",\"id\":99}]", "application/json");
+
+        // The response reports every item in order
+        assertEquals("Bulk request should succeed", 200, resp.getStatus());
+        JsonNode body = json(resp);
+        assertTrue("A failed item should flag errors", body.get("errors").asBoolean());
+        JsonNode items = body.get("items");
+        assertEquals("Every item should have a result", 4, items.size());
+        assertEquals("Create should return 201", 201, items.get(0).get("status").asInt());
+        assertEquals("Created task should be returned", "Imported", items.get(0).get("task").get("title").asText());
+        assertEquals("Update should return 200", 200, items.get(1).get("status").asInt());
+        assertTrue("Updated task should be returned", items.get(1).get("task").get("completed").asBoolean());
+        assertEquals("Delete should return 200", 200, items.get(2).get("status").asInt());
+        assertEquals("Unknown id should return 404", 404, items.get(3).get("status").asInt());
+        assertEquals("Failed item should name its id", 99, items.get(3).get("id").asInt());
+
+        // The changes are visible through the regular endpoints
+        assertEquals("Task count should reflect the batch", 3, taskManager.getTaskCount());
+        assertTrue("Update should be served", json(get("/1")).get("completed").asBoolean());
+        assertEquals("Deleted task should be gone", 404, get("/2").getStatus());
+    }
+
+    @Test
+    public void testBulkNdjson() throws Exception {
+        StubResponse resp = bulk("{\"op\":\"create\",\"title\":\"First\",\"description\":\"Line one\"}\n"
+                + "{\"op\":\"create\",\"title\":\"Second\",\"description\":\"Line two\"}\n"
+                + "{\"op\":\"rename\",\"id\":1}\n"
+                + "{\"op\":\"update\",\"id\":1}\n", "application/x-ndjson");
+
+        JsonNode items = json(resp).get("items");
+        assertEquals("Every line should have a result", 4, items.size());
+        assertEquals("Second create should get the next id", 5, items.get(1).get("task").get("id").asInt());
+        assertEquals("Unknown operations should return 400", 400, items.get(2).get("status").asInt());
+        assertEquals("Update without a status should return 400", 400, items.get(3).get("status").asInt());
+        assertEquals("Valid items should still be applied", 5, taskManager.getTaskCount());
+    }
+
+    @Test
+    public void testBulkMalformedBodyChangesNothing() throws Exception {
+        long version = taskManager.getVersion();
+        StubResponse resp = bulk("[{\"op\":\"delete\",\"id\":1},{\"op\":", "application/json");
+        assertEquals("Malformed body should return 400", 400, resp.getStatus());
+        assertEquals("Nothing should be applied", version, taskManager.getVersion());
+        assertNotNull("Task should still exist", taskManager.getTask(1));
+    }
+
+    @Test
+    public void testBulkInvalidatesCachedTasks() throws Exception {
+        get("/1");
+        bulk("[{\"op\":\"update\",\"id\":1,\"completed\":true}]", "application/json");
+        assertTrue("Cached task should be refreshed", json(get("/1")).get("completed").asBoolean());
+    }
+
+    private StubResponse post(String body) throws Exception {
+        StubResponse resp = ServletStubs.response();
+        service.doPost(ServletStubs.request("POST", null).body(body).build(), resp.build());
+        return resp;
+    }
+
+    private StubResponse bulk(String body, String contentType) throws Exception {
+        StubResponse resp = ServletStubs.response();
+        service.doPost(ServletStubs.request("POST", "/_bulk").header("Content-Type", contentType).body(body).build(), resp.build());
+        return resp;
+    }
+
+    @Test
+    public void testConditionalPut() throws Exception {
+        String etag = get("/1").getHeader("ETag");
+
+        // The current ETag lets the update through and is replaced by the new one
+        StubResponse updated = putIfMatch("/1", "{\"completed\":true}", etag);
+        assertEquals("Matching If-Match should update", 200, updated.getStatus());
+        assertTrue("Response should show the new status", json(updated).get("completed").asBoolean());
+        assertEquals("Response should carry the version", 2, json(updated).get("version").asLong());
+        String newETag = updated.getHeader("ETag");
+        assertNotEquals("Update should change the ETag", etag, newETag);
+
+        // A second client still holding the old ETag is refused and told the current one
+        StubResponse stale = putIfMatch("/1", "{\"completed\":false}", etag);
+        assertEquals("Stale If-Match should fail", 412, stale.getStatus());
+        assertEquals("Failure should carry the current ETag", newETag, stale.getHeader("ETag"));
+        assertTrue("Task should keep the first update", taskManager.getTask(1).isCompleted());
+
+        // Several tags, weak tags, foreign tags and missing tasks
+        assertEquals("Listing the current tag among others should update", 200,
+                putIfMatch("/1", "{\"completed\":false}", etag + ", " + newETag).getStatus());
+        assertEquals("Weak tags should never match", 412, putIfMatch("/2", "{\"completed\":true}",
+                "W/" + get("/2").getHeader("ETag")).getStatus());
+        assertEquals("Tags of another task should not match", 412,
+                putIfMatch("/2", "{\"completed\":true}", get("/3").getHeader("ETag")).getStatus());
+        assertEquals("Wildcard should update an existing task", 200, putIfMatch("/2", "{\"completed\":true}", "*").getStatus());
+        assertEquals("Wildcard should fail for a missing task", 412, putIfMatch("/99", "{\"completed\":true}", "*").getStatus());
+        assertEquals("Missing task without If-Match should not be found", 404, put("/99", "{\"completed\":true}").getStatus());
+    }
+
+    @Test
+    public void testBulkVersionConflict() throws Exception {
+        JsonNode items = json(bulk("[{\"op\":\"update\",\"id\":1,\"completed\":true,\"version\":1},"
+                + "{\"op\":\"delete\",\"id\":1,\"version\":1}]", "application/json")).get("items");
+        assertEquals("Matching version should update", 200, items.get(0).get("status").asInt());
+        assertEquals("Delete of the version before the update should conflict", 409, items.get(1).get("status").asInt());
+        assertNotNull("Task should not be deleted", taskManager.getTask(1));
+    }
+
+    @Test
+    public void testMergePatch() throws Exception {
+        String etag = get("/2").getHeader("ETag");
+        get(null);
+
+        // Only the members present are changed
+        StubResponse patched = patch("/2", "{\"title\":\"Buy groceries today\",\"completed\":true}", null);
+        assertEquals("Patch should succeed", 200, patched.getStatus());
+        JsonNode task = json(patched);
+        assertEquals("Title should change", "Buy groceries today", task.get("title").asText());
+        assertEquals("Description should be kept", "Milk, eggs, bread, and vegetables", task.get("description").asText());
+        assertTrue("Status should change", task.get("completed").asBoolean());
+        assertNotEquals("Patch should change the ETag", etag, patched.getHeader("ETag"));
+        assertEquals("Listing should show the edit", "Buy groceries today", json(get(null)).get(1).get("title").asText());
+
+        // Members that would remove a field or have the wrong type are rejected
+        assertEquals("Null member should be rejected", 400, patch("/2", "{\"description\":null}", null).getStatus());
+        assertEquals("Wrong type should be rejected", 400, patch("/2", "{\"completed\":\"yes\"}", null).getStatus());
+        assertEquals("Blank title should be rejected", 400, patch("/2", "{\"title\":\"  \"}", null).getStatus());
+        assertEquals("Non-object patch should be rejected", 400, patch("/2", "[1]", null).getStatus());
+        assertEquals("Task should keep the first patch", "Buy groceries today", taskManager.getTask(2).getTitle());
+
+        // Conditional and failing requests
+        assertEquals("Stale If-Match should fail", 412,
+                patchRequest("/2", "{\"title\":\"Lost update\"}", "application/merge-patch+json", etag).getStatus());
+        assertEquals("Missing task should not be found", 404, patch("/99", "{\"completed\":true}", null).getStatus());
+        assertEquals("Other media types should be refused", 415,
+                patchRequest("/2", "title=x", "application/x-www-form-urlencoded", null).getStatus());
+        assertEquals("Media types should be compared case-insensitively", 200,
+                patchRequest("/2", "{\"completed\":false}", "Application/Merge-Patch+JSON; charset=UTF-8", null).getStatus());
+    }
+
+    @Test
+    public void testPatchOnCollectionsListsAllowedMethods() throws Exception {
+        // Every path that is not a single task refuses PATCH with the methods it does support
+        StubResponse collection = patch(null, "{}", null);
+        assertEquals("Collection should not be patchable", 405, collection.getStatus());
+        assertEquals("Collection should allow listing and creating", "GET, POST", collection.getHeader("Allow"));
+        assertEquals("Stats should only allow GET", "GET", patch("/stats", "{}", null).getHeader("Allow"));
+        assertEquals("Bulk should only allow POST", "POST", patch("/_bulk", "{}", null).getHeader("Allow"));
+    }
+
+    @Test
+    public void testBulkUpdateMergesFields() throws Exception {
+        JsonNode items = json(bulk("[{\"op\":\"update\",\"id\":1,\"description\":\"Edited in bulk\"}]",
+                "application/json")).get("items");
+        assertEquals("Update of a single field should succeed", 200, items.get(0).get("status").asInt());
+        assertEquals("Other fields should be kept", "Complete project", taskManager.getTask(1).getTitle());
+        assertEquals("Named field should change", "Edited in bulk", taskManager.getTask(1).getDescription());
+    }
+
+    private StubResponse patch(String pathInfo, String body, String ifMatch) throws Exception {
+        return patchRequest(pathInfo, body, "application/merge-patch+json", ifMatch);
+    }
+
+    private StubResponse patchRequest(String pathInfo, String body, String contentType, String ifMatch) throws Exception {
+        ServletStubs.StubRequest req = ServletStubs.request("PATCH", pathInfo).header("Content-Type", contentType).body(body);
+        if (ifMatch != null) {
+            req.header("If-Match", ifMatch);
+        }
+        StubResponse resp = ServletStubs.response();
+        service.service(req.build(), resp.build());
+        return resp;
+    }
+
+    private StubResponse putIfMatch(String pathInfo, String body, String ifMatch) throws Exception {
+        StubResponse resp = ServletStubs.response();
+        service.doPut(ServletStubs.request("PUT", pathInfo).header("If-Match", ifMatch).body(body).build(), resp.build());
+        return resp;
+    }
+
+    private StubResponse put(String pathInfo, String body) throws Exception {
+        StubResponse resp = ServletStubs.response();
+        service.doPut(ServletStubs.request("PUT", pathInfo).body(body).build(), resp.build());
+        return resp;
+    }
+
+    private StubResponse delete(String pathInfo) throws Exception {
+        StubResponse resp = ServletStubs.response();
+        service.doDelete(ServletStubs.request("DELETE", pathInfo).build(), resp.build());
+        return resp;
+    }
+
+    private JsonNode json(StubResponse resp) throws Exception {
+        return objectMapper.readTree(resp.getBodyBytes());
+    }
+}
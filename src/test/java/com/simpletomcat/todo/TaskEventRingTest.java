@@ -0,0 +1,110 @@
+package com.simpletomcat.todo;
+
+import org.junit.Test;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for TaskEventRing
+ */
+public class TaskEventRingTest {
+
+    private final Task task = new Task(1, "Task", "Published");
+
+    @Test
+    public void testReadInOrder() {
+        TaskEventRing ring = new TaskEventRing(8);
+        assertEquals("Empty ring should have no last sequence", 0, ring.getLastSequence());
+        for (int i = 0; i < 5; i++) {
+            ring.publish(TaskEvent.Type.ADDED, task);
+        }
+
+        // Reads return events from the cursor on and stop at the last published one
+        TaskEvent[] batch = new TaskEvent[4];
+        assertEquals("Batch should be filled", 4, ring.read(1, batch));
+        assertEquals("First event should have sequence 1", 1, batch[0].getSequence());
+        assertEquals("Rest should follow the cursor", 1, ring.read(5, batch));
+        assertEquals("Nothing after the last event", 0, ring.read(6, batch));
+    }
+
+    @Test
+    public void testOverwrittenEventsAreReported() {
+        TaskEventRing ring = new TaskEventRing(6);
+        assertEquals("Capacity should round up to a power of two", 8, ring.getCapacity());
+        for (int i = 0; i < 20; i++) {
+            ring.publish(TaskEvent.Type.UPDATED, task);
+        }
+
+        // A reader more than a capacity behind has lost events and must skip to the oldest
+        TaskEvent[] batch = new TaskEvent[16];
+        assertEquals("Overwritten event should be reported", -1, ring.read(3, batch));
+        assertEquals("Oldest held event should follow the capacity", 13, ring.getOldestSequence());
+        assertEquals("Every held event should be readable", 8, ring.read(ring.getOldestSequence(), batch));
+        assertEquals("Last event should be the newest", 20, batch[7].getSequence());
+    }
+
+    @Test
+    public void testConcurrentPublishersKeepNewestEvents() throws Exception {
+        TaskEventRing ring = new TaskEventRing(8);
+        Thread[] publishers = new Thread[4];
+        for (int t = 0; t < publishers.length; t++) {
+            publishers[t] = new Thread(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    ring.publish(TaskEvent.Type.UPDATED, task);
+                }
+            });
+            publishers[t].start();
+        }
+        for (Thread publisher : publishers) {
+            publisher.join();
+        }
+
+        // A delayed publisher must not put an older event over a newer one in the same slot
+        TaskEvent[] batch = new TaskEvent[8];
+        assertEquals("Every slot should hold the newest event mapped to it", 8, ring.read(ring.getOldestSequence(), batch));
+        assertEquals("Last event should be the newest", 200_000, batch[7].getSequence());
+    }
+
+    @Test
+    public void testEpochIsStable() {
+        TaskEventRing ring = new TaskEventRing(4);
+        assertFalse("Epoch should be set", ring.getEpoch().isEmpty());
+        assertFalse("Epoch should not contain the id separator", ring.getEpoch().contains("-"));
+        assertEquals("Epoch should not change with events", ring.getEpoch(), ring.getEpoch());
+    }
+
+    @Test
+    public void testListenersRunOnPublish() {
+        TaskEventRing ring = new TaskEventRing(4);
+        AtomicInteger calls = new AtomicInteger();
+        Runnable listener = calls::incrementAndGet;
+        ring.addListener(listener);
+        ring.publish(TaskEvent.Type.DELETED, task);
+        ring.removeListener(listener);
+        ring.publish(TaskEvent.Type.DELETED, task);
+        assertEquals("Listener should run until removed", 1, calls.get());
+    }
+
+    @Test
+    public void testTaskManagerPublishesChanges() {
+        TaskManager taskManager = new TaskManager();
+        TaskEventRing ring = taskManager.getEvents();
+        long start = ring.getLastSequence() + 1;
+
+        Task added = taskManager.addTask("Streamed", "Published on add");
+        taskManager.updateTaskStatus(added.getId(), true);
+        taskManager.updateTaskStatus(added.getId(), true);
+        taskManager.applyOperations(List.of(TaskOperation.delete(added.getId()), TaskOperation.delete(99)));
+
+        // Only applied changes are published, in order
+        TaskEvent[] batch = new TaskEvent[8];
+        assertEquals("Add, one real update and a delete should be published", 3, ring.read(start, batch));
+        assertEquals("First event should be the add", TaskEvent.Type.ADDED, batch[0].getType());
+        assertEquals("Second event should be the update", TaskEvent.Type.UPDATED, batch[1].getType());
+        assertTrue("Update should carry the new status", batch[1].getTask().isCompleted());
+        assertEquals("Third event should be the delete", TaskEvent.Type.DELETED, batch[2].getType());
+        assertEquals("Delete should carry the removed task", added.getId(), batch[2].getTask().getId());
+    }
+}
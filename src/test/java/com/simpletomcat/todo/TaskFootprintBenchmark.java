@@ -0,0 +1,94 @@
+package com.simpletomcat.todo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jol.info.GraphLayout;
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-task memory footprint of each store, and the cost of serving GET /{id} from it.
+ * Setup walks the object graph of the filled store with JOL and prints the retained heap
+ * bytes per task together with the largest classes in it. The benchmark serves single-task
+ * GETs through TODOService with the response cache off; run with -prof gc to compare the
+ * bytes allocated per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx2g", "-Djdk.attach.allowAttachSelf=true"})
+public class TaskFootprintBenchmark {
+
+    @Param({"heap", "compact", "mapped"})
+    private String store;
+
+    @Param({"100000"})
+    private int size;
+
+    private Path directory;
+    private TODOService service;
+    private HttpServletRequest[] requests;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("task-footprint");
+        TaskStore tasks;
+        switch (store) {
+            case "compact":
+                tasks = new CompactTaskStore();
+                break;
+            case "mapped":
+                tasks = new MappedTaskStore(directory);
+                break;
+            default:
+                tasks = new HeapTaskStore();
+        }
+        TaskManager taskManager = new TaskManager(null, tasks);
+        for (int i = tasks.size(); i < size; i++) {
+            taskManager.addTask("Task number " + i, "Description of benchmark task number " + i);
+        }
+
+        GraphLayout layout = GraphLayout.parseInstance(tasks);
+        System.out.printf("%n%s store: %.1f bytes of heap per task, %.2f objects per task%n",
+                store, (double) layout.totalSize() / size, (double) layout.totalCount() / size);
+        String[] lines = layout.toFootprint().split("\n");
+        for (int i = 0; i < Math.min(lines.length, 10); i++) {
+            System.out.println(lines[i]);
+        }
+
+        service = new TODOService(taskManager, false);
+        requests = new HttpServletRequest[size];
+        for (int i = 0; i < size; i++) {
+            requests[i] = ServletStubs.request("GET", "/" + (i + 1)).build();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public int getTask() throws Exception {
+        ServletStubs.StubResponse resp = ServletStubs.response();
+        service.doGet(requests[ThreadLocalRandom.current().nextInt(size)], resp.build());
+        return resp.getStatus();
+    }
+}
@@ -0,0 +1,107 @@
+package com.simpletomcat.todo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Latency of every public TaskManager operation with 1k, 100k and 1M tasks held in memory.
+ * Part of the default set of the jmh profile; pass -t to compare thread counts, for example
+ * mvn -Pjmh verify -Djmh.args="-t 4".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class TaskManagerBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    private TaskManager taskManager;
+    private volatile int highestId;
+    // Ids of the stored tasks, so deleteTask always finds one whatever the ids have grown to
+    private AtomicIntegerArray liveIds;
+
+    /**
+     * Rebuild the manager before each iteration so addTask does not grow it without bound
+     */
+    @Setup(Level.Iteration)
+    public void setUp() {
+        taskManager = new TaskManager();
+        for (int i = taskManager.getTaskCount(); i < size; i++) {
+            highestId = taskManager.addTask("Task " + i, "Description " + i).getId();
+        }
+        liveIds = new AtomicIntegerArray(highestId);
+        for (int i = 0; i < highestId; i++) {
+            liveIds.set(i, i + 1);
+        }
+    }
+
+    @Benchmark
+    public Task addTask() {
+        return taskManager.addTask("Added task", "Added by the benchmark");
+    }
+
+    @Benchmark
+    public Task getTask() {
+        return taskManager.getTask(randomId());
+    }
+
+    @Benchmark
+    public boolean updateTaskStatus() {
+        return taskManager.updateTaskStatus(randomId(), ThreadLocalRandom.current().nextBoolean());
+    }
+
+    @Benchmark
+    public Task deleteTask() {
+        // Put every deleted task back under a new id so the size stays the same. The id is
+        // taken from the live ids: drawing from every id ever handed out would mostly miss
+        // once the ids have grown past the store size, and measure lookups instead.
+        int slot = ThreadLocalRandom.current().nextInt(liveIds.length());
+        Task task = taskManager.getTask(liveIds.get(slot));
+        if (task != null && taskManager.deleteTask(task.getId())) {
+            task = taskManager.addTask(task.getTitle(), task.getDescription());
+            liveIds.set(slot, task.getId());
+        }
+        return task;
+    }
+
+    @Benchmark
+    public List<Task> getAllTasks() {
+        // Served from the snapshot of the current version
+        return taskManager.getAllTasks();
+    }
+
+    @Benchmark
+    public List<Task> getAllTasksAfterUpdate() {
+        // Every update invalidates the snapshot, so the listing is rebuilt each time
+        int id = randomId();
+        Task task = taskManager.getTask(id);
+        if (task != null) {
+            taskManager.updateTaskStatus(id, !task.isCompleted());
+        }
+        return taskManager.getAllTasks();
+    }
+
+    private int randomId() {
+        return ThreadLocalRandom.current().nextInt(1, highestId + 1);
+    }
+}
@@ -0,0 +1,252 @@
+package com.simpletomcat.todo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Mixed read/write throughput of TaskManager against a single global read-write lock.
+ * Run with -t 1, 2, 4, 8, 16 and 32 to see how each model scales with threads.
+ * Status writes leave the search index alone; text writes rename tasks and so update it,
+ * and searchPercent mixes in prefix queries that merge many postings, so contention in
+ * the index shows up next to contention on the task locks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class TaskManagerConcurrencyBenchmark {
+
+    private static final int TASKS = 100_000;
+
+    @Param({"globalLock", "striped"})
+    private String lockModel;
+
+    /** Percentage of operations that are writes */
+    @Param({"20"})
+    private int writePercent;
+
+    /** Whether writes toggle the status or rename the task */
+    @Param({"status", "text"})
+    private String writeKind;
+
+    /** Percentage of operations that are searches, taken from the reads */
+    @Param({"0"})
+    private int searchPercent;
+
+    private Tasks tasks;
+    private int highestId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        tasks = "globalLock".equals(lockModel) ? new GlobalLockTasks() : new StripedTasks();
+        for (int i = 0; i < TASKS; i++) {
+            highestId = tasks.add("Task " + i, "Description " + i);
+        }
+    }
+
+    @Benchmark
+    public Object mixed() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int id = random.nextInt(1, highestId + 1);
+        int roll = random.nextInt(100);
+        if (roll < searchPercent) {
+            // Every task matches "task" and the number prefix expands to many terms
+            return tasks.search("task " + random.nextInt(1, 10), 10);
+        }
+        if (roll < 100 - writePercent) {
+            return tasks.get(id);
+        }
+        // Writes only change existing tasks so the data set stays the same size
+        if ("text".equals(writeKind)) {
+            return tasks.updateTitle(id, (random.nextBoolean() ? "Renamed task " : "Task ") + id);
+        }
+        return tasks.updateStatus(id, random.nextBoolean());
+    }
+
+    @Benchmark
+    public int count() {
+        return tasks.count();
+    }
+
+    private interface Tasks {
+        int add(String title, String description);
+
+        Object get(int id);
+
+        boolean updateStatus(int id, boolean completed);
+
+        boolean updateTitle(int id, String title);
+
+        List<?> search(String query, int limit);
+
+        int count();
+    }
+
+    private static final class StripedTasks implements Tasks {
+        private final TaskManager taskManager = new TaskManager();
+
+        @Override
+        public int add(String title, String description) {
+            return taskManager.addTask(title, description).getId();
+        }
+
+        @Override
+        public Task get(int id) {
+            return taskManager.getTask(id);
+        }
+
+        @Override
+        public boolean updateStatus(int id, boolean completed) {
+            return taskManager.updateTaskStatus(id, completed);
+        }
+
+        @Override
+        public boolean updateTitle(int id, String title) {
+            return taskManager.patchTask(id, title, null, null, TaskOperation.ANY_VERSION).getStatus() == TaskOperation.Result.Status.UPDATED;
+        }
+
+        @Override
+        public List<Task> search(String query, int limit) {
+            return taskManager.searchTasks(query, limit, null);
+        }
+
+        @Override
+        public int count() {
+            return taskManager.getTaskCount();
+        }
+    }
+
+    /**
+     * The one read-write lock around every operation that TaskManager used before lock striping,
+     * with the search index updated and queried under the same lock and mutable tasks that
+     * status changes update in place
+     */
+    private static final class GlobalLockTasks implements Tasks {
+        private final Map<Integer, MutableTask> store = new HashMap<>();
+        private final SearchIndex searchIndex = new SearchIndex();
+        private final AtomicInteger idCounter = new AtomicInteger(1);
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        @Override
+        public int add(String title, String description) {
+            lock.writeLock().lock();
+            try {
+                MutableTask task = new MutableTask(idCounter.getAndIncrement(), title, description);
+                store.put(task.id, task);
+                searchIndex.add(task.toTask());
+                return task.id;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public MutableTask get(int id) {
+            lock.readLock().lock();
+            try {
+                return store.get(id);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public boolean updateStatus(int id, boolean completed) {
+            lock.writeLock().lock();
+            try {
+                MutableTask task = get(id);
+                if (task != null) {
+                    task.completed = completed;
+                    return true;
+                }
+                return false;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public boolean updateTitle(int id, String title) {
+            lock.writeLock().lock();
+            try {
+                MutableTask task = store.get(id);
+                if (task == null) {
+                    return false;
+                }
+                Task previous = task.toTask();
+                task.title = title;
+                searchIndex.replace(previous, task.toTask());
+                return true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public List<MutableTask> search(String query, int limit) {
+            lock.readLock().lock();
+            try {
+                List<MutableTask> results = new ArrayList<>();
+                for (int id : searchIndex.search(query, limit)) {
+                    results.add(store.get(id));
+                }
+                return results;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public int count() {
+            lock.readLock().lock();
+            try {
+                return store.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * The task the baseline keeps, changed in place the way Task was before it became immutable
+     */
+    private static final class MutableTask {
+        private final int id;
+        private String title;
+        private final String description;
+        private boolean completed;
+
+        MutableTask(int id, String title, String description) {
+            this.id = id;
+            this.title = title;
+            this.description = description;
+        }
+
+        Task toTask() {
+            return new Task(id, title, description, completed);
+        }
+    }
+}
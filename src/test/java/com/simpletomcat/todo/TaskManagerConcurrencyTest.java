@@ -0,0 +1,151 @@
+package com.simpletomcat.todo;
+
+import org.junit.Before;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Multi-threaded stress tests for TaskManager
+ */
+public class TaskManagerConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int TASKS_PER_THREAD = 2000;
+    private static final int INITIAL_TASKS = 3;
+
+    private TaskManager taskManager;
+
+    @Before
+    public void setUp() {
+        taskManager = new TaskManager();
+    }
+
+    @Test
+    public void testConcurrentMixedOperations() throws Exception {
+        // Every thread adds, completes and deletes its own tasks while reading random ones
+        List<List<Integer>> keptIds = runConcurrently(() -> {
+            List<Integer> ids = new ArrayList<>();
+            for (int i = 0; i < TASKS_PER_THREAD; i++) {
+                ids.add(taskManager.addTask("Stress " + i, "Stress task " + i).getId());
+            }
+            List<Integer> kept = new ArrayList<>();
+            for (int i = 0; i < ids.size(); i++) {
+                int id = ids.get(i);
+                assertTrue("Own task should be updatable", taskManager.updateTaskStatus(id, true));
+                if (i % 2 == 0) {
+                    assertTrue("Own task should be deletable", taskManager.deleteTask(id));
+                } else {
+                    kept.add(id);
+                }
+                taskManager.getTask(ThreadLocalRandom.current().nextInt(1, id + 1));
+            }
+            return kept;
+        });
+
+        // Verify the count and every surviving task
+        int expectedCount = INITIAL_TASKS + THREADS * TASKS_PER_THREAD / 2;
+        assertEquals("Count should reflect all adds and deletes", expectedCount, taskManager.getTaskCount());
+        for (List<Integer> ids : keptIds) {
+            for (int id : ids) {
+                Task task = taskManager.getTask(id);
+                assertNotNull("Kept task should still exist", task);
+                assertTrue("Kept task should be completed", task.isCompleted());
+            }
+        }
+
+        // Verify the full listing agrees with the count and stays in id order
+        List<Task> tasks = taskManager.getAllTasks();
+        assertEquals("Listing should contain every task", expectedCount, tasks.size());
+        for (int i = 1; i < tasks.size(); i++) {
+            assertTrue("Tasks should be listed in id order", tasks.get(i - 1).getId() < tasks.get(i).getId());
+        }
+    }
+
+    @Test
+    public void testConcurrentUpdatesOfSameTask() throws Exception {
+        Task shared = taskManager.addTask("Shared", "Task updated by every thread");
+        int id = shared.getId();
+
+        // Toggle the same task from every thread while reading it back
+        runConcurrently(() -> {
+            for (int i = 0; i < TASKS_PER_THREAD; i++) {
+                assertTrue("Shared task should be updatable", taskManager.updateTaskStatus(id, i % 2 == 0));
+                Task task = taskManager.getTask(id);
+                assertEquals("Readers should never see a partial task", "Shared", task.getTitle());
+            }
+            return null;
+        });
+
+        // Every thread finishes with a pending update, so the final state is known
+        assertFalse("Last update of every thread sets the task pending", taskManager.getTask(id).isCompleted());
+        assertEquals("Updates should not change the count", INITIAL_TASKS + 1, taskManager.getTaskCount());
+    }
+
+    @Test
+    public void testStatusIndexStaysConsistentUnderContention() throws Exception {
+        int shared = 200;
+        for (int i = 0; i < shared; i++) {
+            taskManager.addTask("Contended " + i, "Task toggled by every thread");
+        }
+        int highestId = INITIAL_TASKS + shared;
+
+        // Toggle, delete and add tasks from every thread, racing on the same ids
+        runConcurrently(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < TASKS_PER_THREAD; i++) {
+                int id = random.nextInt(1, highestId + 1);
+                switch (random.nextInt(10)) {
+                    case 0 -> taskManager.deleteTask(id);
+                    case 1 -> taskManager.addTask("Added " + i, "Task added under contention");
+                    default -> taskManager.updateTaskStatus(id, random.nextBoolean());
+                }
+            }
+            return null;
+        });
+
+        // Verify counters and both bitsets agree with the stored tasks
+        List<Task> tasks = taskManager.getAllTasks();
+        long completed = tasks.stream().filter(Task::isCompleted).count();
+        TaskStats stats = taskManager.getStats();
+        assertEquals("Completed counter should match the tasks", completed, stats.getCompleted());
+        assertEquals("Pending counter should match the tasks", tasks.size() - completed, stats.getPending());
+        assertEquals("Completed index should match the tasks", completed,
+                taskManager.getTasks(0, Integer.MAX_VALUE, true).size());
+        assertEquals("Pending index should match the tasks", tasks.size() - completed,
+                taskManager.getTasks(0, Integer.MAX_VALUE, false).size());
+        assertEquals("Unfiltered index should match the tasks", tasks.size(),
+                taskManager.getTasks(0, Integer.MAX_VALUE, null).size());
+    }
+
+    private <T> List<T> runConcurrently(Callable<T> work) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return work.call();
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get(60, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.simpletomcat.todo;
 
 import org.junit.Before;
 import org.junit.Test;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -151,4 +152,258 @@ public class TaskManagerTest {
         taskManager.deleteTask(task.getId());
         assertEquals("Count should decrease after deleting a task", initialCount, taskManager.getTaskCount());
     }
-} 
\ No newline at end of file
+
+    @Test
+    public void testGetAllTasksPreservesInsertionOrder() {
+        // Add tasks and delete one in the middle
+        Task first = taskManager.addTask("First", "First task");
+        Task second = taskManager.addTask("Second", "Second task");
+        Task third = taskManager.addTask("Third", "Third task");
+        taskManager.deleteTask(second.getId());
+        
+        // Verify the remaining tasks keep their insertion order
+        List<Task> tasks = taskManager.getAllTasks();
+        assertEquals("Deleted task should be skipped", 5, tasks.size());
+        assertEquals("First added task should follow the initial tasks", first, tasks.get(3));
+        assertEquals("Third added task should be last", third, tasks.get(tasks.size() - 1));
+    }
+
+    @Test
+    public void testManyTasksRemainAddressableById() {
+        // Add enough tasks to force the store to grow several times
+        for (int i = 0; i < 1000; i++) {
+            taskManager.addTask("Bulk " + i, "Bulk task " + i);
+        }
+        
+        // Verify tasks at both ends of the id range are found directly
+        assertEquals("Last task should be retrievable", "Bulk 999", taskManager.getTask(1003).getTitle());
+        assertEquals("Initial task should be retrievable", "Complete project", taskManager.getTask(1).getTitle());
+        assertEquals("Task count should include all tasks", 1003, taskManager.getTaskCount());
+    }
+
+    @Test
+    public void testSnapshotIsReusedUntilMutation() {
+        // Two reads without a write in between share one snapshot
+        TaskSnapshot first = taskManager.snapshot();
+        assertSame("Snapshot should be reused while nothing changes", first, taskManager.snapshot());
+        assertSame("getAllTasks should return the snapshot list", first.getTasks(), taskManager.getAllTasks());
+        
+        // A write publishes a newer snapshot
+        taskManager.addTask("Snapshot", "Task added after the snapshot");
+        TaskSnapshot second = taskManager.snapshot();
+        assertNotSame("Mutation should produce a new snapshot", first, second);
+        assertTrue("Version should grow with mutations", second.getVersion() > first.getVersion());
+        assertEquals("New snapshot should include the added task", 4, second.getTasks().size());
+    }
+
+    @Test
+    public void testSnapshotIsImmutable() {
+        TaskSnapshot before = taskManager.snapshot();
+        Task task = before.getTasks().get(0);
+        
+        // Change and delete tasks after taking the snapshot
+        taskManager.updateTaskStatus(task.getId(), true);
+        taskManager.deleteTask(before.getTasks().get(1).getId());
+        
+        // Verify the old snapshot still shows the old state
+        assertEquals("Old snapshot should keep its size", 3, before.getTasks().size());
+        assertFalse("Old snapshot should keep the old status", before.getTasks().get(0).isCompleted());
+        assertTrue("Current state should show the update", taskManager.getTask(task.getId()).isCompleted());
+    }
+
+    @Test
+    public void testUnchangedStatusDoesNotBumpVersion() {
+        long version = taskManager.getVersion();
+        
+        // Setting a status the task already has is not a mutation
+        assertTrue("Update should still report success", taskManager.updateTaskStatus(1, false));
+        assertEquals("Version should not change", version, taskManager.getVersion());
+    }
+
+    @Test
+    public void testGetTasksPagesWithCursor() {
+        for (int i = 0; i < 10; i++) {
+            taskManager.addTask("Page " + i, "Paged task " + i);
+        }
+        taskManager.deleteTask(5);
+        
+        // Walk the pages by passing the last id as the cursor
+        List<Task> first = taskManager.getTasks(0, 4, null);
+        assertEquals("First page should be full", 4, first.size());
+        assertEquals("First page should start at the lowest id", 1, first.get(0).getId());
+        List<Task> second = taskManager.getTasks(first.get(3).getId(), 4, null);
+        assertEquals("Deleted task should be skipped", 6, second.get(0).getId());
+        List<Task> last = taskManager.getTasks(12, 4, null);
+        assertEquals("Last page should hold the remaining task", 1, last.size());
+        assertTrue("Cursor past the end should give an empty page", taskManager.getTasks(13, 4, null).isEmpty());
+    }
+
+    @Test
+    public void testGetTasksFiltersByStatus() {
+        taskManager.updateTaskStatus(2, true);
+        Task added = taskManager.addTask("Done later", "Completed after adding");
+        taskManager.updateTaskStatus(added.getId(), true);
+        taskManager.updateTaskStatus(2, false);
+        
+        // Verify each status filter sees only matching tasks
+        List<Task> completed = taskManager.getTasks(0, 10, true);
+        assertEquals("Only one task should be completed", 1, completed.size());
+        assertEquals("Completed task should be the added one", added.getId(), completed.get(0).getId());
+        List<Task> pending = taskManager.getTasks(0, 10, false);
+        assertEquals("Initial tasks should be pending", 3, pending.size());
+        assertEquals("Unfiltered page should include both", 4, taskManager.getTasks(0, 10, null).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetTasksRejectsInvalidLimit() {
+        taskManager.getTasks(0, 0, null);
+    }
+
+    @Test
+    public void testStatsTrackStatusChanges() {
+        // Initial tasks are all pending
+        TaskStats stats = taskManager.getStats();
+        assertEquals("Initial tasks should be pending", 3, stats.getPending());
+        assertEquals("No task should be completed", 0, stats.getCompleted());
+        
+        // Complete one task twice, then delete a completed and a pending task
+        taskManager.updateTaskStatus(1, true);
+        taskManager.updateTaskStatus(1, true);
+        taskManager.updateTaskStatus(2, true);
+        taskManager.deleteTask(2);
+        taskManager.deleteTask(3);
+        
+        stats = taskManager.getStats();
+        assertEquals("Repeated updates should count once", 1, stats.getCompleted());
+        assertEquals("Deleted pending task should leave the count", 0, stats.getPending());
+        assertEquals("Total should match the task count", taskManager.getTaskCount(), stats.getTotal());
+    }
+
+    @Test
+    public void testAddTasks() {
+        List<TaskOperation> creates = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            creates.add(TaskOperation.create(" Imported " + i + " ", "From a batch"));
+        }
+
+        // Every task is added with sequential ids in the order given
+        List<Task> added = taskManager.addTasks(creates);
+        assertEquals("Every task should be added", 100, added.size());
+        assertEquals("Task count should include the batch", 103, taskManager.getTaskCount());
+        for (int i = 0; i < added.size(); i++) {
+            assertEquals("Ids should follow the order of the batch", 4 + i, added.get(i).getId());
+            assertEquals("Titles should be trimmed", "Imported " + i, added.get(i).getTitle());
+        }
+        assertEquals("Added tasks should be searchable", 100, taskManager.searchTasks("imported", 1000, null).size());
+        assertEquals("Added tasks should be pending", 103, taskManager.getStats().getPending());
+        assertEquals("Listing should reflect the batch", 103, taskManager.getAllTasks().size());
+    }
+
+    @Test
+    public void testAddTasksRejectsInvalidBatch() {
+        long version = taskManager.getVersion();
+        List<TaskOperation> creates = List.of(TaskOperation.create("Valid", "Task"), TaskOperation.create(" ", "No title"));
+
+        // One invalid task rejects the whole batch
+        try {
+            taskManager.addTasks(creates);
+            fail("Invalid batch should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Error should name the problem", "Title cannot be null or empty", e.getMessage());
+        }
+        assertEquals("No task should be added", 3, taskManager.getTaskCount());
+        assertEquals("Version should not change", version, taskManager.getVersion());
+        assertThrows("Only creates can be added", IllegalArgumentException.class,
+                () -> taskManager.addTasks(List.of(TaskOperation.delete(1))));
+    }
+
+    @Test
+    public void testApplyOperations() {
+        long version = taskManager.getVersion();
+        List<TaskOperation.Result> results = taskManager.applyOperations(List.of(
+                TaskOperation.create("New", "Created in a batch"),
+                TaskOperation.update(1, true),
+                TaskOperation.delete(2),
+                TaskOperation.update(2, true),
+                TaskOperation.delete(99),
+                TaskOperation.create("", "Missing title"),
+                TaskOperation.update(3, false)));
+
+        // Each operation gets its own result in order
+        assertEquals("Create should succeed", TaskOperation.Result.Status.CREATED, results.get(0).getStatus());
+        assertEquals("Create should return the task", 4, results.get(0).getTask().getId());
+        assertEquals("Update should succeed", TaskOperation.Result.Status.UPDATED, results.get(1).getStatus());
+        assertEquals("Update should bump the task version", 2, results.get(1).getTask().getVersion());
+        assertEquals("Delete should succeed", TaskOperation.Result.Status.DELETED, results.get(2).getStatus());
+        assertEquals("Later operations should see earlier deletes", TaskOperation.Result.Status.NOT_FOUND, results.get(3).getStatus());
+        assertEquals("Unknown ids should not be found", TaskOperation.Result.Status.NOT_FOUND, results.get(4).getStatus());
+        assertEquals("Invalid creates should fail alone", TaskOperation.Result.Status.INVALID, results.get(5).getStatus());
+        assertFalse("Failures should be flagged", results.get(5).isSuccess());
+        assertEquals("Unchanged status should still succeed", TaskOperation.Result.Status.UPDATED, results.get(6).getStatus());
+        assertEquals("Unchanged status should keep the version", 1, results.get(6).getTask().getVersion());
+
+        // The store and indexes reflect only the applied changes
+        assertEquals("One task created and one deleted", 3, taskManager.getTaskCount());
+        assertNull("Deleted task should be gone", taskManager.getTask(2));
+        assertTrue("Updated task should be completed", taskManager.getTask(1).isCompleted());
+        assertEquals("Stats should follow the batch", 1, taskManager.getStats().getCompleted());
+        assertEquals("Version should count the three changes", version + 3, taskManager.getVersion());
+        assertEquals("Completed filter should see the update", 1, taskManager.getTasks(0, 10, true).size());
+        assertEquals("Invalid creates should not use up ids", 5, taskManager.addTask("Next", "After the batch").getId());
+    }
+
+    @Test
+    public void testApplyComparesVersions() {
+        Task task = taskManager.getTask(1);
+
+        // An update naming the current version applies and returns the new state
+        TaskOperation.Result updated = taskManager.apply(TaskOperation.update(1, true).ifVersion(task.getVersion()));
+        assertEquals("Matching version should update", TaskOperation.Result.Status.UPDATED, updated.getStatus());
+        assertTrue("Result should carry the new state", updated.getTask().isCompleted());
+        assertEquals("Version should grow", task.getVersion() + 1, updated.getTask().getVersion());
+
+        // Repeating it with the version read before fails and leaves the task alone
+        TaskOperation.Result stale = taskManager.apply(TaskOperation.update(1, false).ifVersion(task.getVersion()));
+        assertEquals("Stale version should conflict", TaskOperation.Result.Status.CONFLICT, stale.getStatus());
+        assertFalse("Conflict should be a failure", stale.isSuccess());
+        assertEquals("Conflict should return the current task", updated.getTask().getVersion(), stale.getTask().getVersion());
+        assertTrue("Task should keep the first update", taskManager.getTask(1).isCompleted());
+
+        // Deletes compare versions too, and creates cannot name one
+        assertEquals("Stale delete should conflict", TaskOperation.Result.Status.CONFLICT,
+                taskManager.apply(TaskOperation.delete(1).ifVersion(task.getVersion())).getStatus());
+        assertEquals("Missing task should not be found", TaskOperation.Result.Status.NOT_FOUND,
+                taskManager.apply(TaskOperation.update(99, true).ifVersion(1)).getStatus());
+        assertEquals("Create with a version should be invalid", TaskOperation.Result.Status.INVALID,
+                taskManager.apply(TaskOperation.create("New", "Versioned").ifVersion(1)).getStatus());
+        assertEquals("Unconditional update should apply", TaskOperation.Result.Status.UPDATED,
+                taskManager.apply(TaskOperation.update(1, false)).getStatus());
+    }
+
+    @Test
+    public void testPatchTask() {
+        long version = taskManager.getVersion();
+
+        // Only the named fields change, and the search index follows the new text
+        TaskOperation.Result result = taskManager.patchTask(3, "  Clean garage ", null, true, TaskOperation.ANY_VERSION);
+        assertEquals("Patch should update", TaskOperation.Result.Status.UPDATED, result.getStatus());
+        Task patched = taskManager.getTask(3);
+        assertEquals("Title should be replaced and trimmed", "Clean garage", patched.getTitle());
+        assertEquals("Description should be kept", "Vacuum living room and mop kitchen", patched.getDescription());
+        assertTrue("Status should be replaced", patched.isCompleted());
+        assertEquals("One edit should be one version", 2, patched.getVersion());
+        assertEquals("Manager version should count one change", version + 1, taskManager.getVersion());
+        assertEquals("New title should be searchable", 3, taskManager.searchTasks("garage", 10, null).get(0).getId());
+        assertTrue("Old title should not be searchable", taskManager.searchTasks("house", 10, null).isEmpty());
+        assertEquals("Stats should follow the status", 1, taskManager.getStats().getCompleted());
+
+        // Repeating the patch changes nothing, and blank fields are rejected before anything changes
+        assertEquals("Same values should keep the version", 2,
+                taskManager.patchTask(3, "Clean garage", null, null, TaskOperation.ANY_VERSION).getTask().getVersion());
+        assertEquals("Blank title should be invalid", TaskOperation.Result.Status.INVALID,
+                taskManager.patchTask(3, " ", null, null, TaskOperation.ANY_VERSION).getStatus());
+        assertEquals("Stale version should conflict", TaskOperation.Result.Status.CONFLICT,
+                taskManager.patchTask(3, null, "New description", null, 1).getStatus());
+        assertEquals("Task should be unchanged", "Vacuum living room and mop kitchen", taskManager.getTask(3).getDescription());
+    }
+}
@@ -0,0 +1,189 @@
+package com.simpletomcat.todo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Compares id lookups in TaskManager against the original list-scan implementation
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskStoreBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    @Param({"listScan", "indexed"})
+    private String store;
+
+    private Tasks tasks;
+    private int highestId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        tasks = "listScan".equals(store) ? new ListScanTasks() : new IndexedTasks();
+        for (int i = 0; i < size; i++) {
+            highestId = tasks.add("Task " + i, "Description " + i);
+        }
+    }
+
+    @Benchmark
+    public Object getTask() {
+        return tasks.get(randomId());
+    }
+
+    @Benchmark
+    public boolean updateTaskStatus() {
+        return tasks.updateStatus(randomId(), ThreadLocalRandom.current().nextBoolean());
+    }
+
+    @Benchmark
+    public int deleteAndAddTask() {
+        // Keep the store size stable by replacing every deleted task
+        int id = randomId();
+        if (tasks.delete(id)) {
+            highestId = tasks.add("Task " + id, "Description " + id);
+        }
+        return highestId;
+    }
+
+    private int randomId() {
+        return ThreadLocalRandom.current().nextInt(1, highestId + 1);
+    }
+
+    private interface Tasks {
+        int add(String title, String description);
+
+        Object get(int id);
+
+        boolean delete(int id);
+
+        boolean updateStatus(int id, boolean completed);
+    }
+
+    private static final class IndexedTasks implements Tasks {
+        private final TaskManager taskManager = new TaskManager();
+
+        @Override
+        public int add(String title, String description) {
+            return taskManager.addTask(title, description).getId();
+        }
+
+        @Override
+        public Task get(int id) {
+            return taskManager.getTask(id);
+        }
+
+        @Override
+        public boolean delete(int id) {
+            return taskManager.deleteTask(id);
+        }
+
+        @Override
+        public boolean updateStatus(int id, boolean completed) {
+            return taskManager.updateTaskStatus(id, completed);
+        }
+    }
+
+    /**
+     * The synchronized list with linear id scans that TaskManager used before TaskStore,
+     * holding mutable tasks that status changes update in place
+     */
+    private static final class ListScanTasks implements Tasks {
+        private final List<MutableTask> tasks = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicInteger idCounter = new AtomicInteger(1);
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        @Override
+        public int add(String title, String description) {
+            MutableTask task = new MutableTask(idCounter.getAndIncrement(), title, description);
+            lock.writeLock().lock();
+            try {
+                tasks.add(task);
+                return task.id;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public MutableTask get(int id) {
+            lock.readLock().lock();
+            try {
+                return tasks.stream()
+                        .filter(task -> task.id == id)
+                        .findFirst()
+                        .orElse(null);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public boolean delete(int id) {
+            lock.writeLock().lock();
+            try {
+                Optional<MutableTask> taskToRemove = tasks.stream()
+                        .filter(task -> task.id == id)
+                        .findFirst();
+                return taskToRemove.isPresent() && tasks.remove(taskToRemove.get());
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public boolean updateStatus(int id, boolean completed) {
+            lock.writeLock().lock();
+            try {
+                MutableTask task = get(id);
+                if (task != null) {
+                    task.completed = completed;
+                    return true;
+                }
+                return false;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * The task the baseline keeps, changed in place the way Task was before it became immutable
+     */
+    private static final class MutableTask {
+        private final int id;
+        private final String title;
+        private final String description;
+        private boolean completed;
+
+        MutableTask(int id, String title, String description) {
+            this.id = id;
+            this.title = title;
+            this.description = description;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.simpletomcat.todo;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Heap footprint and GC pauses of the on-heap, compact and memory-mapped stores
+ * holding the same tasks, under 90% reads and 10% status changes.
+ * With {@code through=store} the bare store is filled and measured; with {@code through=manager}
+ * the tasks go through a TaskManager, so its search index and status sets count towards the heap.
+ * The live heap after filling the store and the count, total and longest GC pause seen
+ * during measurement are printed at the end of each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx2g", "-XX:+UseG1GC"})
+public class TaskStoreGcBenchmark {
+
+    @Param({"heap", "compact", "mapped"})
+    private String store;
+
+    @Param({"store", "manager"})
+    private String through;
+
+    @Param({"2000000"})
+    private int size;
+
+    private TaskStore tasks;
+    private TaskManager taskManager;
+    private int highestId;
+    private Path directory;
+    private long liveHeapBytes;
+    private final AtomicLong pauses = new AtomicLong();
+    private final AtomicLong pauseMillis = new AtomicLong();
+    private final AtomicLong longestPauseMillis = new AtomicLong();
+    private final NotificationListener listener = (notification, handback) -> {
+        if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            long duration = GarbageCollectionNotificationInfo
+                    .from((CompositeData) notification.getUserData()).getGcInfo().getDuration();
+            pauses.incrementAndGet();
+            pauseMillis.addAndGet(duration);
+            longestPauseMillis.accumulateAndGet(duration, Math::max);
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("task-store-gc");
+        tasks = store.equals("mapped") ? new MappedTaskStore(directory)
+                : store.equals("compact") ? new CompactTaskStore() : new HeapTaskStore();
+        if (through.equals("manager")) {
+            taskManager = new TaskManager(null, tasks);
+            for (int i = 1; i <= size; i++) {
+                highestId = taskManager.addTask("Task number " + i, "Description of benchmark task number " + i).getId();
+            }
+        } else {
+            for (int id = 1; id <= size; id++) {
+                tasks.put(new Task(id, "Task number " + id, "Description of benchmark task number " + id));
+            }
+            highestId = size;
+        }
+        System.gc();
+        liveHeapBytes = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) collector).addNotificationListener(listener, null, null);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) collector).removeNotificationListener(listener);
+        }
+        System.out.printf("%n%s store through %s: %d MB live heap after fill; %d GC pauses, %d ms total, %d ms longest%n",
+                store, through, liveHeapBytes >> 20, pauses.get(), pauseMillis.get(), longestPauseMillis.get());
+        tasks.close();
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public Task readMostly() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int id = random.nextInt(1, highestId + 1);
+        if (taskManager != null) {
+            Task task = taskManager.getTask(id);
+            if (random.nextInt(10) == 0) {
+                taskManager.updateTaskStatus(id, !task.isCompleted());
+            }
+            return task;
+        }
+        Task task = tasks.get(id);
+        if (random.nextInt(10) == 0) {
+            tasks.replace(new Task(id, task.getTitle(), task.getDescription(), !task.isCompleted(), task.getVersion() + 1));
+        }
+        return task;
+    }
+}
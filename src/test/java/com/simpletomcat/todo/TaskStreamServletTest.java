@@ -0,0 +1,218 @@
+package com.simpletomcat.todo;
+
+import org.apache.catalina.startup.Tomcat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+/**
+ * Integration tests streaming task events from a server started on an ephemeral port
+ */
+public class TaskStreamServletTest {
+
+    private static final int SUBSCRIBERS = 2_000;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final List<Socket> sockets = new ArrayList<>();
+    private Tomcat tomcat;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws Exception {
+        Map<String, String> arguments = new HashMap<>();
+        arguments.put(Main.PORT, "0");
+        arguments.put(Main.DATA_DIR, folder.newFolder().getPath());
+        arguments.put(Main.DURABILITY, "ASYNC");
+        // Far fewer request threads than subscribers, so streams cannot each hold one
+        arguments.put(Main.MAX_THREADS, "50");
+        tomcat = Main.startServer(new ServerConfig(arguments, new Properties(), new HashMap<>()));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        tomcat.stop();
+        tomcat.destroy();
+    }
+
+    @Test
+    public void testThousandsOfSubscribers() throws Exception {
+        int threadsBefore = Thread.activeCount();
+        List<InputStream> streams = new ArrayList<>();
+        for (int i = 0; i < SUBSCRIBERS; i++) {
+            streams.add(subscribe(null, 0));
+        }
+        for (InputStream in : streams) {
+            readUntil(in, "retry: 3000");
+        }
+
+        // Every subscriber is connected through a pool of 50 threads, which stays within its limit
+        assertTrue("Subscribers should not hold a thread each", Thread.activeCount() - threadsBefore <= 50);
+
+        // One change reaches every subscriber
+        int id = addTask("Broadcast", "Sent to every subscriber");
+        for (InputStream in : streams) {
+            String received = readUntil(in, "\"id\":" + id + ",");
+            assertTrue("Every subscriber should get the add", received.contains("event: added"));
+        }
+    }
+
+    @Test
+    public void testResumeFromLastEventId() throws Exception {
+        // The sample tasks were published as events 1 to 3 of this server's epoch
+        String epoch = epoch();
+        InputStream in = subscribe(epoch + "-1", 0);
+        String received = readUntil(in, "id: " + epoch + "-3\n");
+        assertTrue("Events after the last seen one should be replayed", received.contains("id: " + epoch + "-2\nevent: added"));
+        assertFalse("The last seen event should not be repeated", received.contains("id: " + epoch + "-1\n"));
+    }
+
+    @Test
+    public void testUnknownLastEventIdGetsReset() throws Exception {
+        String epoch = epoch();
+        InputStream in = subscribe(epoch + "-999999", 0);
+        String received = readUntil(in, "event: reset\n");
+        assertTrue("A client ahead of the ring should be told to reload", received.contains("retry: 3000"));
+        assertEquals("No events should precede the reset", 1, received.split("id: ").length - 1);
+        assertTrue("Reset should carry an id", received.endsWith("\nevent: reset\n"));
+        String resetId = received.substring(received.lastIndexOf("id: ") + 4, received.lastIndexOf("\nevent: reset"));
+        assertTrue("Reset id should belong to this run", resetId.startsWith(epoch + "-"));
+
+        // Reconnecting with that id resumes instead of being reset again
+        InputStream again = subscribe(resetId, 0);
+        readUntil(again, "retry: 3000");
+        int id = addTask("After reset", "Resumed");
+        String resumed = readUntil(again, "\"id\":" + id + ",");
+        assertFalse("Resumed stream should not be reset", resumed.contains("event: reset"));
+    }
+
+    @Test
+    public void testLastEventIdFromEarlierRunGetsReset() throws Exception {
+        // Sequence 1 is still in the ring, but it was handed out by another process
+        for (String lastEventId : new String[] {"0-1", "1"}) {
+            InputStream in = subscribe(lastEventId, 0);
+            String received = readUntil(in, "event: reset\n");
+            assertEquals("No events of this run should be replayed for " + lastEventId, 1, received.split("id: ").length - 1);
+        }
+    }
+
+    @Test
+    public void testSlowSubscriberDropsOldestEvents() throws Exception {
+        // A subscriber that stops reading falls behind while more than a ring of events is published
+        InputStream slow = subscribe(null, 4096);
+        readUntil(slow, "retry: 3000");
+        String description = "x".repeat(1024);
+        int batches = 10;
+        for (int b = 0; b < batches; b++) {
+            StringBuilder body = new StringBuilder();
+            for (int i = 0; i < TaskEventRing.DEFAULT_CAPACITY / 2; i++) {
+                body.append("{\"op\":\"create\",\"title\":\"Flood ").append(b).append("\",\"description\":\"")
+                        .append(description).append("\"}\n");
+            }
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri("/api/tasks/_bulk"))
+                    .POST(HttpRequest.BodyPublishers.ofString(body.toString())).build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals("Bulk insert should succeed", 200, response.statusCode());
+        }
+        int last = addTask("Last", "After the flood");
+
+        // Once it reads again it is told to reload, then catches up with the newest events
+        String received = readUntil(slow, "\"id\":" + last + ",");
+        assertTrue("Slow subscriber should be sent a reset", received.contains("event: reset"));
+        assertTrue("Dropped events should not all be delivered",
+                received.split("event: added").length - 1 < batches * TaskEventRing.DEFAULT_CAPACITY / 2);
+    }
+
+    private InputStream subscribe(String lastEventId, int receiveBuffer) throws IOException {
+        Socket socket = new Socket();
+        if (receiveBuffer > 0) {
+            socket.setReceiveBufferSize(receiveBuffer);
+        }
+        socket.connect(new InetSocketAddress("localhost", tomcat.getConnector().getLocalPort()));
+        socket.setSoTimeout(60_000);
+        sockets.add(socket);
+        String request = "GET /api/tasks/stream HTTP/1.1\r\nHost: localhost\r\nAccept: text/event-stream\r\n"
+                + (lastEventId == null ? "" : "Last-Event-ID: " + lastEventId + "\r\n") + "\r\n";
+        socket.getOutputStream().write(request.getBytes(StandardCharsets.US_ASCII));
+        return new BufferedInputStream(socket.getInputStream());
+    }
+
+    /**
+     * Learn the epoch of the server's event ids from the event of a new task
+     */
+    private String epoch() throws Exception {
+        InputStream in = subscribe(null, 0);
+        readUntil(in, "retry: 3000");
+        addTask("Epoch", "Reveals the event id format");
+        String received = readUntil(in, "event: added");
+        String id = received.substring(received.lastIndexOf("id: ") + 4, received.lastIndexOf("\nevent: added"));
+        return id.substring(0, id.lastIndexOf('-'));
+    }
+
+    private int addTask(String title, String description) throws Exception {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri("/api/tasks"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"title\":\"" + title + "\",\"description\":\"" + description + "\"}"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals("Task should be created", 201, response.statusCode());
+        String body = response.body();
+        int start = body.indexOf("\"id\":") + 5;
+        return Integer.parseInt(body.substring(start, body.indexOf(',', start)));
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + tomcat.getConnector().getLocalPort() + path);
+    }
+
+    /**
+     * Read the stream until a marker has been received, ignoring chunk framing
+     * @return Everything read, with chunk sizes and CRLFs left in
+     */
+    private static String readUntil(InputStream in, String marker) throws IOException {
+        StringBuilder received = new StringBuilder();
+        int b;
+        while ((b = in.read()) >= 0) {
+            if (b != '\r') {
+                received.append((char) b);
+            }
+            if (endsWith(received, marker)) {
+                return received.toString();
+            }
+        }
+        throw new IOException("Stream ended before " + marker + " in: " + received);
+    }
+
+    private static boolean endsWith(StringBuilder received, String marker) {
+        int offset = received.length() - marker.length();
+        if (offset < 0) {
+            return false;
+        }
+        for (int i = 0; i < marker.length(); i++) {
+            if (received.charAt(offset + i) != marker.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}